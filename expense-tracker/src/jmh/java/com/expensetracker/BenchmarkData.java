@@ -0,0 +1,88 @@
+package com.expensetracker;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Generated databases for the benchmarks, cached under target/jmh-data
+ * so each size is only built once. Rows are spread over ten years.
+ */
+public class BenchmarkData {
+
+    static final LocalDate FIRST_DAY = LocalDate.of(2015, 1, 1);
+    static final int DAYS = 3652;
+    static final int CATEGORIES = 20;
+
+    static final String[] WORDS = {
+            "groceries", "coffee", "lunch", "dinner", "taxi", "metro", "fuel",
+            "electricity", "water", "internet", "phone", "movie", "books",
+            "gift", "pharmacy", "rent", "snacks", "parking", "gym", "subscription"
+    };
+
+    /** Points Database at the generated file for rows, building it if needed. */
+    public static void open(int rows) throws SQLException {
+        File dir = new File("target/jmh-data");
+        dir.mkdirs();
+        File db = new File(dir, "expenses-" + rows + ".db");
+        boolean exists = db.exists();
+
+        Database.useFile(db.getPath());
+        Database.init();
+        if (!exists || countRows() < rows) {
+            generate(rows - (int) countRows());
+        }
+    }
+
+    static long countRows() throws SQLException {
+        try (PooledConnection pc = Database.reader();
+             ResultSet rs = pc.prepare("SELECT COUNT(*) FROM expenses").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    static String categoryName(int i) {
+        return "Category " + i;
+    }
+
+    static String note(Random random) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                + " #" + random.nextInt(1000);
+    }
+
+    private static void generate(int rows) throws SQLException {
+        int[] categoryIds = new int[CATEGORIES];
+        for (int i = 0; i < CATEGORIES; i++) {
+            categoryIds[i] = ExpenseDAO.getOrCreateCategoryId(categoryName(i));
+        }
+
+        Random random = new Random(42);
+        int batch = 10_000;
+        try (PooledConnection pc = Database.writer()) {
+            Connection conn = pc.connection();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement ps = pc.prepare(ExpenseDAO.INSERT_SQL);
+                for (int i = 0; i < rows; i++) {
+                    ps.setLong(1, 100 + random.nextInt(500_000));
+                    ps.setString(2, FIRST_DAY.plusDays(random.nextInt(DAYS)).toString());
+                    ps.setInt(3, categoryIds[random.nextInt(CATEGORIES)]);
+                    ps.setString(4, note(random));
+                    ps.addBatch();
+                    if ((i + 1) % batch == 0) {
+                        ps.executeBatch();
+                        conn.commit();
+                    }
+                }
+                ps.executeBatch();
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
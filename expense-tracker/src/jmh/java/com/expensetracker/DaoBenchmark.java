@@ -0,0 +1,120 @@
+package com.expensetracker;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExpenseDAO hot paths against generated databases of different sizes.
+ * Rows inserted by the write benchmarks are removed again after each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+
+    private static final int IMPORT_BATCH = 1000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private int maxIdBefore;
+    private int categoryId;
+    private String batchCsv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkData.open(rows);
+        maxIdBefore = maxId();
+        categoryId = ExpenseDAO.getOrCreateCategoryId(BenchmarkData.categoryName(0));
+
+        // One month's worth of rows, in the layout BulkImporter expects
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder("Date,Category,Amount,Note\n");
+        for (int i = 0; i < IMPORT_BATCH; i++) {
+            sb.append(LocalDate.of(2020, 6, 1 + random.nextInt(30))).append(',')
+              .append(BenchmarkData.categoryName(random.nextInt(BenchmarkData.CATEGORIES))).append(',')
+              .append(1 + random.nextInt(10_000) / 100.0).append(',')
+              .append(BenchmarkData.note(random)).append('\n');
+        }
+        batchCsv = sb.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (PooledConnection pc = Database.writer()) {
+            PreparedStatement ps = pc.prepare("DELETE FROM expenses WHERE id > ?");
+            ps.setInt(1, maxIdBefore);
+            ps.executeUpdate();
+        }
+        Database.shutdown();
+    }
+
+    private static int maxId() throws SQLException {
+        try (PooledConnection pc = Database.reader();
+             ResultSet rs = pc.prepare("SELECT COALESCE(MAX(id), 0) FROM expenses").executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static LocalDate randomMonth() {
+        int m = ThreadLocalRandom.current().nextInt(BenchmarkData.DAYS / 31);
+        return BenchmarkData.FIRST_DAY.plusMonths(m);
+    }
+
+    @Benchmark
+    public List<Expense> getExpensesByMonthYear() {
+        LocalDate m = randomMonth();
+        return ExpenseDAO.getExpensesByMonthYear(m.getYear(), m.getMonthValue());
+    }
+
+    @Benchmark
+    public Map<String, Money> getMonthlyTotalsByCategory() {
+        LocalDate m = randomMonth();
+        return ExpenseDAO.getMonthlyTotalsByCategory(m.getYear(), m.getMonthValue());
+    }
+
+    @Benchmark
+    public Map<LocalDate, Money> getDailyTotals() {
+        LocalDate m = randomMonth();
+        return ExpenseDAO.getDailyTotals(m.getYear(), m.getMonthValue());
+    }
+
+    // A year-end report: twelve month partitions read and merged in parallel
+    @Benchmark
+    public Map<String, Map<YearMonth, Money>> categoryTrendYear() {
+        LocalDate start = LocalDate.of(randomMonth().getYear(), 1, 1);
+        return ExpenseAnalytics.categoryTrend(start, start.plusYears(1));
+    }
+
+    @Benchmark
+    public int getOrCreateCategoryId() {
+        return ExpenseDAO.getOrCreateCategoryId(BenchmarkData.categoryName(
+                ThreadLocalRandom.current().nextInt(BenchmarkData.CATEGORIES)));
+    }
+
+    @Benchmark
+    public void insertExpense() {
+        ExpenseDAO.insertExpense(new Expense(Money.ofMinor(1250), randomMonth(), categoryId, null, "benchmark"));
+    }
+
+    // Reported per row, so it compares directly with insertExpense
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_BATCH)
+    public BulkImporter.Result insertBatch() throws Exception {
+        return new BulkImporter().importFrom(new StringReader(batchCsv), null);
+    }
+}
@@ -0,0 +1,66 @@
+package com.expensetracker;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * The search box over loaded rows: one full scan with the predicate, and
+ * typing the query a character at a time, where ExpenseSearch narrows the
+ * previous matches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"g", "gro", "groceries #12"})
+    public String query;
+
+    private List<Expense> expenses;
+    private final ObservableList<Expense> visible = FXCollections.observableArrayList();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        expenses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int c = random.nextInt(BenchmarkData.CATEGORIES);
+            expenses.add(new Expense(i, Money.ofMinor(100 + random.nextInt(500_000)),
+                    BenchmarkData.FIRST_DAY.plusDays(random.nextInt(BenchmarkData.DAYS)),
+                    c, BenchmarkData.categoryName(c), BenchmarkData.note(random)));
+        }
+    }
+
+    @Benchmark
+    public int applySearchFilter() {
+        Predicate<Expense> p = ExpenseSearch.substringMatcher(query);
+        int n = 0;
+        for (Expense e : expenses) {
+            if (p.test(e)) n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    public long typeQuery() {
+        ExpenseSearch search = new ExpenseSearch(expenses, visible);
+        search.refresh("");
+        for (int i = 1; i <= query.length(); i++) {
+            search.search(query.substring(0, i));
+        }
+        return search.total();
+    }
+}
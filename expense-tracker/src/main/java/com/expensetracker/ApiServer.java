@@ -0,0 +1,367 @@
+package com.expensetracker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Embedded HTTP server exposing the ledger as JSON, so several tools can
+ * share one process (and its connection pool) instead of each opening the
+ * SQLite file. Requests run on virtual threads where the JVM has them.
+ *
+ * <pre>
+ * GET    /api/expenses[?year=&amp;month= | ?from=&amp;to=][&amp;category=]
+ * GET    /api/expenses/{id}
+ * POST   /api/expenses           {"amount": 12.50, "date": "2024-03-01", "category": "Food", "note": "..."}
+ * PUT    /api/expenses/{id}      same members, all optional
+ * DELETE /api/expenses/{id}
+ * GET    /api/months
+ * GET    /api/categories
+ * GET    /api/totals/categories?year=&amp;month=
+ * GET    /api/totals/daily?year=&amp;month=
+ * GET    /api/totals/range[?year=&amp;month= | ?from=&amp;to=][&amp;category=]
+ * GET    /api/summary[?year=&amp;month= | ?from=&amp;to=][&amp;category=]
+ * GET    /api/metrics            plain-text Metrics.dump() of this process
+ * </pre>
+ *
+ * GET responses carry an ETag from the data version and answer a matching
+ * If-None-Match with 304. Lists are streamed, page by page.
+ */
+public class ApiServer implements AutoCloseable {
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int MAX_BODY = 64 * 1024;
+
+    // Status and message for a request that can't be served
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public ApiServer(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 0);
+        executor = ThreadSupport.newExecutor("http", ConnectionManager.defaultReaderCount() * 2);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        Metrics.Span span = Metrics.start("http.request");
+        try (ex) {
+            try {
+                route(ex);
+            } catch (HttpError e) {
+                sendError(ex, e.status, e.getMessage());
+            } catch (IllegalArgumentException | DateTimeException e) {
+                sendError(ex, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                span.failed();
+                e.printStackTrace();
+                sendError(ex, 500, "Internal error");
+            }
+        } finally {
+            span.end(0);
+        }
+    }
+
+    private void route(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        String[] path = ex.getRequestURI().getPath().substring("/api/".length()).split("/");
+        Map<String, String> params = query(ex.getRequestURI().getRawQuery());
+
+        switch (path[0]) {
+            case "expenses" -> {
+                if (path.length == 1) {
+                    if (method.equals("GET")) listExpenses(ex, params);
+                    else if (method.equals("POST")) createExpense(ex);
+                    else throw new HttpError(405, "Use GET or POST");
+                } else if (path.length == 2) {
+                    int id = parseId(path[1]);
+                    switch (method) {
+                        case "GET" -> getExpense(ex, id);
+                        case "PUT" -> updateExpense(ex, id);
+                        case "DELETE" -> deleteExpense(ex, id);
+                        default -> throw new HttpError(405, "Use GET, PUT or DELETE");
+                    }
+                } else {
+                    throw new HttpError(404, "Not found");
+                }
+            }
+            case "months" -> get(ex, method, json -> {
+                json.beginArray();
+                for (ExpenseDAO.MonthTotal m : ExpenseDAO.getMonths()) {
+                    json.beginObject()
+                        .name("month").value(m.month().toString())
+                        .name("count").value(m.count())
+                        .name("total").value(m.total())
+                        .endObject();
+                }
+                json.endArray();
+            });
+            case "categories" -> get(ex, method, json -> {
+                json.beginArray();
+                for (Map.Entry<Integer, String> c : ExpenseDAO.getCategories().entrySet()) {
+                    json.beginObject().name("id").value(c.getKey()).name("name").value(c.getValue()).endObject();
+                }
+                json.endArray();
+            });
+            case "totals" -> totals(ex, method, path, params);
+            case "summary" -> {
+                ExpenseFilter filter = filter(params);
+                get(ex, method, json -> json.beginObject()
+                        .name("from").value(Objects.toString(filter.from(), null))
+                        .name("to").value(Objects.toString(filter.to(), null))
+                        .name("count").value(ExpenseDAO.countExpenses(filter))
+                        .name("total").value(ExpenseDAO.sumAmount(filter))
+                        .endObject());
+            }
+            case "metrics" -> {
+                if (!method.equals("GET")) throw new HttpError(405, "Use GET");
+                byte[] text = Metrics.dump().getBytes(StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                ex.sendResponseHeaders(200, text.length);
+                ex.getResponseBody().write(text);
+            }
+            default -> throw new HttpError(404, "Not found");
+        }
+    }
+
+    private void totals(HttpExchange ex, String method, String[] path, Map<String, String> params) throws IOException {
+        if (path.length != 2) throw new HttpError(404, "Not found");
+        if (path[1].equals("range")) {
+            // From the in-memory RangeSumIndex: O(log days) however wide the range
+            ExpenseFilter filter = filter(params);
+            int fromDay = filter.from() == null ? Integer.MIN_VALUE : (int) filter.from().toEpochDay();
+            int toDay = filter.to() == null ? Integer.MAX_VALUE : (int) filter.to().toEpochDay();
+            get(ex, method, json -> json.beginObject()
+                    .name("from").value(Objects.toString(filter.from(), null))
+                    .name("to").value(Objects.toString(filter.to(), null))
+                    .name("total").value(Money.ofMinor(RangeSumIndex.get().sum(filter.categoryId(), fromDay, toDay)))
+                    .endObject());
+            return;
+        }
+        int year = requiredInt(params, "year");
+        int month = requiredInt(params, "month");
+        if (month < 1 || month > 12) throw new IllegalArgumentException("month must be 1-12");
+        switch (path[1]) {
+            case "categories" -> get(ex, method, json -> {
+                json.beginObject();
+                for (Map.Entry<String, Money> e : ExpenseDAO.getMonthlyTotalsByCategory(year, month).entrySet()) {
+                    json.name(e.getKey()).value(e.getValue());
+                }
+                json.endObject();
+            });
+            case "daily" -> get(ex, method, json -> {
+                json.beginObject();
+                for (Map.Entry<LocalDate, Money> e : ExpenseDAO.getDailyTotals(year, month).entrySet()) {
+                    json.name(e.getKey().toString()).value(e.getValue());
+                }
+                json.endObject();
+            });
+            default -> throw new HttpError(404, "Not found");
+        }
+    }
+
+    private void listExpenses(HttpExchange ex, Map<String, String> params) throws IOException {
+        ExpenseFilter filter = filter(params);
+        get(ex, "GET", json -> {
+            json.beginArray();
+            // Page with keyset pagination so a slow client never pins a pooled reader
+            LocalDate afterDate = null;
+            int afterId = 0;
+            while (true) {
+                List<Expense> page = ExpenseDAO.getExpensePage(filter, afterDate, afterId, 0, PAGE_SIZE);
+                for (Expense e : page) writeExpense(json, e);
+                if (page.size() < PAGE_SIZE) break;
+                Expense last = page.get(page.size() - 1);
+                afterDate = last.getDate();
+                afterId = last.getId();
+            }
+            json.endArray();
+        });
+    }
+
+    private void getExpense(HttpExchange ex, int id) throws IOException {
+        String etag = etag(Database.dataVersion());
+        if (notModified(ex, etag)) return;
+        Expense e = ExpenseDAO.getExpense(id);
+        if (e == null) throw new HttpError(404, "No expense " + id);
+        send(ex, 200, etag, json -> writeExpense(json, e));
+    }
+
+    private void createExpense(HttpExchange ex) throws IOException {
+        Map<String, Object> body = readBody(ex);
+        Money amount = amount(required(body, "amount"));
+        LocalDate date = LocalDate.parse(required(body, "date"));
+        int categoryId = ExpenseDAO.getOrCreateCategoryId(required(body, "category"));
+        Expense e = new Expense(amount, date, categoryId, null, optional(body, "note"));
+
+        int id = ExpenseDAO.insertExpense(e);
+        if (id < 0) throw new HttpError(500, "Insert failed");
+        ex.getResponseHeaders().set("Location", "/api/expenses/" + id);
+        Expense created = ExpenseDAO.getExpense(id);
+        send(ex, 201, null, json -> writeExpense(json, created));
+    }
+
+    private void updateExpense(HttpExchange ex, int id) throws IOException {
+        Map<String, Object> body = readBody(ex);
+        // Read and written under one writer borrow, so concurrent PUTs to different fields both stick
+        Expense updated = ExpenseDAO.editExpense(id, e -> {
+            if (body.containsKey("amount")) e.setAmount(amount(required(body, "amount")));
+            if (body.containsKey("date")) e.setDate(LocalDate.parse(required(body, "date")));
+            if (body.containsKey("category")) e.setCategoryId(ExpenseDAO.getOrCreateCategoryId(required(body, "category")));
+            if (body.containsKey("note")) e.setNote(optional(body, "note"));
+        });
+        if (updated == null) throw new HttpError(404, "No expense " + id);
+        send(ex, 200, null, json -> writeExpense(json, updated));
+    }
+
+    private void deleteExpense(HttpExchange ex, int id) throws IOException {
+        if (ExpenseDAO.getExpense(id) == null) throw new HttpError(404, "No expense " + id);
+        ExpenseDAO.deleteExpense(id);
+        ex.sendResponseHeaders(204, -1);
+    }
+
+    private static void writeExpense(JsonWriter json, Expense e) throws IOException {
+        json.beginObject()
+            .name("id").value(e.getId())
+            .name("date").value(e.getDate().toString())
+            .name("categoryId").value(e.getCategoryId())
+            .name("category").value(e.getCategoryName())
+            .name("amount").value(e.getAmount())
+            .name("note").value(e.getNote())
+            .endObject();
+    }
+
+    // GET with a conditional check against the data version
+    private void get(HttpExchange ex, String method, Body body) throws IOException {
+        if (!method.equals("GET")) throw new HttpError(405, "Use GET");
+        // Read before the data: a write during the request leaves the ETag stale, never too new
+        String etag = etag(Database.dataVersion());
+        if (notModified(ex, etag)) return;
+        send(ex, 200, etag, body);
+    }
+
+    // Answers 304 if the client already has this version
+    private static boolean notModified(HttpExchange ex, String etag) throws IOException {
+        if (!etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) return false;
+        ex.getResponseHeaders().set("ETag", etag);
+        ex.sendResponseHeaders(304, -1);
+        return true;
+    }
+
+    private static String etag(long version) {
+        return "\"v" + version + "\"";
+    }
+
+    // Chunked response: the body is written as it is produced
+    private static void send(HttpExchange ex, int status, String etag, Body body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (etag != null) ex.getResponseHeaders().set("ETag", etag);
+        ex.sendResponseHeaders(status, 0);
+        JsonWriter json = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024));
+        body.write(json);
+        json.flush();
+    }
+
+    private static void sendError(HttpExchange ex, int status, String message) throws IOException {
+        // Too late for a status once a streamed body has started
+        if (ex.getResponseCode() != -1) return;
+        send(ex, status, null, json -> json.beginObject().name("error").value(message).endObject());
+    }
+
+    private static Map<String, Object> readBody(HttpExchange ex) throws IOException {
+        byte[] bytes = ex.getRequestBody().readNBytes(MAX_BODY + 1);
+        if (bytes.length > MAX_BODY) throw new HttpError(413, "Request body too large");
+        return JsonReader.parseObject(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static String required(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof String s) || s.isBlank()) throw new IllegalArgumentException("Missing " + name);
+        return s;
+    }
+
+    private static String optional(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        return value instanceof String s && !s.isEmpty() ? s : null;
+    }
+
+    private static Money amount(String text) {
+        Money amount = Money.parse(text);
+        if (!amount.isPositive()) throw new IllegalArgumentException("amount must be greater than zero");
+        return amount;
+    }
+
+    private static ExpenseFilter filter(Map<String, String> params) {
+        ExpenseFilter filter = ExpenseFilter.fromParams(params);
+        String category = params.get("category");
+        if (category == null) return filter;
+        Integer id = CategoryRegistry.get().find(category);
+        if (id == null) throw new HttpError(404, "No category " + category);
+        return filter.withCategory(id);
+    }
+
+    private static int parseId(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "Not found");
+        }
+    }
+
+    private static int requiredInt(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) throw new IllegalArgumentException("Missing " + name);
+        return Integer.parseInt(value);
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+}
@@ -1,13 +1,302 @@
 package com.expensetracker;
 
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
 /**
- * Hello world!
+ * Command-line runner for batch jobs on machines without a display. It only
+ * touches the DAO layer, so JavaFX and JFreeChart are never loaded:
  *
+ *   java -cp "target/expense-tracker-1.0-SNAPSHOT.jar;target/dependency/*" com.expensetracker.App summary --year=2024
  */
-public class App 
-{
-    public static void main( String[] args )
-    {
-        System.out.println( "Hello World!" );
+public class App {
+
+    private static final String USAGE = """
+            Usage: App [--db=FILE] <command> [options]
+
+              import FILE|-   [--date-format=PATTERN] [--columns=DATE,CATEGORY,AMOUNT,NOTE] [--batch=N]
+              export FILE|-   [--year=YYYY [--month=M] | --from=DATE --to=DATE] [--category=NAME]
+              summary         [--year=YYYY [--month=M] | --from=DATE --to=DATE]
+              reindex         rebuild indexes, summary tables and the search index
+              vacuum          compact the database file
+              serve           [--port=8080] [--host=127.0.0.1] run the HTTP JSON API until stopped
+              metrics         [--url=http://127.0.0.1:8080] print the timings of a running serve
+              budget          --period=month|year [--category=NAME] (--amount=AMOUNT [--warn=PERCENT] | --delete)
+              budgets         [--date=DATE] spending against each budget in the period containing DATE
+              recurring       list | run [--date=DATE] | delete ID
+                              | add --amount=AMOUNT --category=NAME --every=week|month|year [--n=N]
+                                    --start=DATE [--end=DATE] [--note=TEXT]
+
+            "-" reads stdin / writes stdout. A FILE ending in .gz is exported gzip-compressed.
+            Dates are YYYY-MM-DD; --to is exclusive. summary defaults to the current month.
+            --metrics prints this run's DAO and SQL timings to stderr when the command ends.
+            --write-behind queues expense writes and group-commits them (useful with serve).
+            """;
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    // Exit status: 0 ok, 1 failed, 2 bad usage
+    static int run(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "" : arg.substring(eq + 1));
+            } else {
+                positional.add(arg);
+            }
+        }
+        if (positional.isEmpty() || options.containsKey("help")) {
+            System.err.print(USAGE);
+            return positional.isEmpty() && !options.containsKey("help") ? 2 : 0;
+        }
+
+        String db = options.get("db");
+        if (db != null) Database.useFile(db);
+        if (options.containsKey("write-behind")) Database.setWriteBehind(true);
+
+        try {
+            String command = positional.get(0);
+            List<String> rest = positional.subList(1, positional.size());
+            switch (command) {
+                case "import" -> importCsv(one(rest, "import"), options);
+                case "export" -> exportCsv(one(rest, "export"), options);
+                case "summary" -> summary(options);
+                case "reindex" -> {
+                    Database.init();
+                    Database.reindex();
+                    System.out.println("reindexed");
+                }
+                case "serve" -> serve(options);
+                case "metrics" -> printMetrics(options);
+                case "budget" -> setBudget(options);
+                case "budgets" -> printBudgets(options);
+                case "recurring" -> recurring(rest, options);
+                case "vacuum" -> {
+                    Database.init();
+                    Database.vacuum();
+                    System.out.println("vacuumed");
+                }
+                default -> throw new IllegalArgumentException("Unknown command: " + command);
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            return 2;
+        } catch (IOException | SQLException | InterruptedException | RuntimeException e) {
+            System.err.println("Failed: " + e);
+            return 1;
+        } finally {
+            Database.shutdown();
+            if (options.containsKey("metrics")) System.err.print(Metrics.dump());
+        }
+    }
+
+    private static String one(List<String> args, String command) {
+        if (args.size() != 1) throw new IllegalArgumentException(command + " takes exactly one FILE argument");
+        return args.get(0);
+    }
+
+    private static void serve(Map<String, String> options) throws IOException, SQLException, InterruptedException {
+        String host = options.getOrDefault("host", "127.0.0.1");
+        int port = Integer.parseInt(options.getOrDefault("port", "8080"));
+        Database.init();
+        Metrics.registerMBean();
+        RangeSumIndex.get().load();  // built before serving, so the first range slider isn't slow
+        RecurringScheduler recurring = new RecurringScheduler();
+
+        ApiServer server = new ApiServer(new InetSocketAddress(host, port));
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            recurring.close();
+            Database.shutdown();
+            stopped.countDown();
+        }));
+        server.start();
+        System.err.println("Serving http://" + host + ":" + server.port() + "/api/ (Ctrl+C to stop)");
+        stopped.await();
+    }
+
+    // Dump from another process: the server's /api/metrics
+    private static void printMetrics(Map<String, String> options) throws IOException {
+        String base = options.getOrDefault("url", "http://127.0.0.1:8080");
+        URL url = URI.create(base.replaceAll("/+$", "") + "/api/metrics").toURL();
+        try (InputStream in = url.openStream()) {
+            in.transferTo(System.out);
+        }
+    }
+
+    private static void importCsv(String file, Map<String, String> options) throws IOException, SQLException {
+        BulkImporter importer = new BulkImporter();
+        if (options.containsKey("date-format")) importer.dateFormat(options.get("date-format"));
+        if (options.containsKey("batch")) importer.batchSize(Integer.parseInt(options.get("batch")));
+        if (options.containsKey("columns")) {
+            String[] cols = options.get("columns").split(",");
+            if (cols.length != 4) throw new IllegalArgumentException("--columns needs four positions");
+            importer.columns(Integer.parseInt(cols[0].trim()), Integer.parseInt(cols[1].trim()),
+                    Integer.parseInt(cols[2].trim()), Integer.parseInt(cols[3].trim()));
+        }
+
+        Database.init();
+        BulkImporter.ProgressListener progress = (read, imported, rejected) ->
+                System.err.printf("\rread %d, imported %d, rejected %d", read, imported, rejected);
+        BulkImporter.Result r;
+        if (file.equals("-")) {
+            r = importer.importFrom(new InputStreamReader(System.in, StandardCharsets.UTF_8), progress);
+        } else {
+            r = importer.importFile(Path.of(file), progress);
+        }
+        System.err.println();
+        ExpenseSnapshot.refresh();
+
+        PrintWriter out = stdout();
+        out.println("imported\t" + r.imported());
+        out.println("rejected\t" + r.rejected());
+        for (BulkImporter.RejectedRow row : r.rejectedRows()) {
+            out.println("line " + row.line() + "\t" + row.reason());
+        }
+        out.flush();
+    }
+
+    private static void exportCsv(String file, Map<String, String> options) throws IOException, SQLException {
+        ExpenseFilter filter = filter(options, false);
+        Database.init();
+        if (options.containsKey("category")) {
+            Integer id = CategoryRegistry.get().find(options.get("category"));
+            if (id == null) throw new IllegalArgumentException("No such category: " + options.get("category"));
+            filter = filter.withCategory(id);
+        }
+
+        long rows;
+        if (file.equals("-")) {
+            rows = ExpenseExporter.export(System.out, filter, false, null);
+        } else {
+            rows = ExpenseExporter.exportTo(Path.of(file), filter, null);
+        }
+        System.err.println("exported " + rows + " rows");
+    }
+
+    private static void summary(Map<String, String> options) throws IOException, SQLException {
+        ExpenseFilter filter = filter(options, true);
+        Database.init();
+        ExpenseSnapshot.refresh();
+
+        PrintWriter out = stdout();
+        out.println("period\t" + filter.from() + "\t" + filter.to());
+        out.println("count\t" + ExpenseDAO.countExpenses(filter));
+        out.println("total\t" + ExpenseDAO.sumAmount(filter));
+
+        Map<YearMonth, Money> months = ExpenseAnalytics.monthlyTotals(filter.from(), filter.to());
+        if (months.size() > 1) {
+            months.forEach((month, total) -> out.println("month\t" + month + "\t" + total));
+        }
+        ExpenseAnalytics.categoryTotals(filter.from(), filter.to())
+                .forEach((name, total) -> out.println("category\t" + name + "\t" + total));
+        out.flush();
+    }
+
+    private static void setBudget(Map<String, String> options) throws SQLException {
+        BudgetTracker.Period period = BudgetTracker.Period.valueOf(
+                options.getOrDefault("period", "").toUpperCase(Locale.ROOT));
+        Database.init();
+        Integer categoryId = null;
+        if (options.containsKey("category")) {
+            categoryId = CategoryRegistry.get().find(options.get("category"));
+            if (categoryId == null) throw new IllegalArgumentException("No such category: " + options.get("category"));
+        }
+        if (options.containsKey("delete")) {
+            BudgetDAO.deleteBudget(categoryId, period);
+            System.out.println("deleted");
+            return;
+        }
+        if (!options.containsKey("amount")) throw new IllegalArgumentException("budget needs --amount or --delete");
+        BudgetDAO.setBudget(categoryId, period, Money.parse(options.get("amount")),
+                Integer.parseInt(options.getOrDefault("warn", "80")));
+        System.out.println("saved");
+    }
+
+    private static void printBudgets(Map<String, String> options) {
+        LocalDate day = options.containsKey("date") ? LocalDate.parse(options.get("date")) : LocalDate.now();
+        Database.init();
+        PrintWriter out = stdout();
+        for (BudgetTracker.Status s : BudgetTracker.get().status(day)) {
+            BudgetTracker.Budget b = s.budget();
+            out.println(b.period().name().toLowerCase(Locale.ROOT) + "\t" + s.periodStart() + "\t"
+                    + (b.categoryId() == null ? "*" : CategoryRegistry.get().name(b.categoryId())) + "\t"
+                    + s.spent() + "\t" + b.limit() + (s.exceeded() ? "\tover" : ""));
+        }
+        out.flush();
+    }
+
+    private static void recurring(List<String> args, Map<String, String> options) throws SQLException {
+        String action = args.isEmpty() ? "list" : args.get(0);
+        Database.init();
+        switch (action) {
+            case "list" -> {
+                PrintWriter out = stdout();
+                for (RecurringDAO.Rule r : RecurringDAO.getRules()) {
+                    out.println(r.id() + "\t" + r.frequency().name().toLowerCase(Locale.ROOT) + "/" + r.every()
+                            + "\t" + r.start() + "\t" + (r.end() == null ? "" : r.end())
+                            + "\t" + CategoryRegistry.get().name(r.categoryId()) + "\t" + r.amount()
+                            + "\t" + (r.next() == null ? "ended" : "next " + r.next())
+                            + "\t" + (r.note() == null ? "" : r.note()));
+                }
+                out.flush();
+            }
+            case "run" -> {
+                LocalDate day = options.containsKey("date") ? LocalDate.parse(options.get("date")) : LocalDate.now();
+                System.out.println("added\t" + RecurringDAO.materializeDue(day));
+            }
+            case "delete" -> {
+                if (args.size() != 2) throw new IllegalArgumentException("recurring delete takes a rule ID");
+                RecurringDAO.deleteRule(Integer.parseInt(args.get(1)));
+                System.out.println("deleted");
+            }
+            case "add" -> {
+                for (String required : List.of("amount", "category", "every", "start")) {
+                    if (!options.containsKey(required)) throw new IllegalArgumentException("recurring add needs --" + required);
+                }
+                RecurringDAO.Frequency frequency = switch (options.get("every")) {
+                    case "week" -> RecurringDAO.Frequency.WEEKLY;
+                    case "month" -> RecurringDAO.Frequency.MONTHLY;
+                    case "year" -> RecurringDAO.Frequency.YEARLY;
+                    default -> throw new IllegalArgumentException("--every is week, month or year");
+                };
+                int categoryId = CategoryRegistry.get().getOrCreate(options.get("category"));
+                int id = RecurringDAO.addRule(new RecurringDAO.Rule(0, Money.parse(options.get("amount")),
+                        categoryId, options.get("note"), frequency, Integer.parseInt(options.getOrDefault("n", "1")),
+                        LocalDate.parse(options.get("start")),
+                        options.containsKey("end") ? LocalDate.parse(options.get("end")) : null, 0));
+                System.out.println("added rule\t" + id);
+            }
+            default -> throw new IllegalArgumentException("Unknown recurring action: " + action);
+        }
+    }
+
+    // --year[/--month] or --from/--to; with neither, the current month if required, else everything
+    private static ExpenseFilter filter(Map<String, String> options, boolean required) {
+        ExpenseFilter filter = ExpenseFilter.fromParams(options);
+        if (!required || !filter.isAll()) return filter;
+        LocalDate now = LocalDate.now();
+        return ExpenseFilter.month(now.getYear(), now.getMonthValue());
+    }
+
+    // Buffered UTF-8 stdout; results can be large and are piped more often than read
+    private static PrintWriter stdout() {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
     }
 }
@@ -0,0 +1,88 @@
+package com.expensetracker;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * ExpenseDAO calls run on a dedicated executor and returned as futures,
+ * so callers on the JavaFX Application Thread never wait on the disk.
+ * Reads spread over the connection pool; writes queue on the writer.
+ */
+public class AsyncExpenseDAO {
+
+    private static final ExecutorService EXECUTOR =
+            ThreadSupport.newExecutor("dao", ConnectionManager.defaultReaderCount() + 1);
+
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+
+    public static CompletableFuture<Map<Integer, String>> getCategories() {
+        return supply(ExpenseDAO::getCategories);
+    }
+
+    public static CompletableFuture<Integer> getOrCreateCategoryId(String name) {
+        return supply(() -> ExpenseDAO.getOrCreateCategoryId(name));
+    }
+
+    public static CompletableFuture<List<Expense>> getExpensesByMonthYear(int year, int month) {
+        return supply(() -> ExpenseDAO.getExpensesByMonthYear(year, month));
+    }
+
+    public static CompletableFuture<List<Expense>> searchExpenses(String text, ExpenseFilter filter, int limit) {
+        return supply(() -> ExpenseDAO.searchExpenses(text, filter, limit));
+    }
+
+    public static CompletableFuture<Long> countExpenses(ExpenseFilter filter) {
+        return supply(() -> ExpenseDAO.countExpenses(filter));
+    }
+
+    public static CompletableFuture<Money> sumAmount(ExpenseFilter filter) {
+        return supply(() -> ExpenseDAO.sumAmount(filter));
+    }
+
+    // In write-behind mode the writes below complete at their group commit, and fail if it does
+    public static CompletableFuture<Integer> insertExpense(Expense e) {
+        WriteBehindQueue queue = Database.manager().writeBehind();
+        return queue != null ? queue.insert(e) : supply(() -> ExpenseDAO.insertExpense(e));
+    }
+
+    public static CompletableFuture<Void> updateExpense(Expense e) {
+        WriteBehindQueue queue = Database.manager().writeBehind();
+        return queue != null ? queue.update(e) : run(() -> ExpenseDAO.updateExpense(e));
+    }
+
+    public static CompletableFuture<Void> deleteExpense(int id) {
+        WriteBehindQueue queue = Database.manager().writeBehind();
+        return queue != null ? queue.delete(id) : run(() -> ExpenseDAO.deleteExpense(id));
+    }
+
+    public static CompletableFuture<Map<String, Money>> getMonthlyTotalsByCategory(int year, int month) {
+        return supply(() -> ExpenseDAO.getMonthlyTotalsByCategory(year, month));
+    }
+
+    public static CompletableFuture<Map<LocalDate, Money>> getDailyTotals(int year, int month) {
+        return supply(() -> ExpenseDAO.getDailyTotals(year, month));
+    }
+
+    // Cancelling the returned future before it starts skips the query entirely.
+    // Work submitted inside Database.bind runs against the same database.
+    public static <T> CompletableFuture<T> supply(Supplier<T> work) {
+        ConnectionManager db = Database.boundManager();
+        return db == null
+                ? CompletableFuture.supplyAsync(work, EXECUTOR)
+                : CompletableFuture.supplyAsync(() -> Database.bind(db, work), EXECUTOR);
+    }
+
+    public static CompletableFuture<Void> run(Runnable work) {
+        return supply(() -> {
+            work.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package com.expensetracker;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The budgets table. Changes are picked up by the database's BudgetTracker
+ * before the writer is released.
+ */
+public class BudgetDAO {
+
+    /**
+     * Sets the limit of the budget for categoryId (null = all spending) and
+     * period, creating it if needed. warnPercent is the share of the limit
+     * that raises a warning first; 0 for none.
+     */
+    public static void setBudget(Integer categoryId, BudgetTracker.Period period,
+                                 Money limit, int warnPercent) throws SQLException {
+        if (!limit.isPositive()) throw new IllegalArgumentException("Budget limit must be positive");
+        if (warnPercent < 0 || warnPercent > 100) throw new IllegalArgumentException("warnPercent must be 0-100");
+        String sql = """
+                INSERT INTO budgets (category_id, period, limit_minor, warn_percent)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (category_id, period)
+                DO UPDATE SET limit_minor = excluded.limit_minor, warn_percent = excluded.warn_percent
+                """;
+        Metrics.Span span = Metrics.start("dao.setBudget");
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            ps.setInt(1, categoryId == null ? 0 : categoryId);
+            ps.setString(2, period.name());
+            ps.setLong(3, limit.minorUnits());
+            ps.setInt(4, warnPercent);
+            ps.executeUpdate();
+            span.executed(sql);
+            BudgetTracker.get().load();
+        } catch (SQLException e) {
+            span.failed();
+            throw e;
+        } finally {
+            span.end(1);
+        }
+    }
+
+    // Removes the budget for categoryId (null = all spending) and period, if any
+    public static void deleteBudget(Integer categoryId, BudgetTracker.Period period) throws SQLException {
+        String sql = "DELETE FROM budgets WHERE category_id = ? AND period = ?";
+        Metrics.Span span = Metrics.start("dao.deleteBudget");
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            ps.setInt(1, categoryId == null ? 0 : categoryId);
+            ps.setString(2, period.name());
+            ps.executeUpdate();
+            span.executed(sql);
+            BudgetTracker.get().load();
+        } catch (SQLException e) {
+            span.failed();
+            throw e;
+        } finally {
+            span.end(1);
+        }
+    }
+}
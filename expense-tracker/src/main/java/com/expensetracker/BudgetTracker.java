@@ -0,0 +1,215 @@
+package com.expensetracker;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Budgets of one database, checked as expenses change. Spending per
+ * (month or year, category) and per period overall is kept in memory and
+ * adjusted by each change the ChangeJournal reports, so crossing a
+ * budget's warning level or its limit raises an alert at once without
+ * re-running SUMs. A journal batch (a bulk import chunk, a write-behind
+ * group) is evaluated once at its end.
+ *
+ * Nothing is tracked while no budget is set.
+ */
+public class BudgetTracker {
+
+    public enum Period { MONTH, YEAR }
+
+    /** A limit per period for one category, or for all spending when categoryId is null. */
+    public record Budget(int id, Integer categoryId, Period period, Money limit, int warnPercent) {
+
+        // Spending at which a warning is raised, or -1 for none
+        long warnAt() {
+            return warnPercent > 0 && warnPercent < 100 ? limit.minorUnits() * warnPercent / 100 : -1;
+        }
+    }
+
+    public enum Level { WARNING, EXCEEDED }
+
+    /** Spending in the period starting periodStart reached budget's warning level or limit. */
+    public record Alert(Budget budget, LocalDate periodStart, Money spent, Level level) {}
+
+    /** Where a budget stands in the period starting periodStart. */
+    public record Status(Budget budget, LocalDate periodStart, Money spent) {
+
+        public Money remaining() {
+            return budget.limit().minus(spent);
+        }
+
+        public boolean exceeded() {
+            return spent.compareTo(budget.limit()) >= 0;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void onAlerts(List<Alert> alerts);
+    }
+
+    private final ConnectionManager db;
+    private final ChangeJournal.Listener journalListener = this::apply;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private Map<Long, Budget> budgets = new HashMap<>();  // by totals key without the period number
+    private final Map<Long, long[]> totals = new HashMap<>(); // totals key -> {minor units}
+    private boolean tracking;
+
+    BudgetTracker(ConnectionManager db) {
+        this.db = db;
+    }
+
+    // Budgets of the app's database
+    public static BudgetTracker get() {
+        return Database.manager().budgets();
+    }
+
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * (Re)reads the budgets table and, the first time there is a budget,
+     * the current totals. Holds the writer throughout, so no change is
+     * published between reading the totals and listening for changes.
+     */
+    public void load() throws SQLException {
+        try (PooledConnection pc = db.writer()) {
+            Map<Long, Budget> loaded = new HashMap<>();
+            try (ResultSet rs = pc.prepare("""
+                    SELECT id, category_id, period, limit_minor, warn_percent FROM budgets
+                    """).executeQuery()) {
+                while (rs.next()) {
+                    int categoryId = rs.getInt(2);
+                    Budget b = new Budget(rs.getInt(1), categoryId == 0 ? null : categoryId,
+                            Period.valueOf(rs.getString(3)), Money.ofMinor(rs.getLong(4)), rs.getInt(5));
+                    loaded.put(budgetKey(b.period(), categoryId), b);
+                }
+            }
+            synchronized (this) {
+                budgets = loaded;
+                if (!loaded.isEmpty() && !tracking) {
+                    loadTotals(pc);
+                    db.journal().subscribe(journalListener);
+                    tracking = true;
+                } else if (loaded.isEmpty() && tracking) {
+                    db.journal().unsubscribe(journalListener);
+                    totals.clear();
+                    tracking = false;
+                }
+            }
+        }
+    }
+
+    // Monthly per-category totals from the summary table; everything else adds up from them
+    private void loadTotals(PooledConnection pc) throws SQLException {
+        totals.clear();
+        try (ResultSet rs = pc.prepare("""
+                SELECT year, month, category_id, total_minor FROM monthly_category_totals
+                """).executeQuery()) {
+            while (rs.next()) {
+                add(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getLong(4), null);
+            }
+        }
+    }
+
+    public synchronized List<Budget> budgets() {
+        return new ArrayList<>(budgets.values());
+    }
+
+    /** Every budget's standing in the period containing day. */
+    public synchronized List<Status> status(LocalDate day) {
+        List<Status> list = new ArrayList<>();
+        for (Budget b : budgets.values()) {
+            int month = b.period() == Period.MONTH ? day.getMonthValue() : 0;
+            long[] t = totals.get(key(day.getYear(), month, categoryKey(b)));
+            list.add(new Status(b, periodStart(day.getYear(), month), Money.ofMinor(t == null ? 0 : t[0])));
+        }
+        list.sort(Comparator.comparing((Status s) -> s.budget().period())
+                .thenComparing(s -> s.budget().categoryId() == null ? 0 : s.budget().categoryId()));
+        return list;
+    }
+
+    // Journal listener: O(1) per change, then one check per budgeted total the batch touched
+    private void apply(List<ChangeJournal.Change> changes) {
+        List<Alert> alerts = new ArrayList<>();
+        synchronized (this) {
+            Map<Long, Long> before = new HashMap<>(); // touched budgeted totals -> value before the batch
+            for (ChangeJournal.Change c : changes) {
+                if (c.before() != null) add(c.before(), -c.before().getAmount().minorUnits(), before);
+                if (c.after() != null) add(c.after(), c.after().getAmount().minorUnits(), before);
+            }
+            before.forEach((key, old) -> check(key, old, totals.get(key)[0], alerts));
+        }
+        if (alerts.isEmpty()) return;
+        for (Listener l : listeners) {
+            try {
+                l.onAlerts(alerts);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void add(Expense e, long amount, Map<Long, Long> before) {
+        LocalDate d = e.getDate();
+        add(d.getYear(), d.getMonthValue(), e.getCategoryId(), amount, before);
+    }
+
+    // One expense's amount counts towards its month and year, each per category and overall
+    private void add(int year, int month, int categoryId, long amount, Map<Long, Long> before) {
+        bump(key(year, month, categoryId), amount, before);
+        bump(key(year, month, 0), amount, before);
+        bump(key(year, 0, categoryId), amount, before);
+        bump(key(year, 0, 0), amount, before);
+    }
+
+    private void bump(long key, long amount, Map<Long, Long> before) {
+        long[] t = totals.computeIfAbsent(key, k -> new long[1]);
+        if (before != null && budgets.containsKey(budgetKeyOf(key))) before.putIfAbsent(key, t[0]);
+        t[0] += amount;
+    }
+
+    // Alerts only on the way up, once per level crossed
+    private void check(long key, long old, long now, List<Alert> alerts) {
+        Budget b = budgets.get(budgetKeyOf(key));
+        long limit = b.limit().minorUnits();
+        Level level = null;
+        if (old < limit && now >= limit) level = Level.EXCEEDED;
+        else if (b.warnAt() >= 0 && old < b.warnAt() && now >= b.warnAt()) level = Level.WARNING;
+        if (level != null) {
+            int year = (int) (key >>> 36), month = (int) (key >>> 32) & 0xF;
+            alerts.add(new Alert(b, periodStart(year, month), Money.ofMinor(now), level));
+        }
+    }
+
+    // --- keys: year << 36 | month << 32 | category id; month 0 = whole year, category 0 = all ---
+
+    private static long key(int year, int month, int categoryId) {
+        return (long) year << 36 | (long) month << 32 | categoryId;
+    }
+
+    private static long budgetKey(Period period, int categoryId) {
+        return key(0, period == Period.MONTH ? 1 : 0, categoryId);
+    }
+
+    private static long budgetKeyOf(long key) {
+        int month = (int) (key >>> 32) & 0xF;
+        return budgetKey(month == 0 ? Period.YEAR : Period.MONTH, (int) key);
+    }
+
+    private static int categoryKey(Budget b) {
+        return b.categoryId() == null ? 0 : b.categoryId();
+    }
+
+    private static LocalDate periodStart(int year, int month) {
+        return LocalDate.of(year, Math.max(month, 1), 1);
+    }
+}
@@ -0,0 +1,264 @@
+package com.expensetracker;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Imports expenses from CSV / bank statement exports.
+ * The file is streamed record by record; rows are inserted with JDBC
+ * batches, one transaction per chunk, and categories are resolved through
+ * the in-memory CategoryRegistry instead of a lookup per row.
+ *
+ * Default layout is the one Export CSV writes: Date,Category,Amount,Note.
+ */
+public class BulkImporter {
+
+    public interface ProgressListener {
+        void onProgress(long recordsRead, long imported, long rejected);
+    }
+
+    public record RejectedRow(long line, String reason) {}
+
+    public record Result(long imported, long rejected, List<RejectedRow> rejectedRows) {}
+
+    private static final int MAX_REJECTED_KEPT = 1000;
+
+    private int batchSize = 5000;
+    private DateTimeFormatter dateFormat = DateTimeFormatter.ISO_LOCAL_DATE;
+    private int dateColumn = 0;
+    private int categoryColumn = 1;
+    private int amountColumn = 2;
+    private int noteColumn = 3;
+
+    // Rows per transaction
+    public BulkImporter batchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be >= 1");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    // e.g. "dd/MM/yyyy" for most bank statements
+    public BulkImporter dateFormat(String pattern) {
+        this.dateFormat = DateTimeFormatter.ofPattern(pattern);
+        return this;
+    }
+
+    // 0-based column positions; pass -1 for note if the file has none
+    public BulkImporter columns(int date, int category, int amount, int note) {
+        this.dateColumn = date;
+        this.categoryColumn = category;
+        this.amountColumn = amount;
+        this.noteColumn = note;
+        return this;
+    }
+
+    public Result importFile(Path file, ProgressListener listener) throws IOException, SQLException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader, listener);
+        }
+    }
+
+    /**
+     * Imports every record from reader. Chunks already committed stay in the
+     * database if a later chunk fails or the thread is interrupted.
+     */
+    public Result importFrom(Reader reader, ProgressListener listener) throws IOException, SQLException {
+        Chunk chunk = new Chunk(batchSize);
+        List<RejectedRow> rejectedRows = new ArrayList<>();
+        long read = 0, imported = 0, rejected = 0;
+
+        CsvReader csv = new CsvReader(reader);
+        boolean first = true;
+        List<String> rec;
+        while ((rec = csv.next()) != null) {
+            if (first) {
+                first = false;
+                stripBom(rec);
+                if (isHeader(rec)) continue;
+            }
+            if (rec.size() == 1 && rec.get(0).isBlank()) continue;
+            read++;
+
+            String error = chunk.add(rec);
+            if (error != null) {
+                rejected++;
+                if (rejectedRows.size() < MAX_REJECTED_KEPT) {
+                    rejectedRows.add(new RejectedRow(csv.getRecordLine(), error));
+                }
+            }
+
+            if (chunk.size == batchSize) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Import cancelled after " + imported + " rows");
+                }
+                imported += flush(chunk);
+                if (listener != null) listener.onProgress(read, imported, rejected);
+            }
+        }
+        // The summary tables need no rebuild: their triggers keep them exact row by row
+        if (chunk.size > 0) {
+            imported += flush(chunk);
+        }
+        if (listener != null) listener.onProgress(read, imported, rejected);
+        return new Result(imported, rejected, rejectedRows);
+    }
+
+    private int flush(Chunk chunk) throws SQLException {
+        int n = chunk.size;
+        // Resolve categories first: new ones are created (and cached) outside the chunk's transaction
+        CategoryRegistry registry = CategoryRegistry.get();
+        for (int i = 0; i < n; i++) {
+            chunk.categoryIds[i] = registry.getOrCreate(chunk.categories[i]);
+        }
+
+        Metrics.Span span = Metrics.start("import.flush");
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            Connection conn = pc.connection();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement ps = pc.prepare(ExpenseDAO.INSERT_SQL);
+                for (int i = 0; i < n; i++) {
+                    ps.setLong(1, chunk.amounts[i]);
+                    ps.setString(2, chunk.dates[i]);
+                    ps.setInt(3, chunk.categoryIds[i]);
+                    ps.setString(4, chunk.notes[i]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                span.executed(ExpenseDAO.INSERT_SQL);
+                long lastId = lastInsertId(pc);
+                conn.commit();
+                // Still holding the writer, so the journal sees this chunk in commit order
+                publish(chunk, lastId);
+            } catch (SQLException e) {
+                conn.rollback();
+                span.failed();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            span.end(n);
+        }
+        chunk.clear();
+        return n;
+    }
+
+    private static long lastInsertId(PooledConnection pc) throws SQLException {
+        try (ResultSet rs = pc.prepare("SELECT last_insert_rowid()").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // With AUTOINCREMENT and the writer held throughout, a chunk's ids are consecutive up to lastId
+    private static void publish(Chunk chunk, long lastId) {
+        ChangeJournal journal = ChangeJournal.get();
+        if (!journal.hasListeners()) return;
+        CategoryRegistry registry = CategoryRegistry.get();
+        List<ChangeJournal.Change> changes = new ArrayList<>(chunk.size);
+        long firstId = lastId - chunk.size + 1;
+        for (int i = 0; i < chunk.size; i++) {
+            Expense e = new Expense((int) (firstId + i), Money.ofMinor(chunk.amounts[i]),
+                    LocalDate.parse(chunk.dates[i]), chunk.categoryIds[i],
+                    registry.name(chunk.categoryIds[i]), chunk.notes[i]);
+            changes.add(new ChangeJournal.Change(ChangeJournal.Op.INSERT, null, e));
+        }
+        journal.publish(changes);
+    }
+
+    private static void stripBom(List<String> rec) {
+        if (!rec.isEmpty() && rec.get(0).startsWith("\uFEFF")) {
+            rec.set(0, rec.get(0).substring(1));
+        }
+    }
+
+    private boolean isHeader(List<String> rec) {
+        return dateColumn < rec.size()
+                && rec.get(dateColumn).trim().equalsIgnoreCase("date");
+    }
+
+    // Parsed rows waiting to be written, kept in flat arrays and reused per chunk
+    private final class Chunk {
+        final long[] amounts;
+        final String[] dates;
+        final String[] categories;
+        final int[] categoryIds;
+        final String[] notes;
+        int size;
+
+        Chunk(int capacity) {
+            amounts = new long[capacity];
+            dates = new String[capacity];
+            categories = new String[capacity];
+            categoryIds = new int[capacity];
+            notes = new String[capacity];
+        }
+
+        // Returns an error message, or null if the row was added
+        String add(List<String> rec) {
+            String dateStr = column(rec, dateColumn);
+            String category = column(rec, categoryColumn);
+            String amountStr = column(rec, amountColumn);
+            if (dateStr == null || dateStr.isBlank()) return "Missing date";
+            if (category == null || category.isBlank()) return "Missing category";
+            if (amountStr == null || amountStr.isBlank()) return "Missing amount";
+
+            LocalDate date;
+            try {
+                date = LocalDate.parse(dateStr.trim(), dateFormat);
+            } catch (DateTimeParseException e) {
+                return "Invalid date: " + dateStr;
+            }
+            Money amount;
+            try {
+                amount = parseAmount(amountStr);
+            } catch (NumberFormatException e) {
+                return "Invalid amount: " + amountStr;
+            }
+            if (!amount.isPositive()) return "Amount must be greater than zero: " + amountStr;
+
+            String note = noteColumn < 0 ? null : column(rec, noteColumn);
+            amounts[size] = amount.minorUnits();
+            dates[size] = date.toString();
+            categories[size] = category.trim();
+            notes[size] = note == null || note.isEmpty() ? null : note;
+            size++;
+            return null;
+        }
+
+        void clear() {
+            Arrays.fill(dates, 0, size, null);
+            Arrays.fill(categories, 0, size, null);
+            Arrays.fill(notes, 0, size, null);
+            size = 0;
+        }
+    }
+
+    private static String column(List<String> rec, int index) {
+        return index >= 0 && index < rec.size() ? rec.get(index) : null;
+    }
+
+    // Accepts "1,200.50", "₹ 1200.50", "$12" etc.; more than two decimals is an error
+    static Money parseAmount(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.' || c == '-') sb.append(c);
+            else if (c != ',' && !Character.isWhitespace(c)
+                    && Character.getType(c) != Character.CURRENCY_SYMBOL) {
+                throw new NumberFormatException(s);
+            }
+        }
+        return Money.parse(sb.toString());
+    }
+}
@@ -0,0 +1,116 @@
+package com.expensetracker;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process cache of the categories table for one database, loaded once
+ * and updated write-through when a category is created. Name lookups are
+ * case-insensitive, so "food" resolves to an existing "Food".
+ */
+public class CategoryRegistry {
+
+    private final ConnectionManager db;
+    private final ConcurrentHashMap<Integer, String> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> byName = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    CategoryRegistry(ConnectionManager db) {
+        this.db = db;
+    }
+
+    // Registry of the app's database
+    public static CategoryRegistry get() {
+        return Database.manager().categories();
+    }
+
+    /** (Re)reads the categories table. */
+    public synchronized void load() throws SQLException {
+        Map<Integer, String> ids = new HashMap<>();
+        try (PooledConnection pc = db.reader();
+             ResultSet rs = pc.prepare("SELECT id, name FROM categories ORDER BY id").executeQuery()) {
+            while (rs.next()) {
+                ids.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        byId.clear();
+        byName.clear();
+        ids.forEach(this::remember);
+        loaded = true;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            try {
+                load();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to load categories: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void remember(int id, String name) {
+        byId.put(id, name);
+        // Lowest id wins if the table has names differing only in case
+        byName.merge(key(name), id, Math::min);
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** All categories as id -> name, ordered by name. */
+    public Map<Integer, String> all() {
+        ensureLoaded();
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>(byId.entrySet());
+        entries.sort(Map.Entry.comparingByValue());
+        Map<Integer, String> map = new LinkedHashMap<>();
+        for (Map.Entry<Integer, String> e : entries) {
+            map.put(e.getKey(), e.getValue());
+        }
+        return map;
+    }
+
+    public String name(int id) {
+        ensureLoaded();
+        return byId.get(id);
+    }
+
+    // Id for name (any case), or null if there is no such category
+    public Integer find(String name) {
+        ensureLoaded();
+        return name == null ? null : byName.get(key(name));
+    }
+
+    /**
+     * Id for name, creating the category if needed. Call outside of an open
+     * transaction: the cache is updated as soon as the row is inserted.
+     */
+    public int getOrCreate(String name) throws SQLException {
+        if (name == null) throw new IllegalArgumentException("Category name is null");
+        String trimmed = name.trim();
+        if (trimmed.isEmpty()) throw new IllegalArgumentException("Category name is empty");
+
+        Integer id = find(trimmed);
+        if (id != null) return id;
+
+        // Holding the writer serialises creators, so check again before inserting
+        try (PooledConnection pc = db.writer()) {
+            id = byName.get(key(trimmed));
+            if (id != null) return id;
+
+            PreparedStatement ps = pc.prepareWithKeys("INSERT INTO categories(name) VALUES (?)");
+            ps.setString(1, trimmed);
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (!rs.next()) throw new SQLException("Failed to retrieve new category id");
+                id = rs.getInt(1);
+            }
+            remember(id, trimmed);
+            return id;
+        }
+    }
+}
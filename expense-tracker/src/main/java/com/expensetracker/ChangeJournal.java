@@ -0,0 +1,71 @@
+package com.expensetracker;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process feed of committed expense changes for one database. Every
+ * mutation in ExpenseDAO and BulkImporter publishes here after it commits;
+ * the durable record is the expense_changes table, filled by triggers.
+ * Listeners are called on the writing thread and must hand off anything slow.
+ */
+public class ChangeJournal {
+
+    public enum Op { INSERT, UPDATE, DELETE }
+
+    /** One row's change; before is null for inserts, after is null for deletes. */
+    public record Change(Op op, Expense before, Expense after) {
+
+        public int expenseId() {
+            return after != null ? after.getId() : before.getId();
+        }
+
+        // Signed change to the total: +after, -before
+        public long amountDelta() {
+            return (after == null ? 0 : after.getAmount().minorUnits())
+                    - (before == null ? 0 : before.getAmount().minorUnits());
+        }
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void onChanges(List<Change> changes);
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Journal of the app's database
+    public static ChangeJournal get() {
+        return Database.manager().journal();
+    }
+
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Lets bulk writers skip building changes nobody will see
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    public void publish(Change change) {
+        publish(List.of(change));
+    }
+
+    public void publish(List<Change> changes) {
+        if (changes.isEmpty()) return;
+        List<Change> batch = List.copyOf(changes);
+        for (Listener l : listeners) {
+            try {
+                l.onChanges(batch);
+            } catch (RuntimeException e) {
+                // One bad listener must not undo a committed write for the caller
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.expensetracker;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.PieChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.general.DefaultPieDataset;
+
+import javax.swing.SwingUtilities;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Opens the month charts. Each (chart type, month) keeps one window and one
+ * dataset; reopening it costs nothing while the data version is unchanged,
+ * and otherwise the data is reloaded off the FX thread and the existing
+ * dataset is updated in place. Only the most recently used charts are kept.
+ */
+public class ChartService {
+
+    public enum ChartType { CATEGORY_PIE, DAILY_BAR }
+
+    /** JAVAFX draws with javafx.scene.chart; JFREECHART goes through a SwingNode. */
+    public enum Renderer { JAVAFX, JFREECHART }
+
+    private static final int MAX_CHARTS = 8;
+
+    private record Key(ChartType type, YearMonth month) {}
+
+    /** A chart on screen; update() runs on the FX thread with label -> value in display order. */
+    private interface ChartView {
+        Node node();
+        void update(Map<String, Double> data);
+    }
+
+    private static final class Entry {
+        final Stage stage;
+        final ChartView view;
+        long version = -1;
+        CompletableFuture<?> pending;
+
+        Entry(Stage stage, ChartView view) {
+            this.stage = stage;
+            this.view = view;
+        }
+    }
+
+    private final Window owner;
+    private final Renderer renderer;
+
+    // Access-ordered; an evicted chart's window is closed for good
+    private final Map<Key, Entry> charts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() <= MAX_CHARTS) return false;
+            Entry e = eldest.getValue();
+            if (e.pending != null) e.pending.cancel(false);
+            e.stage.close();
+            return true;
+        }
+    };
+
+    public ChartService(Window owner, Renderer renderer) {
+        this.owner = owner;
+        this.renderer = renderer;
+    }
+
+    // Renderer named by -Dexpensetracker.charts (javafx or jfreechart), JavaFX by default
+    public static Renderer defaultRenderer() {
+        String name = System.getProperty("expensetracker.charts", "javafx");
+        return Renderer.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /** Shows the chart, loading its data first if it is missing or stale. */
+    public void show(ChartType type, YearMonth month) {
+        Key key = new Key(type, month);
+        Entry entry = charts.get(key);
+        if (entry == null) {
+            entry = create(key);
+            charts.put(key, entry);
+        }
+        if (entry.version >= 0) {
+            entry.stage.show();
+            entry.stage.toFront();
+        }
+        reload(key, entry, true);
+    }
+
+    /** Reloads the open charts whose data has changed since they were drawn. */
+    public void refreshOpen() {
+        charts.forEach((key, entry) -> {
+            if (entry.stage.isShowing()) reload(key, entry, false);
+        });
+    }
+
+    private void reload(Key key, Entry entry, boolean showWhenLoaded) {
+        long version = Database.dataVersion();
+        if (entry.version == version || entry.pending != null) return;
+
+        // Read the version before the data: a write during the load leaves the chart stale, not wrong
+        CompletableFuture<Map<String, Double>> data = AsyncExpenseDAO.supply(() -> load(key));
+        entry.pending = data;
+        FxAsync.then(data, values -> {
+            entry.pending = null;
+            entry.view.update(values);
+            entry.version = version;
+            if (showWhenLoaded && !entry.stage.isShowing()) {
+                entry.stage.show();
+                entry.stage.toFront();
+            }
+            // Written to again while loading
+            if (entry.stage.isShowing() && Database.dataVersion() != version) reload(key, entry, false);
+        }, ex -> {
+            entry.pending = null;
+            ex.printStackTrace();
+        });
+    }
+
+    // Runs off the FX thread: query and convert to plot values
+    private static Map<String, Double> load(Key key) {
+        int year = key.month().getYear();
+        int month = key.month().getMonthValue();
+        Map<String, Double> values = new LinkedHashMap<>();
+        switch (key.type()) {
+            case CATEGORY_PIE -> ExpenseDAO.getMonthlyTotalsByCategory(year, month)
+                    .forEach((name, total) -> values.put(name, total.toDouble()));
+            case DAILY_BAR -> ExpenseDAO.getDailyTotals(year, month)
+                    .forEach((date, total) -> values.put(date.toString(), total.toDouble()));
+        }
+        return values;
+    }
+
+    private Entry create(Key key) {
+        String period = key.month().getMonth() + " " + key.month().getYear();
+        String title = key.type() == ChartType.CATEGORY_PIE
+                ? "Expenses by Category - " + period
+                : "Daily Expenses - " + period;
+
+        ChartView view = switch (renderer) {
+            case JAVAFX -> key.type() == ChartType.CATEGORY_PIE ? new FxPieView(title) : new FxBarView(title);
+            case JFREECHART -> key.type() == ChartType.CATEGORY_PIE ? new JFreePieView(title) : new JFreeBarView(title);
+        };
+
+        Stage stage = new Stage();
+        if (owner != null) stage.initOwner(owner);
+        stage.setTitle(title);
+        stage.setScene(new Scene(new BorderPane(view.node()), 800, 600));
+        return new Entry(stage, view);
+    }
+
+    private static final class FxPieView implements ChartView {
+        private final PieChart chart = new PieChart();
+
+        FxPieView(String title) {
+            chart.setTitle(title);
+            chart.setAnimated(false);
+        }
+
+        @Override
+        public Node node() { return chart; }
+
+        @Override
+        public void update(Map<String, Double> data) {
+            ObservableList<PieChart.Data> slices = chart.getData();
+            Map<String, PieChart.Data> existing = new HashMap<>();
+            for (PieChart.Data d : slices) existing.put(d.getName(), d);
+
+            List<PieChart.Data> updated = new ArrayList<>(data.size());
+            data.forEach((name, value) -> {
+                PieChart.Data d = existing.remove(name);
+                if (d == null) {
+                    d = new PieChart.Data(name, value);
+                } else {
+                    d.setPieValue(value);
+                }
+                updated.add(d);
+            });
+            if (!updated.equals(slices)) slices.setAll(updated);
+        }
+    }
+
+    private static final class FxBarView implements ChartView {
+        private final BarChart<String, Number> chart = new BarChart<>(new CategoryAxis(), new NumberAxis());
+        private final XYChart.Series<String, Number> series = new XYChart.Series<>();
+
+        FxBarView(String title) {
+            chart.setTitle(title);
+            chart.setAnimated(false);
+            chart.setLegendVisible(false);
+            chart.getXAxis().setLabel("Date");
+            chart.getYAxis().setLabel("Amount");
+            series.setName("Expense");
+            chart.getData().add(series);
+        }
+
+        @Override
+        public Node node() { return chart; }
+
+        @Override
+        public void update(Map<String, Double> data) {
+            ObservableList<XYChart.Data<String, Number>> bars = series.getData();
+            Map<String, XYChart.Data<String, Number>> existing = new HashMap<>();
+            for (XYChart.Data<String, Number> d : bars) existing.put(d.getXValue(), d);
+
+            List<XYChart.Data<String, Number>> updated = new ArrayList<>(data.size());
+            data.forEach((day, value) -> {
+                XYChart.Data<String, Number> d = existing.remove(day);
+                if (d == null) {
+                    d = new XYChart.Data<>(day, value);
+                } else {
+                    d.setYValue(value);
+                }
+                updated.add(d);
+            });
+            if (!updated.equals(bars)) bars.setAll(updated);
+        }
+    }
+
+    private static final class JFreePieView implements ChartView {
+        private final DefaultPieDataset<String> dataset = new DefaultPieDataset<>();
+        private final Node node;
+
+        JFreePieView(String title) {
+            node = ChartUtils.toSwingNode(ChartUtils.createCategoryPieChart(dataset, title));
+        }
+
+        @Override
+        public Node node() { return node; }
+
+        @Override
+        public void update(Map<String, Double> data) {
+            SwingUtilities.invokeLater(() -> {
+                for (String name : new ArrayList<String>(dataset.getKeys())) {
+                    if (!data.containsKey(name)) dataset.remove(name);
+                }
+                data.forEach(dataset::setValue);
+            });
+        }
+    }
+
+    private static final class JFreeBarView implements ChartView {
+        private final DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        private final Node node;
+
+        JFreeBarView(String title) {
+            node = ChartUtils.toSwingNode(ChartUtils.createDailyBarChart(dataset, title));
+        }
+
+        @Override
+        public Node node() { return node; }
+
+        @Override
+        public void update(Map<String, Double> data) {
+            SwingUtilities.invokeLater(() -> {
+                // Columns stay in first-seen order, so start over when the set of days changes
+                if (!dataset.getColumnKeys().equals(new ArrayList<>(data.keySet()))) dataset.clear();
+                data.forEach((day, value) -> dataset.setValue(value, "Expense", day));
+            });
+        }
+    }
+}
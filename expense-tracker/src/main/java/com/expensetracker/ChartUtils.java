@@ -1,70 +1,44 @@
 package com.expensetracker;
 
-import javafx.application.Platform;
 import javafx.embed.swing.SwingNode;
-import javafx.scene.Scene;
-import javafx.scene.layout.BorderPane;
-import javafx.stage.Stage;
-import javafx.stage.Window;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
 import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.general.DefaultPieDataset;
 
-import java.time.LocalDate;
-import java.util.Map;
+import javax.swing.SwingUtilities;
 
+/**
+ * JFreeChart charts, shown in JavaFX through a SwingNode. The datasets
+ * are passed in so callers can keep them and update them in place; they
+ * belong to the Swing thread once the chart is on screen.
+ */
 public class ChartUtils {
 
-    public static void showCategoryPieChart(Window owner,
-                                            Map<String, Double> data,
-                                            String title) {
-        DefaultPieDataset<String> dataset = new DefaultPieDataset<>();
-        data.forEach(dataset::setValue);
-
-        JFreeChart chart = ChartFactory.createPieChart(
+    public static JFreeChart createCategoryPieChart(DefaultPieDataset<String> dataset,
+                                                    String title) {
+        return ChartFactory.createPieChart(
                 title,
                 dataset,
                 true, true, false
         );
-
-        showInSwingWindow(owner, chart, title);
     }
 
-    public static void showDailyBarChart(Window owner,
-                                         Map<LocalDate, Double> data,
-                                         String title) {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-        data.forEach((date, total) ->
-                dataset.addValue(total, "Expense", date.toString())
-        );
-
-        JFreeChart chart = ChartFactory.createBarChart(
+    public static JFreeChart createDailyBarChart(DefaultCategoryDataset dataset,
+                                                 String title) {
+        return ChartFactory.createBarChart(
                 title,
                 "Date",
                 "Amount",
                 dataset
         );
-
-        showInSwingWindow(owner, chart, title);
     }
 
-    private static void showInSwingWindow(Window owner,
-                                          JFreeChart chart,
-                                          String title) {
+    // The panel has to be created on the Swing thread
+    public static SwingNode toSwingNode(JFreeChart chart) {
         SwingNode swingNode = new SwingNode();
-        Platform.runLater(() -> {
-            ChartPanel panel = new ChartPanel(chart);
-            swingNode.setContent(panel);
-        });
-
-        BorderPane root = new BorderPane(swingNode);
-        Scene scene = new Scene(root, 800, 600);
-        Stage stage = new Stage();
-        if (owner != null) stage.initOwner(owner);
-        stage.setTitle(title);
-        stage.setScene(scene);
-        stage.show();
+        SwingUtilities.invokeLater(() -> swingNode.setContent(new ChartPanel(chart)));
+        return swingNode;
     }
 }
@@ -0,0 +1,287 @@
+package com.expensetracker;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the connections to one SQLite file open for the life of the app:
+ * a single writer (SQLite only allows one anyway) and a bounded pool of
+ * read-only connections. The database runs in WAL mode so readers never
+ * wait for the writer.
+ */
+public class ConnectionManager implements AutoCloseable {
+
+    private static final int BUSY_TIMEOUT_MS = 5000;
+    private static final long READER_WAIT_SECONDS = 30;
+
+    private final String url;
+    private final int maxReaders;
+    private final boolean readOnly;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private PooledConnection writer;
+    private long writerChanges;
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    private final BlockingQueue<PooledConnection> idleReaders;
+    private final List<PooledConnection> allReaders = new ArrayList<>();
+    private volatile CategoryRegistry categories;
+    private volatile BudgetTracker budgets;
+    private volatile RangeSumIndex rangeSums;
+    private final ChangeJournal journal = new ChangeJournal();
+    private volatile WriteBehindQueue writeBehind;
+    private volatile ExpenseSnapshot snapshot;
+    private volatile boolean initialized;
+    private volatile boolean closed;
+
+    public ConnectionManager(String url, int maxReaders) {
+        this(url, maxReaders, false);
+    }
+
+    /**
+     * With readOnly, only readers are handed out; the file must already
+     * exist and not be in WAL mode (see LedgerRouter.archive).
+     */
+    public ConnectionManager(String url, int maxReaders, boolean readOnly) {
+        if (maxReaders < 1) throw new IllegalArgumentException("maxReaders must be >= 1");
+        this.url = url;
+        this.maxReaders = maxReaders;
+        this.readOnly = readOnly;
+        this.idleReaders = new ArrayBlockingQueue<>(maxReaders);
+        this.initialized = readOnly;
+    }
+
+    public ConnectionManager(String url) {
+        this(url, defaultReaderCount());
+    }
+
+    public static int defaultReaderCount() {
+        return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public String getUrl() { return url; }
+
+    public int getMaxReaders() { return maxReaders; }
+
+    public boolean isReadOnly() { return readOnly; }
+
+    // Category cache for this database, created on first use
+    public CategoryRegistry categories() {
+        CategoryRegistry c = categories;
+        if (c == null) {
+            synchronized (this) {
+                c = categories;
+                if (c == null) {
+                    c = new CategoryRegistry(this);
+                    categories = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    // Budget checks for this database, created on first use
+    public BudgetTracker budgets() {
+        BudgetTracker b = budgets;
+        if (b == null) {
+            synchronized (this) {
+                b = budgets;
+                if (b == null) {
+                    b = new BudgetTracker(this);
+                    budgets = b;
+                }
+            }
+        }
+        return b;
+    }
+
+    // Date-range totals for this database, created on first use
+    public RangeSumIndex rangeSums() {
+        RangeSumIndex r = rangeSums;
+        if (r == null) {
+            synchronized (this) {
+                r = rangeSums;
+                if (r == null) {
+                    r = new RangeSumIndex(this);
+                    rangeSums = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    // Committed expense changes for this database
+    public ChangeJournal journal() {
+        return journal;
+    }
+
+    /**
+     * Increases every time a write through this manager changes rows, so
+     * caches can tell whether what they hold is still current.
+     */
+    public long dataVersion() {
+        return dataVersion.get();
+    }
+
+    // Queue for expense mutations in write-behind mode, or null when writes go straight to SQLite
+    public WriteBehindQueue writeBehind() {
+        return writeBehind;
+    }
+
+    void setWriteBehind(WriteBehindQueue queue) {
+        writeBehind = queue;
+    }
+
+    // Last refreshed columnar snapshot, or null; see ExpenseSnapshot.current()
+    ExpenseSnapshot snapshot() {
+        return snapshot;
+    }
+
+    void setSnapshot(ExpenseSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    // True inside a writer borrow, e.g. a transaction a queued write must not wait behind
+    public boolean holdsWriter() {
+        return writeLock.isHeldByCurrentThread();
+    }
+
+    /**
+     * Borrows the writer connection. Only one thread holds it at a time;
+     * the same thread may borrow it again while holding it. Close the
+     * returned handle to give it back.
+     */
+    public PooledConnection writer() throws SQLException {
+        ensureOpen();
+        if (readOnly) throw new SQLException("Database is read-only: " + url);
+        if (!writeLock.tryLock()) {
+            long waitStart = System.nanoTime();
+            writeLock.lock();
+            Metrics.timer("pool.writerWait").record(System.nanoTime() - waitStart, 0);
+        }
+        try {
+            if (writer == null) {
+                writer = new PooledConnection(openWriter(), false, this::releaseWriter);
+            }
+            return writer;
+        } catch (SQLException | RuntimeException e) {
+            writeLock.unlock();
+            throw e;
+        }
+    }
+
+    /** Borrows a read-only connection, waiting if all of them are in use. */
+    public PooledConnection reader() throws SQLException {
+        ensureOpen();
+        PooledConnection pc = idleReaders.poll();
+        if (pc != null) return pc;
+
+        if (!initialized) {
+            // Make sure the file exists and is in WAL mode before opening read-only
+            writer().close();
+            initialized = true;
+        }
+        synchronized (allReaders) {
+            if (allReaders.size() < maxReaders) {
+                pc = new PooledConnection(openReader(), true, this::release);
+                allReaders.add(pc);
+                return pc;
+            }
+        }
+        long waitStart = System.nanoTime();
+        try {
+            pc = idleReaders.poll(READER_WAIT_SECONDS, TimeUnit.SECONDS);
+            Metrics.timer("pool.readerWait").record(System.nanoTime() - waitStart, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+        if (pc == null) {
+            throw new SQLException("Timed out waiting for a read connection");
+        }
+        return pc;
+    }
+
+    private void releaseWriter(PooledConnection pc) {
+        try {
+            // Only the outermost release; nested borrows may be inside a transaction
+            if (writeLock.getHoldCount() == 1) noteChanges(pc);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // total_changes() counts every row the writer has changed, including by triggers
+    private void noteChanges(PooledConnection pc) {
+        try (ResultSet rs = pc.prepare("SELECT total_changes()").executeQuery()) {
+            long changes = rs.next() ? rs.getLong(1) : 0;
+            if (changes != writerChanges) {
+                writerChanges = changes;
+                dataVersion.incrementAndGet();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        if (closed) {
+            pc.destroy();
+        } else {
+            idleReaders.offer(pc);
+        }
+    }
+
+    private Connection openWriter() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.setBusyTimeout(BUSY_TIMEOUT_MS);
+        return DriverManager.getConnection(url, config.toProperties());
+    }
+
+    private Connection openReader() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        config.setBusyTimeout(BUSY_TIMEOUT_MS);
+        return DriverManager.getConnection(url, config.toProperties());
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) throw new SQLException("Connection manager is closed: " + url);
+    }
+
+    @Override
+    public void close() {
+        // Queued writes still need the writer
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            writeBehind = null;
+            queue.close();
+        }
+        closed = true;
+        writeLock.lock();
+        try {
+            if (writer != null) {
+                writer.destroy();
+                writer = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        List<PooledConnection> idle = new ArrayList<>();
+        idleReaders.drainTo(idle);
+        idle.forEach(PooledConnection::destroy);
+    }
+}
@@ -0,0 +1,107 @@
+package com.expensetracker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 reader: returns one record at a time, so files of any
+ * size can be read without holding them in memory. Handles quoted fields,
+ * doubled quotes and line breaks inside quotes.
+ */
+public class CsvReader implements Closeable {
+
+    private final Reader in;
+    private final char[] buf = new char[64 * 1024];
+    private int pos;
+    private int len;
+
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> record = new ArrayList<>();
+    private long lineNumber;
+    private long recordLine;
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next record. The returned list is reused by the next call,
+     * so copy it if you need to keep it. Returns null at end of input.
+     */
+    public List<String> next() throws IOException {
+        record.clear();
+        field.setLength(0);
+        recordLine = lineNumber + 1;
+
+        int c = read();
+        if (c < 0) return null;
+
+        boolean quoted = false;
+        boolean afterQuote = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    int n = peek();
+                    if (n == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        afterQuote = true;
+                    }
+                } else {
+                    if (c == '\n') lineNumber++;
+                    field.append((char) c);
+                }
+            } else if (c < 0 || c == '\n' || c == '\r') {
+                if (c == '\r' && peek() == '\n') read();
+                if (c >= 0) lineNumber++;
+                record.add(field.toString());
+                return record;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+            } else if (c == '"' && field.length() == 0 && !afterQuote) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    // 1-based line on which the last record returned by next() started
+    public long getRecordLine() { return recordLine; }
+
+    private int read() throws IOException {
+        if (pos == len && !fill()) return -1;
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == len && !fill()) return -1;
+        return buf[pos];
+    }
+
+    private boolean fill() throws IOException {
+        len = in.read(buf, 0, buf.length);
+        pos = 0;
+        if (len <= 0) {
+            len = 0;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
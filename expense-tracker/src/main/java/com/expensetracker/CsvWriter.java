@@ -0,0 +1,99 @@
+package com.expensetracker;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal RFC 4180 writer. Fields are written straight into the underlying
+ * (buffered) writer; quoting is only applied when a field needs it.
+ * Records end with CRLF as the RFC asks.
+ */
+public class CsvWriter implements Closeable, Flushable {
+
+    private final Writer out;
+    private final char[] digits = new char[24];
+    private boolean firstInRecord = true;
+
+    public CsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    public CsvWriter field(String value) throws IOException {
+        separator();
+        if (value == null || value.isEmpty()) return this;
+        if (needsQuotes(value)) {
+            out.write('"');
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) == '"') {
+                    out.write(value, start, i - start + 1);
+                    out.write('"');
+                    start = i + 1;
+                }
+            }
+            out.write(value, start, value.length() - start);
+            out.write('"');
+        } else {
+            out.write(value);
+        }
+        return this;
+    }
+
+    // Writes minor units as a fixed two-decimal amount without going through String.format
+    public CsvWriter amount(long minorUnits) throws IOException {
+        separator();
+        boolean negative = minorUnits < 0;
+        // Counted in negatives, as Long.MIN_VALUE has no positive counterpart
+        long cents = negative ? minorUnits : -minorUnits;
+
+        int p = digits.length;
+        digits[--p] = (char) ('0' - cents % 10);
+        cents /= 10;
+        digits[--p] = (char) ('0' - cents % 10);
+        cents /= 10;
+        digits[--p] = '.';
+        do {
+            digits[--p] = (char) ('0' - cents % 10);
+            cents /= 10;
+        } while (cents < 0);
+        if (negative) digits[--p] = '-';
+        out.write(digits, p, digits.length - p);
+        return this;
+    }
+
+    public void endRecord() throws IOException {
+        out.write("\r\n");
+        firstInRecord = true;
+    }
+
+    public void record(String... fields) throws IOException {
+        for (String f : fields) field(f);
+        endRecord();
+    }
+
+    private void separator() throws IOException {
+        if (!firstInRecord) out.write(',');
+        firstInRecord = false;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        // Keep leading/trailing spaces intact for readers that trim
+        return value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' ';
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -1,18 +1,458 @@
 package com.expensetracker;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
+import java.util.function.Supplier;
 
 public class Database {
 
-    private static final String URL = "jdbc:sqlite:expenses.db";
+    private static volatile String url =
+            "jdbc:sqlite:" + System.getProperty("expensetracker.db", "expenses.db");
 
+    private static volatile ConnectionManager manager;
+
+    // Set while a thread works on another database, e.g. a LedgerRouter ledger
+    private static final ThreadLocal<ConnectionManager> bound = new ThreadLocal<>();
+
+    // -Dexpensetracker.writeBehind=true queues expense writes for group commit (see WriteBehindQueue)
+    private static volatile boolean writeBehind = Boolean.getBoolean("expensetracker.writeBehind");
+
+    // Shared connection manager for the app's database file, or the one bound to this thread
+    public static ConnectionManager manager() {
+        ConnectionManager m = bound.get();
+        if (m != null) return m;
+        m = manager;
+        if (m == null) {
+            synchronized (Database.class) {
+                m = manager;
+                if (m == null) {
+                    m = new ConnectionManager(url);
+                    manager = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Runs work on this thread with Database, and so the DAOs, the category
+     * registry and the change journal, pointed at db instead of the app's
+     * database file.
+     */
+    public static <T> T bind(ConnectionManager db, Supplier<T> work) {
+        ConnectionManager previous = bound.get();
+        bound.set(db);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) bound.remove();
+            else bound.set(previous);
+        }
+    }
+
+    // The manager bound to this thread by bind(), or null
+    static ConnectionManager boundManager() {
+        return bound.get();
+    }
+
+    // Borrow the (single) writer connection; close it to give it back
+    public static PooledConnection writer() throws SQLException {
+        return manager().writer();
+    }
+
+    // Borrow a pooled read-only connection; close it to give it back
+    public static PooledConnection reader() throws SQLException {
+        return manager().reader();
+    }
+
+    // Changes whenever the app's data changes; see ConnectionManager.dataVersion()
+    public static long dataVersion() {
+        return manager().dataVersion();
+    }
+
+    // Unpooled connection for one-off maintenance work
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL);
+        return DriverManager.getConnection(url);
+    }
+
+    // Turns write-behind mode on or off for the next init()
+    public static void setWriteBehind(boolean on) {
+        writeBehind = on;
+    }
+
+    // The database file of manager()
+    static Path dataFile() {
+        return Path.of(manager().getUrl().substring("jdbc:sqlite:".length()));
+    }
+
+    // <database file>-wbl, the write-behind log
+    static Path writeBehindLog() {
+        return Path.of(dataFile() + "-wbl");
+    }
+
+    // Point the app at another database file (closes the current pool); call init() afterwards
+    public static synchronized void useFile(String path) {
+        shutdown();
+        url = "jdbc:sqlite:" + path;
+    }
+
+    // Close all pooled connections (app shutdown)
+    public static synchronized void shutdown() {
+        if (manager != null) {
+            // Waits out a running ExpenseSnapshot.refresh(), which still reads and prunes through the pool
+            synchronized (ExpenseSnapshot.class) {
+                manager.close();
+            }
+            manager = null;
+        }
+    }
+
+    // One schema change; migrations run in order inside a transaction
+    private interface Migration {
+        void apply(Connection conn) throws SQLException;
+
+        default Migration andThen(Migration next) {
+            return conn -> {
+                apply(conn);
+                next.apply(conn);
+            };
+        }
+    }
+
+    private static Migration sql(String... statements) {
+        return conn -> {
+            try (Statement st = conn.createStatement()) {
+                for (String s : statements) {
+                    st.execute(s);
+                }
+            }
+        };
+    }
+
+    // Trigger bodies for the summary tables; $ is replaced by NEW or OLD.
+    // The _V2 bodies are the REAL-amount versions used by migration 2.
+    private static final String ADD_TO_SUMMARIES_V2 = """
+            INSERT INTO monthly_category_totals (year, month, category_id, total, count)
+            VALUES (CAST(substr($.date, 1, 4) AS INTEGER), CAST(substr($.date, 6, 2) AS INTEGER),
+                    $.category_id, $.amount, 1)
+            ON CONFLICT (year, month, category_id)
+            DO UPDATE SET total = total + excluded.total, count = count + 1;
+            INSERT INTO daily_totals (date, total, count)
+            VALUES ($.date, $.amount, 1)
+            ON CONFLICT (date)
+            DO UPDATE SET total = total + excluded.total, count = count + 1;
+            """;
+
+    private static final String REMOVE_FROM_SUMMARIES_V2 = """
+            UPDATE monthly_category_totals
+            SET total = total - $.amount, count = count - 1
+            WHERE year = CAST(substr($.date, 1, 4) AS INTEGER)
+              AND month = CAST(substr($.date, 6, 2) AS INTEGER)
+              AND category_id = $.category_id;
+            DELETE FROM monthly_category_totals
+            WHERE year = CAST(substr($.date, 1, 4) AS INTEGER)
+              AND month = CAST(substr($.date, 6, 2) AS INTEGER)
+              AND category_id = $.category_id
+              AND count <= 0;
+            UPDATE daily_totals SET total = total - $.amount, count = count - 1
+            WHERE date = $.date;
+            DELETE FROM daily_totals WHERE date = $.date AND count <= 0;
+            """;
+
+    // Current (minor-unit) summary trigger bodies, from migration 4 on
+    private static final String ADD_TO_SUMMARIES = """
+            INSERT INTO monthly_category_totals (year, month, category_id, total_minor, count)
+            VALUES (CAST(substr($.date, 1, 4) AS INTEGER), CAST(substr($.date, 6, 2) AS INTEGER),
+                    $.category_id, $.amount_minor, 1)
+            ON CONFLICT (year, month, category_id)
+            DO UPDATE SET total_minor = total_minor + excluded.total_minor, count = count + 1;
+            INSERT INTO daily_totals (date, total_minor, count)
+            VALUES ($.date, $.amount_minor, 1)
+            ON CONFLICT (date)
+            DO UPDATE SET total_minor = total_minor + excluded.total_minor, count = count + 1;
+            """;
+
+    private static final String REMOVE_FROM_SUMMARIES = """
+            UPDATE monthly_category_totals
+            SET total_minor = total_minor - $.amount_minor, count = count - 1
+            WHERE year = CAST(substr($.date, 1, 4) AS INTEGER)
+              AND month = CAST(substr($.date, 6, 2) AS INTEGER)
+              AND category_id = $.category_id;
+            DELETE FROM monthly_category_totals
+            WHERE year = CAST(substr($.date, 1, 4) AS INTEGER)
+              AND month = CAST(substr($.date, 6, 2) AS INTEGER)
+              AND category_id = $.category_id
+              AND count <= 0;
+            UPDATE daily_totals SET total_minor = total_minor - $.amount_minor, count = count - 1
+            WHERE date = $.date;
+            DELETE FROM daily_totals WHERE date = $.date AND count <= 0;
+            """;
+
+    private static final String ADD_TO_FTS = """
+            INSERT INTO expenses_fts (rowid, note, category)
+            VALUES (NEW.id, NEW.note, (SELECT name FROM categories WHERE id = NEW.category_id));
+            """;
+
+    // PRAGMA user_version holds how many of these have been applied
+    private static final Migration[] MIGRATIONS = {
+            // 1: indexes for date-range filtering (rowid makes idx_expenses_date a (date, id) index)
+            sql("CREATE INDEX IF NOT EXISTS idx_expenses_date ON expenses(date)",
+                "CREATE INDEX IF NOT EXISTS idx_expenses_category_date ON expenses(category_id, date)"),
+
+            // 2: summary tables for charts, kept in sync by triggers and filled from existing rows
+            sql("""
+                CREATE TABLE IF NOT EXISTS monthly_category_totals (
+                    year        INTEGER NOT NULL,
+                    month       INTEGER NOT NULL,
+                    category_id INTEGER NOT NULL,
+                    total       REAL    NOT NULL,
+                    count       INTEGER NOT NULL,
+                    PRIMARY KEY (year, month, category_id)
+                ) WITHOUT ROWID
+                """, """
+                CREATE TABLE IF NOT EXISTS daily_totals (
+                    date  TEXT    NOT NULL PRIMARY KEY,
+                    total REAL    NOT NULL,
+                    count INTEGER NOT NULL
+                ) WITHOUT ROWID
+                """, """
+                CREATE TRIGGER IF NOT EXISTS expenses_summary_insert AFTER INSERT ON expenses
+                BEGIN
+                """ + ADD_TO_SUMMARIES_V2.replace("$", "NEW") + """
+                END
+                """, """
+                CREATE TRIGGER IF NOT EXISTS expenses_summary_delete AFTER DELETE ON expenses
+                BEGIN
+                """ + REMOVE_FROM_SUMMARIES_V2.replace("$", "OLD") + """
+                END
+                """, """
+                CREATE TRIGGER IF NOT EXISTS expenses_summary_update
+                AFTER UPDATE OF amount, date, category_id ON expenses
+                BEGIN
+                """ + REMOVE_FROM_SUMMARIES_V2.replace("$", "OLD")
+                    + ADD_TO_SUMMARIES_V2.replace("$", "NEW") + """
+                END
+                """, """
+                DELETE FROM monthly_category_totals
+                """, """
+                INSERT INTO monthly_category_totals (year, month, category_id, total, count)
+                SELECT CAST(substr(date, 1, 4) AS INTEGER), CAST(substr(date, 6, 2) AS INTEGER),
+                       category_id, SUM(amount), COUNT(*)
+                FROM expenses
+                GROUP BY substr(date, 1, 7), category_id
+                """, """
+                DELETE FROM daily_totals
+                """, """
+                INSERT INTO daily_totals (date, total, count)
+                SELECT date, SUM(amount), COUNT(*) FROM expenses GROUP BY date
+                """),
+
+            // 3: full-text index over notes and category names (rowid = expenses.id)
+            sql("""
+                CREATE VIRTUAL TABLE IF NOT EXISTS expenses_fts USING fts5(
+                    note, category,
+                    tokenize = 'unicode61 remove_diacritics 2',
+                    prefix = '2 3'
+                )
+                """, """
+                CREATE TRIGGER IF NOT EXISTS expenses_fts_insert AFTER INSERT ON expenses
+                BEGIN
+                """ + ADD_TO_FTS + """
+                END
+                """, """
+                CREATE TRIGGER IF NOT EXISTS expenses_fts_delete AFTER DELETE ON expenses
+                BEGIN
+                    DELETE FROM expenses_fts WHERE rowid = OLD.id;
+                END
+                """, """
+                CREATE TRIGGER IF NOT EXISTS expenses_fts_update
+                AFTER UPDATE OF note, category_id ON expenses
+                BEGIN
+                    DELETE FROM expenses_fts WHERE rowid = OLD.id;
+                """ + ADD_TO_FTS + """
+                END
+                """, """
+                INSERT INTO expenses_fts (rowid, note, category)
+                SELECT e.id, e.note, c.name
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                """),
+
+            // 4: amounts as integer minor units; the table is rebuilt (dropping it
+            // drops its triggers) and the summaries switch to integer totals
+            sql("""
+                CREATE TABLE expenses_new (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    amount_minor INTEGER NOT NULL,   -- paise / cents
+                    date   TEXT NOT NULL,            -- YYYY-MM-DD
+                    category_id INTEGER NOT NULL,
+                    note   TEXT,
+                    FOREIGN KEY (category_id) REFERENCES categories(id)
+                )
+                """, """
+                INSERT INTO expenses_new (id, amount_minor, date, category_id, note)
+                SELECT id, CAST(ROUND(amount * 100) AS INTEGER), date, category_id, note
+                FROM expenses
+                """,
+                "DROP TABLE expenses",
+                "ALTER TABLE expenses_new RENAME TO expenses",
+                "CREATE INDEX idx_expenses_date ON expenses(date)",
+                "CREATE INDEX idx_expenses_category_date ON expenses(category_id, date)",
+                "DROP TABLE monthly_category_totals",
+                "DROP TABLE daily_totals",
+                """
+                CREATE TABLE monthly_category_totals (
+                    year        INTEGER NOT NULL,
+                    month       INTEGER NOT NULL,
+                    category_id INTEGER NOT NULL,
+                    total_minor INTEGER NOT NULL,
+                    count       INTEGER NOT NULL,
+                    PRIMARY KEY (year, month, category_id)
+                ) WITHOUT ROWID
+                """, """
+                CREATE TABLE daily_totals (
+                    date        TEXT    NOT NULL PRIMARY KEY,
+                    total_minor INTEGER NOT NULL,
+                    count       INTEGER NOT NULL
+                ) WITHOUT ROWID
+                """, """
+                INSERT INTO monthly_category_totals (year, month, category_id, total_minor, count)
+                SELECT CAST(substr(date, 1, 4) AS INTEGER), CAST(substr(date, 6, 2) AS INTEGER),
+                       category_id, SUM(amount_minor), COUNT(*)
+                FROM expenses
+                GROUP BY substr(date, 1, 7), category_id
+                """, """
+                INSERT INTO daily_totals (date, total_minor, count)
+                SELECT date, SUM(amount_minor), COUNT(*) FROM expenses GROUP BY date
+                """, """
+                CREATE TRIGGER expenses_summary_insert AFTER INSERT ON expenses
+                BEGIN
+                """ + ADD_TO_SUMMARIES.replace("$", "NEW") + """
+                END
+                """, """
+                CREATE TRIGGER expenses_summary_delete AFTER DELETE ON expenses
+                BEGIN
+                """ + REMOVE_FROM_SUMMARIES.replace("$", "OLD") + """
+                END
+                """, """
+                CREATE TRIGGER expenses_summary_update
+                AFTER UPDATE OF amount_minor, date, category_id ON expenses
+                BEGIN
+                """ + REMOVE_FROM_SUMMARIES.replace("$", "OLD")
+                    + ADD_TO_SUMMARIES.replace("$", "NEW") + """
+                END
+                """, """
+                CREATE TRIGGER expenses_fts_insert AFTER INSERT ON expenses
+                BEGIN
+                """ + ADD_TO_FTS + """
+                END
+                """, """
+                CREATE TRIGGER expenses_fts_delete AFTER DELETE ON expenses
+                BEGIN
+                    DELETE FROM expenses_fts WHERE rowid = OLD.id;
+                END
+                """, """
+                CREATE TRIGGER expenses_fts_update
+                AFTER UPDATE OF note, category_id ON expenses
+                BEGIN
+                    DELETE FROM expenses_fts WHERE rowid = OLD.id;
+                """ + ADD_TO_FTS + """
+                END
+                """),
+
+            // 5: change journal; seq orders every change to expenses (ExpenseSnapshot prunes what it has read)
+            sql("""
+                CREATE TABLE expense_changes (
+                    seq        INTEGER PRIMARY KEY AUTOINCREMENT,
+                    expense_id INTEGER NOT NULL,
+                    op         TEXT    NOT NULL     -- I, U or D
+                )
+                """, """
+                CREATE TRIGGER expenses_journal_insert AFTER INSERT ON expenses
+                BEGIN
+                    INSERT INTO expense_changes (expense_id, op) VALUES (NEW.id, 'I');
+                END
+                """, """
+                CREATE TRIGGER expenses_journal_update AFTER UPDATE ON expenses
+                BEGIN
+                    INSERT INTO expense_changes (expense_id, op) VALUES (NEW.id, 'U');
+                END
+                """, """
+                CREATE TRIGGER expenses_journal_delete AFTER DELETE ON expenses
+                BEGIN
+                    INSERT INTO expense_changes (expense_id, op) VALUES (OLD.id, 'D');
+                END
+                """),
+
+            // 6: last write-behind log record committed, updated with each group commit
+            sql("""
+                CREATE TABLE write_behind (
+                    id          INTEGER PRIMARY KEY CHECK (id = 1),
+                    applied_seq INTEGER NOT NULL
+                )
+                """, "INSERT INTO write_behind (id, applied_seq) VALUES (1, 0)"),
+
+            // 7: spending limits per month or year, for one category or (category_id 0) all of them
+            sql("""
+                CREATE TABLE budgets (
+                    id           INTEGER PRIMARY KEY AUTOINCREMENT,
+                    category_id  INTEGER NOT NULL,
+                    period       TEXT    NOT NULL,   -- MONTH or YEAR
+                    limit_minor  INTEGER NOT NULL,
+                    warn_percent INTEGER NOT NULL,
+                    UNIQUE (category_id, period)
+                )
+                """),
+
+            // 8: recurring expenses; materialized counts the occurrences already added,
+            // next_date is the one after them (NULL once the rule has ended)
+            sql("""
+                CREATE TABLE recurring_rules (
+                    id           INTEGER PRIMARY KEY AUTOINCREMENT,
+                    amount_minor INTEGER NOT NULL,
+                    category_id  INTEGER NOT NULL,
+                    note         TEXT,
+                    frequency    TEXT    NOT NULL,   -- WEEKLY, MONTHLY or YEARLY
+                    every        INTEGER NOT NULL,   -- every N weeks / months / years
+                    start_date   TEXT    NOT NULL,   -- first occurrence
+                    end_date     TEXT,               -- no occurrences after this
+                    materialized INTEGER NOT NULL,
+                    next_date    TEXT,
+                    FOREIGN KEY (category_id) REFERENCES categories(id)
+                )
+                """, "CREATE INDEX idx_recurring_next ON recurring_rules(next_date)"),
+    };
+
+    private static void migrate(Connection conn) throws SQLException {
+        int version;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        for (int i = version; i < MIGRATIONS.length; i++) {
+            boolean auto = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                MIGRATIONS[i].apply(conn);
+                try (Statement st = conn.createStatement()) {
+                    st.execute("PRAGMA user_version = " + (i + 1));
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(auto);
+            }
+        }
     }
 
     public static void init() {
-        try (Connection conn = getConnection();
-             Statement st = conn.createStatement()) {
+        try (PooledConnection pc = writer();
+             Statement st = pc.connection().createStatement()) {
+            Connection conn = pc.connection();
 
             // Categories table
             st.execute("""
@@ -34,6 +474,8 @@ public class Database {
                     )
                     """);
 
+            migrate(conn);
+
             // Insert some default categories if table is empty
             try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM categories")) {
                 if (rs.next() && rs.getInt(1) == 0) {
@@ -45,14 +487,72 @@ public class Database {
                             "INSERT INTO categories(name) VALUES (?)")) {
                         for (String c : defaults) {
                             ps.setString(1, c);
-                            ps.executeUpdate();
+                            ps.addBatch();
                         }
+                        ps.executeBatch();
                     }
                 }
             }
 
+            manager().categories().load();
+            manager().budgets().load();
+
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        startWriteBehind();
+    }
+
+    // Starts the queue in write-behind mode; otherwise only replays a log an earlier run left behind
+    private static void startWriteBehind() {
+        ConnectionManager m = manager();
+        Path log = writeBehindLog();
+        if (m.writeBehind() != null || (!writeBehind && !Files.exists(log))) return;
+        try {
+            WriteBehindQueue queue = new WriteBehindQueue(m, log,
+                    Integer.getInteger("expensetracker.writeBehind.batch", WriteBehindQueue.DEFAULT_MAX_BATCH),
+                    Long.getLong("expensetracker.writeBehind.delayMs", WriteBehindQueue.DEFAULT_MAX_DELAY_MS),
+                    Boolean.getBoolean("expensetracker.writeBehind.fsync"));
+            if (writeBehind) m.setWriteBehind(queue);
+            else queue.close();
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Rebuilds everything derived from expenses: indexes, summary tables and the search index. */
+    public static void reindex() throws SQLException {
+        ExpenseSnapshot.pruneJournal();
+        try (PooledConnection pc = writer()) {
+            Connection conn = pc.connection();
+            conn.setAutoCommit(false);
+            try {
+                pc.execute("REINDEX");
+                SummaryDAO.rebuild(conn, null, null);
+                pc.execute("DELETE FROM expenses_fts");
+                pc.execute("""
+                        INSERT INTO expenses_fts (rowid, note, category)
+                        SELECT e.id, e.note, c.name
+                        FROM expenses e
+                        JOIN categories c ON e.category_id = c.id
+                        """);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /** Compacts the database file and empties the WAL, after pruning the change journal. */
+    public static void vacuum() throws SQLException {
+        ExpenseSnapshot.pruneJournal();
+        try (PooledConnection pc = writer()) {
+            pc.execute("VACUUM");
+            pc.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            pc.execute("PRAGMA optimize");
+        }
     }
 }
@@ -1,16 +1,22 @@
 package com.expensetracker;
 
 import java.time.LocalDate;
+import java.util.Comparator;
 
 public class Expense {
+    // Load order of the table and the DAO queries
+    public static final Comparator<Expense> BY_DATE_ID =
+            Comparator.comparing(Expense::getDate).thenComparingInt(Expense::getId);
+
     private int id;
-    private double amount;
+    private Money amount;
     private LocalDate date;
     private int categoryId;
     private String categoryName;
     private String note;
+    private String searchKey; // lazily built by searchKey(), reset when category or note change
 
-    public Expense(int id, double amount, LocalDate date,
+    public Expense(int id, Money amount, LocalDate date,
                    int categoryId, String categoryName, String note) {
         this.id = id;
         this.amount = amount;
@@ -20,7 +26,7 @@ public class Expense {
         this.note = note;
     }
 
-    public Expense(double amount, LocalDate date,
+    public Expense(Money amount, LocalDate date,
                    int categoryId, String categoryName, String note) {
         this(-1, amount, date, categoryId, categoryName, note);
     }
@@ -28,8 +34,8 @@ public class Expense {
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
 
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public Money getAmount() { return amount; }
+    public void setAmount(Money amount) { this.amount = amount; }
 
     public LocalDate getDate() { return date; }
     public void setDate(LocalDate date) { this.date = date; }
@@ -38,8 +44,15 @@ public class Expense {
     public void setCategoryId(int categoryId) { this.categoryId = categoryId; }
 
     public String getCategoryName() { return categoryName; }
-    public void setCategoryName(String categoryName) { this.categoryName = categoryName; }
+    public void setCategoryName(String categoryName) { this.categoryName = categoryName; searchKey = null; }
 
     public String getNote() { return note; }
-    public void setNote(String note) { this.note = note; }
+    public void setNote(String note) { this.note = note; searchKey = null; }
+
+    // Normalized category and note for ExpenseSearch
+    String searchKey() {
+        String key = searchKey;
+        if (key == null) searchKey = key = ExpenseSearch.key(categoryName, note);
+        return key;
+    }
 }
@@ -0,0 +1,352 @@
+package com.expensetracker;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Analytics over arbitrary date ranges. A range [from, to) is split into
+ * month partitions; each partition is read on its own read-only connection
+ * (from the summary tables where it covers a whole month), and partition
+ * aggregates are merged pairwise in a fork/join pool. While the
+ * ExpenseSnapshot is current, the range is read from it in one pass instead.
+ */
+public class ExpenseAnalytics {
+
+    // One worker per pooled reader, so partitions never queue for a connection among themselves
+    private static final ForkJoinPool POOL = new ForkJoinPool(ConnectionManager.defaultReaderCount());
+
+    public record MonthComparison(YearMonth month, Money current, Money previousYear) {
+        // Relative change against the same month a year earlier, or null if that was zero
+        public Double growth() {
+            if (previousYear.minorUnits() == 0) return null;
+            return (double) (current.minorUnits() - previousYear.minorUnits()) / previousYear.minorUnits();
+        }
+    }
+
+    /** Totals per month over [from, to). */
+    public static Map<YearMonth, Money> monthlyTotals(LocalDate from, LocalDate to) {
+        Aggregate a = aggregate(from, to, false);
+        Map<YearMonth, Money> map = new LinkedHashMap<>();
+        for (int m = 0; m < a.monthly.length; m++) {
+            map.put(a.firstMonth.plusMonths(m), Money.ofMinor(a.monthly[m]));
+        }
+        return map;
+    }
+
+    /** Every month of [from, to) next to the same month one year earlier. */
+    public static List<MonthComparison> yearOverYear(LocalDate from, LocalDate to) {
+        Aggregate current = aggregate(from, to, false);
+        Aggregate previous = aggregate(from.minusYears(1), to.minusYears(1), false);
+        List<MonthComparison> list = new ArrayList<>();
+        for (int m = 0; m < current.monthly.length; m++) {
+            long before = m < previous.monthly.length ? previous.monthly[m] : 0;
+            list.add(new MonthComparison(current.firstMonth.plusMonths(m),
+                    Money.ofMinor(current.monthly[m]), Money.ofMinor(before)));
+        }
+        return list;
+    }
+
+    /** For each day of [from, to), the total of the windowDays days ending on it. */
+    public static Map<LocalDate, Money> rollingTotals(LocalDate from, LocalDate to, int windowDays) {
+        if (windowDays < 1) throw new IllegalArgumentException("windowDays must be positive");
+        LocalDate start = from.minusDays(windowDays - 1);
+        Aggregate a = aggregate(start, to, false);
+
+        Map<LocalDate, Money> map = new LinkedHashMap<>();
+        long window = 0;
+        for (int i = 0; i < a.daily.length; i++) {
+            window += a.daily[i];
+            if (i >= windowDays) window -= a.daily[i - windowDays];
+            if (i >= windowDays - 1) map.put(start.plusDays(i), Money.ofMinor(window));
+        }
+        return map;
+    }
+
+    public static Map<LocalDate, Money> rolling30(LocalDate from, LocalDate to) {
+        return rollingTotals(from, to, 30);
+    }
+
+    public static Map<LocalDate, Money> rolling90(LocalDate from, LocalDate to) {
+        return rollingTotals(from, to, 90);
+    }
+
+    /** Totals per category name over [from, to), largest first. */
+    public static Map<String, Money> categoryTotals(LocalDate from, LocalDate to) {
+        Aggregate a = aggregate(from, to, false);
+        CategoryRegistry categories = CategoryRegistry.get();
+        Map<String, Money> map = new LinkedHashMap<>();
+        for (Map.Entry<Integer, long[]> e : largestFirst(a)) {
+            long total = sum(e.getValue());
+            if (total != 0) map.put(categories.name(e.getKey()), Money.ofMinor(total));
+        }
+        return map;
+    }
+
+    /**
+     * Per-category monthly series over [from, to): category name -> month ->
+     * total, with zero months included. Largest category first.
+     */
+    public static Map<String, Map<YearMonth, Money>> categoryTrend(LocalDate from, LocalDate to) {
+        Aggregate a = aggregate(from, to, false);
+        CategoryRegistry categories = CategoryRegistry.get();
+        Map<String, Map<YearMonth, Money>> map = new LinkedHashMap<>();
+        for (Map.Entry<Integer, long[]> e : largestFirst(a)) {
+            Map<YearMonth, Money> series = new LinkedHashMap<>();
+            long[] totals = e.getValue();
+            for (int m = 0; m < totals.length; m++) {
+                series.put(a.firstMonth.plusMonths(m), Money.ofMinor(totals[m]));
+            }
+            map.put(categories.name(e.getKey()), series);
+        }
+        return map;
+    }
+
+    /**
+     * Nearest-rank percentiles (0-100) of single expense amounts in
+     * [from, to). Empty if the range has no expenses.
+     */
+    public static Map<Double, Money> percentiles(LocalDate from, LocalDate to, double... percents) {
+        long[] amounts = aggregate(from, to, true).amounts;
+        Map<Double, Money> map = new LinkedHashMap<>();
+        if (amounts.length == 0) return map;
+        for (double p : percents) {
+            if (p < 0 || p > 100) throw new IllegalArgumentException("Percentile out of range: " + p);
+            int rank = (int) Math.ceil(p / 100 * amounts.length);
+            map.put(p, Money.ofMinor(amounts[Math.max(0, rank - 1)]));
+        }
+        return map;
+    }
+
+    // Category entries of a, largest total first
+    private static List<Map.Entry<Integer, long[]>> largestFirst(Aggregate a) {
+        List<Map.Entry<Integer, long[]>> entries = new ArrayList<>(a.byCategory.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<Integer, long[]> e) -> sum(e.getValue())).reversed());
+        return entries;
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long v : values) total += v;
+        return total;
+    }
+
+    // One pass over the snapshot when it is current; otherwise splits [from, to)
+    // at month boundaries and runs the partitions in the pool
+    static Aggregate aggregate(LocalDate from, LocalDate to, boolean withAmounts) {
+        if (!from.isBefore(to)) throw new IllegalArgumentException("Empty range: " + from + " to " + to);
+        ExpenseSnapshot snapshot = ExpenseSnapshot.current();
+        if (snapshot != null) return Aggregate.scan(snapshot, from, to, withAmounts);
+        List<LocalDate> bounds = new ArrayList<>();
+        bounds.add(from);
+        for (LocalDate d = from.withDayOfMonth(1).plusMonths(1); d.isBefore(to); d = d.plusMonths(1)) {
+            bounds.add(d);
+        }
+        bounds.add(to);
+        return POOL.invoke(new PartitionTask(Database.manager(), bounds, 0, bounds.size() - 1, withAmounts));
+    }
+
+    /** Partitions [lo, hi) of bounds: one month each at the leaves, halves above. */
+    private static final class PartitionTask extends RecursiveTask<Aggregate> {
+        private static final long serialVersionUID = 1L;
+
+        private final ConnectionManager db; // the caller's, as pool threads have no binding
+        private final List<LocalDate> bounds;
+        private final int lo, hi;
+        private final boolean withAmounts;
+
+        PartitionTask(ConnectionManager db, List<LocalDate> bounds, int lo, int hi, boolean withAmounts) {
+            this.db = db;
+            this.bounds = bounds;
+            this.lo = lo;
+            this.hi = hi;
+            this.withAmounts = withAmounts;
+        }
+
+        @Override
+        protected Aggregate compute() {
+            if (hi - lo == 1) {
+                return Database.bind(db, () -> {
+                    try {
+                        return Aggregate.load(bounds.get(lo), bounds.get(hi), withAmounts);
+                    } catch (SQLException e) {
+                        throw new RuntimeException("Error loading " + bounds.get(lo) + ": " + e.getMessage(), e);
+                    }
+                });
+            }
+            int mid = (lo + hi) >>> 1;
+            PartitionTask left = new PartitionTask(db, bounds, lo, mid, withAmounts);
+            left.fork();
+            Aggregate right = new PartitionTask(db, bounds, mid, hi, withAmounts).compute();
+            return left.join().append(right);
+        }
+    }
+
+    /**
+     * Totals for a contiguous date range: per day, per month and per
+     * category per month, plus every amount sorted when requested.
+     */
+    static final class Aggregate {
+        final LocalDate start;
+        final YearMonth firstMonth;
+        final long[] daily;                  // index = days since start
+        final long[] monthly;                // index = months since firstMonth
+        final Map<Integer, long[]> byCategory; // category id -> per-month totals
+        final long[] amounts;                // sorted; empty unless requested
+
+        private Aggregate(LocalDate start, long[] daily, long[] monthly,
+                          Map<Integer, long[]> byCategory, long[] amounts) {
+            this.start = start;
+            this.firstMonth = YearMonth.from(start);
+            this.daily = daily;
+            this.monthly = monthly;
+            this.byCategory = byCategory;
+            this.amounts = amounts;
+        }
+
+        int monthIndex(YearMonth ym) {
+            return (int) firstMonth.until(ym, ChronoUnit.MONTHS);
+        }
+
+        // Reads [from, to), which lies within one month
+        static Aggregate load(LocalDate from, LocalDate to, boolean withAmounts) throws SQLException {
+            long[] daily = new long[(int) from.until(to, ChronoUnit.DAYS)];
+            long month = 0;
+            Map<Integer, long[]> byCategory = new HashMap<>();
+            long[] amounts = new long[0];
+            boolean wholeMonth = from.getDayOfMonth() == 1 && to.equals(from.plusMonths(1));
+
+            try (PooledConnection pc = Database.reader()) {
+                PreparedStatement ps = pc.prepare(
+                        "SELECT date, total_minor FROM daily_totals WHERE date >= ? AND date < ?");
+                ps.setString(1, from.toString());
+                ps.setString(2, to.toString());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long total = rs.getLong(2);
+                        daily[(int) from.until(LocalDate.parse(rs.getString(1)), ChronoUnit.DAYS)] = total;
+                        month += total;
+                    }
+                }
+
+                // Whole months come from the summary table; partial ones from the rows themselves
+                if (wholeMonth) {
+                    ps = pc.prepare("""
+                            SELECT category_id, total_minor FROM monthly_category_totals
+                            WHERE year = ? AND month = ?
+                            """);
+                    ps.setInt(1, from.getYear());
+                    ps.setInt(2, from.getMonthValue());
+                } else {
+                    ps = pc.prepare("""
+                            SELECT category_id, SUM(amount_minor) FROM expenses
+                            WHERE date >= ? AND date < ?
+                            GROUP BY category_id
+                            """);
+                    ps.setString(1, from.toString());
+                    ps.setString(2, to.toString());
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        byCategory.put(rs.getInt(1), new long[]{rs.getLong(2)});
+                    }
+                }
+
+                if (withAmounts) {
+                    ps = pc.prepare("SELECT amount_minor FROM expenses WHERE date >= ? AND date < ?");
+                    ps.setString(1, from.toString());
+                    ps.setString(2, to.toString());
+                    int n = 0;
+                    amounts = new long[256];
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            if (n == amounts.length) amounts = Arrays.copyOf(amounts, n * 2);
+                            amounts[n++] = rs.getLong(1);
+                        }
+                    }
+                    amounts = Arrays.copyOf(amounts, n);
+                    Arrays.sort(amounts);
+                }
+            }
+            return new Aggregate(from, daily, new long[]{month}, byCategory, amounts);
+        }
+
+        // Reads [from, to) from a snapshot's columns; rows are in date order, so months advance as it goes
+        static Aggregate scan(ExpenseSnapshot s, LocalDate from, LocalDate to, boolean withAmounts) {
+            int fromDay = (int) from.toEpochDay();
+            int toDay = (int) to.toEpochDay();
+            YearMonth first = YearMonth.from(from);
+            int months = (int) first.until(YearMonth.from(to.minusDays(1)), ChronoUnit.MONTHS) + 1;
+            long[] daily = new long[toDay - fromDay];
+            long[] monthly = new long[months];
+            long[][] categories = new long[64][]; // by category id, which are small
+            int start = s.lowerBound(fromDay), end = s.lowerBound(toDay);
+            long[] amounts = new long[withAmounts ? end - start : 0];
+
+            int month = 0;
+            int nextMonthDay = (int) first.plusMonths(1).atDay(1).toEpochDay();
+            for (int i = start; i < end; i++) {
+                int day = s.epochDay(i);
+                while (day >= nextMonthDay) {
+                    month++;
+                    nextMonthDay = (int) first.plusMonths(month + 1).atDay(1).toEpochDay();
+                }
+                long amount = s.amountMinor(i);
+                daily[day - fromDay] += amount;
+                monthly[month] += amount;
+                int categoryId = s.categoryId(i);
+                if (categoryId >= categories.length) {
+                    categories = Arrays.copyOf(categories, Math.max(categoryId + 1, categories.length * 2));
+                }
+                if (categories[categoryId] == null) categories[categoryId] = new long[months];
+                categories[categoryId][month] += amount;
+                if (withAmounts) amounts[i - start] = amount;
+            }
+            Arrays.sort(amounts);
+
+            Map<Integer, long[]> byCategory = new HashMap<>();
+            for (int id = 0; id < categories.length; id++) {
+                if (categories[id] != null) byCategory.put(id, categories[id]);
+            }
+            return new Aggregate(from, daily, monthly, byCategory, amounts);
+        }
+
+        // Combines with the aggregate of the range immediately after this one
+        Aggregate append(Aggregate next) {
+            long[] days = Arrays.copyOf(daily, daily.length + next.daily.length);
+            System.arraycopy(next.daily, 0, days, daily.length, next.daily.length);
+
+            // Partitions are cut at month starts, so next's months follow on from ours
+            int offset = monthIndex(next.firstMonth);
+            int months = offset + next.monthly.length;
+            long[] monthTotals = Arrays.copyOf(monthly, months);
+            for (int m = 0; m < next.monthly.length; m++) monthTotals[offset + m] += next.monthly[m];
+
+            Map<Integer, long[]> categories = new HashMap<>();
+            byCategory.forEach((id, totals) -> categories.put(id, Arrays.copyOf(totals, months)));
+            next.byCategory.forEach((id, totals) -> {
+                long[] merged = categories.computeIfAbsent(id, k -> new long[months]);
+                for (int m = 0; m < totals.length; m++) merged[offset + m] += totals[m];
+            });
+
+            return new Aggregate(start, days, monthTotals, categories, merge(amounts, next.amounts));
+        }
+
+        private static long[] merge(long[] a, long[] b) {
+            if (a.length == 0) return b;
+            if (b.length == 0) return a;
+            long[] out = new long[a.length + b.length];
+            int i = 0, j = 0, k = 0;
+            while (i < a.length && j < b.length) out[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+            while (i < a.length) out[k++] = a[i++];
+            while (j < b.length) out[k++] = b[j++];
+            return out;
+        }
+    }
+}
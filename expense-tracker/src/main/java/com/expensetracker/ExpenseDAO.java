@@ -2,202 +2,536 @@ package com.expensetracker;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class ExpenseDAO {
 
-    // Get all categories as id -> name
+    // Binds the half-open range [first of month, first of next month) at index, index + 1.
+    // Dates are stored as ISO text, so string comparison matches date order and can use the index.
+    static void bindMonth(PreparedStatement ps, int index, int year, int month) throws SQLException {
+        LocalDate start = LocalDate.of(year, month, 1);
+        ps.setString(index, start.toString());
+        ps.setString(index + 1, start.plusMonths(1).toString());
+    }
+
+    // Get all categories as id -> name (from the in-memory registry)
     public static Map<Integer, String> getCategories() {
-        Map<Integer, String> map = new LinkedHashMap<>();
-        try (Connection conn = Database.getConnection();
-             Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(
-                     "SELECT id, name FROM categories ORDER BY name")) {
-            while (rs.next()) {
-                map.put(rs.getInt("id"), rs.getString("name"));
-            }
+        return CategoryRegistry.get().all();
+    }
+
+    // 🔹 NEW: get existing category id (case-insensitive) or create a new one
+    public static int getOrCreateCategoryId(String name) {
+        try {
+            return CategoryRegistry.get().getOrCreate(name);
         } catch (SQLException e) {
             e.printStackTrace();
+            throw new RuntimeException("Error in getOrCreateCategoryId: " + e.getMessage(), e);
         }
-        return map;
     }
 
-    // 🔹 NEW: get existing category id or create a new one
-    public static int getOrCreateCategoryId(String name) {
-        if (name == null) throw new IllegalArgumentException("Category name is null");
-        String trimmed = name.trim();
-        if (trimmed.isEmpty()) throw new IllegalArgumentException("Category name is empty");
-
-        try (Connection conn = Database.getConnection()) {
-            // 1) Try to find existing
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "SELECT id FROM categories WHERE name = ?")) {
-                ps.setString(1, trimmed);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        return rs.getInt("id");
-                    }
+    public static List<Expense> getExpensesByMonthYear(int year, int month) {
+        List<Expense> list = new ArrayList<>();
+        String sql = """
+                SELECT e.id, e.amount_minor, e.date,
+                       c.id AS cid, c.name AS cname,
+                       e.note
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                WHERE e.date >= ? AND e.date < ?
+                ORDER BY e.date, e.id
+                """;
+        Metrics.Span span = Metrics.start("dao.getExpensesByMonthYear");
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            bindMonth(ps, 1, year, month);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                span.executed(sql);
+                while (rs.next()) {
+                    list.add(readExpense(rs));
                 }
             }
+        } catch (SQLException e) {
+            span.failed();
+            e.printStackTrace();
+        }
+        span.end(list.size());
+        return list;
+    }
+
+    /**
+     * One page of expenses matching filter, in (date, id) order.
+     * Keyset pagination: rows come after (afterDate, afterId) when afterDate
+     * is non-null, then skip rows are skipped. Callers should keep skip small
+     * by remembering the last key of pages they have seen.
+     */
+    public static List<Expense> getExpensePage(ExpenseFilter filter,
+                                               LocalDate afterDate, int afterId,
+                                               int skip, int limit) {
+        return page(filter, afterDate, afterId, true, skip, limit);
+    }
+
+    /**
+     * The page that ends skip rows before (beforeDate, beforeId), or before
+     * the last row when beforeDate is null, still in (date, id) order. Reads
+     * backwards, so pages near the end of a long list need no large OFFSET.
+     */
+    public static List<Expense> getExpensePageBefore(ExpenseFilter filter,
+                                                     LocalDate beforeDate, int beforeId,
+                                                     int skip, int limit) {
+        List<Expense> list = page(filter, beforeDate, beforeId, false, skip, limit);
+        Collections.reverse(list);
+        return list;
+    }
 
-            // 2) Insert new
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "INSERT INTO categories(name) VALUES (?)",
-                    Statement.RETURN_GENERATED_KEYS)) {
-                ps.setString(1, trimmed);
-                ps.executeUpdate();
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next()) {
-                        return rs.getInt(1);
-                    } else {
-                        throw new SQLException("Failed to retrieve new category id");
-                    }
+    private static List<Expense> page(ExpenseFilter filter, LocalDate keyDate, int keyId,
+                                      boolean forward, int skip, int limit) {
+        List<Expense> list = new ArrayList<>(Math.min(limit, 1024));
+        String sql = """
+                SELECT e.id, e.amount_minor, e.date,
+                       c.id AS cid, c.name AS cname,
+                       e.note
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                """ + "WHERE " + filter.where("e")
+                + (keyDate != null ? " AND (e.date, e.id) " + (forward ? ">" : "<") + " (?, ?)" : "")
+                + (forward ? " ORDER BY e.date, e.id" : " ORDER BY e.date DESC, e.id DESC")
+                + " LIMIT ? OFFSET ?";
+        Metrics.Span span = Metrics.start(forward ? "dao.getExpensePage" : "dao.getExpensePageBefore");
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            int i = filter.bind(ps, 1);
+            if (keyDate != null) {
+                ps.setString(i++, keyDate.toString());
+                ps.setInt(i++, keyId);
+            }
+            ps.setInt(i++, limit);
+            ps.setInt(i, skip);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                span.executed(sql);
+                while (rs.next()) {
+                    list.add(readExpense(rs));
                 }
             }
+        } catch (SQLException e) {
+            span.failed();
+            e.printStackTrace();
+        }
+        span.end(list.size());
+        return list;
+    }
 
+    // One expense by id, or null if there is none
+    public static Expense getExpense(int id) {
+        Metrics.Span span = Metrics.start("dao.getExpense");
+        Expense e = null;
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            e = findExpense(pc, id);
+            span.executed(FIND_SQL);
+        } catch (SQLException ex) {
+            span.failed();
+            ex.printStackTrace();
+        }
+        span.end(e == null ? 0 : 1);
+        return e;
+    }
+
+    public record MonthTotal(YearMonth month, long count, Money total) {}
+
+    // Every month that has expenses, oldest first (from the daily summary table)
+    public static List<MonthTotal> getMonths() {
+        List<MonthTotal> list = new ArrayList<>();
+        String sql = """
+                SELECT substr(date, 1, 7) AS ym, SUM(count), SUM(total_minor)
+                FROM daily_totals
+                GROUP BY ym
+                ORDER BY ym
+                """;
+        Metrics.Span span = Metrics.start("dao.getMonths");
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            try (ResultSet rs = pc.prepare(sql).executeQuery()) {
+                span.executed(sql);
+                while (rs.next()) {
+                    list.add(new MonthTotal(YearMonth.parse(rs.getString(1)), rs.getLong(2),
+                            Money.ofMinor(rs.getLong(3))));
+                }
+            }
         } catch (SQLException e) {
+            span.failed();
             e.printStackTrace();
-            throw new RuntimeException("Error in getOrCreateCategoryId: " + e.getMessage(), e);
         }
+        span.end(list.size());
+        return list;
     }
 
-    public static List<Expense> getExpensesByMonthYear(int year, int month) {
+    /**
+     * Full-text search over notes and category names, best matches first.
+     * Every word in text is matched as a prefix ("gro" finds "groceries").
+     * filter restricts the date range / category; use ExpenseFilter.all()
+     * to search the whole history.
+     */
+    public static List<Expense> searchExpenses(String text, ExpenseFilter filter, int limit) {
         List<Expense> list = new ArrayList<>();
+        String query = ftsQuery(text);
+        if (query.isEmpty()) return list;
+
         String sql = """
-                SELECT e.id, e.amount, e.date,
+                SELECT e.id, e.amount_minor, e.date,
                        c.id AS cid, c.name AS cname,
                        e.note
-                FROM expenses e
+                FROM expenses_fts
+                JOIN expenses e ON e.id = expenses_fts.rowid
                 JOIN categories c ON e.category_id = c.id
-                WHERE strftime('%Y', e.date) = ?
-                  AND strftime('%m', e.date) = ?
-                ORDER BY e.date
-                """;
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, String.format("%04d", year));
-            ps.setString(2, String.format("%02d", month));
+                WHERE expenses_fts MATCH ?
+                """ + "AND " + filter.where("e") + " ORDER BY expenses_fts.rank LIMIT ?";
+        Metrics.Span span = Metrics.start("dao.searchExpenses");
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            ps.setString(1, query);
+            int i = filter.bind(ps, 2);
+            ps.setInt(i, limit);
 
             try (ResultSet rs = ps.executeQuery()) {
+                span.executed(sql);
                 while (rs.next()) {
-                    int id = rs.getInt("id");
-                    double amount = rs.getDouble("amount");
-                    LocalDate date = LocalDate.parse(rs.getString("date"));
-                    int cid = rs.getInt("cid");
-                    String cname = rs.getString("cname");
-                    String note = rs.getString("note");
-                    list.add(new Expense(id, amount, date, cid, cname, note));
+                    list.add(readExpense(rs));
                 }
             }
         } catch (SQLException e) {
+            span.failed();
             e.printStackTrace();
         }
+        span.end(list.size());
         return list;
     }
 
-    public static void insertExpense(Expense e) {
-        String sql = """
-                INSERT INTO expenses (amount, date, category_id, note)
-                VALUES (?, ?, ?, ?)
-                """;
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setDouble(1, e.getAmount());
-            ps.setString(2, e.getDate().toString());
-            ps.setInt(3, e.getCategoryId());
-            ps.setString(4, e.getNote());
-            ps.executeUpdate();
+    // User text -> FTS5 query: each word quoted (so operators are literal) and prefix-matched
+    static String ftsQuery(String text) {
+        StringBuilder q = new StringBuilder();
+        if (text == null) return "";
+        for (String word : text.trim().split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (q.length() > 0) q.append(' ');
+            q.append('"').append(word).append("\"*");
+        }
+        return q.toString();
+    }
+
+    public static long countExpenses(ExpenseFilter filter) {
+        // Without a category, the per-day summary answers this without touching expenses
+        String sql = filter.categoryId() == null
+                ? "SELECT COALESCE(SUM(e.count), 0) FROM daily_totals e WHERE " + filter.where("e")
+                : "SELECT COUNT(*) FROM expenses e WHERE " + filter.where("e");
+        Metrics.Span span = Metrics.start("dao.countExpenses");
+        long count = 0;
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            filter.bind(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                span.executed(sql);
+                if (rs.next()) count = rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            span.failed();
+            e.printStackTrace();
+        }
+        span.end(1);
+        return count;
+    }
+
+    public static Money sumAmount(ExpenseFilter filter) {
+        String sql = filter.categoryId() == null
+                ? "SELECT COALESCE(SUM(e.total_minor), 0) FROM daily_totals e WHERE " + filter.where("e")
+                : "SELECT COALESCE(SUM(e.amount_minor), 0) FROM expenses e WHERE " + filter.where("e");
+        Metrics.Span span = Metrics.start("dao.sumAmount");
+        Money sum = Money.ZERO;
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            filter.bind(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                span.executed(sql);
+                if (rs.next()) sum = Money.ofMinor(rs.getLong(1));
+            }
+        } catch (SQLException e) {
+            span.failed();
+            e.printStackTrace();
+        }
+        span.end(1);
+        return sum;
+    }
+
+    // Maps a row selected as id, amount_minor, date, cid, cname, note
+    static Expense readExpense(ResultSet rs) throws SQLException {
+        int id = rs.getInt("id");
+        Money amount = Money.ofMinor(rs.getLong("amount_minor"));
+        LocalDate date = LocalDate.parse(rs.getString("date"));
+        int cid = rs.getInt("cid");
+        String cname = rs.getString("cname");
+        String note = rs.getString("note");
+        return new Expense(id, amount, date, cid, cname, note);
+    }
+
+    static final String INSERT_SQL = """
+            INSERT INTO expenses (amount_minor, date, category_id, note)
+            VALUES (?, ?, ?, ?)
+            """;
+
+    static final String UPDATE_SQL = """
+            UPDATE expenses
+            SET amount_minor = ?, date = ?, category_id = ?, note = ?
+            WHERE id = ?
+            """;
+
+    static final String DELETE_SQL = "DELETE FROM expenses WHERE id = ?";
+
+    // Inserts e and sets its id; returns the id, or -1 if the insert failed
+    public static int insertExpense(Expense e) {
+        WriteBehindQueue queue = queue();
+        if (queue != null) return await(queue, queue.insert(e), -1);
+
+        Metrics.Span span = Metrics.start("dao.insertExpense");
+        int id = -1;
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            ChangeJournal.Change change = insert(pc, e);
+            span.executed(INSERT_SQL);
+            // Published while still holding the writer, so listeners see changes in commit order
+            ChangeJournal.get().publish(change);
+            id = e.getId();
         } catch (SQLException ex) {
+            span.failed();
             ex.printStackTrace();
         }
+        span.end(id < 0 ? 0 : 1);
+        return id;
     }
 
     public static void updateExpense(Expense e) {
-        String sql = """
-                UPDATE expenses
-                SET amount = ?, date = ?, category_id = ?, note = ?
-                WHERE id = ?
-                """;
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setDouble(1, e.getAmount());
-            ps.setString(2, e.getDate().toString());
-            ps.setInt(3, e.getCategoryId());
-            ps.setString(4, e.getNote());
-            ps.setInt(5, e.getId());
-            ps.executeUpdate();
+        WriteBehindQueue queue = queue();
+        if (queue != null) {
+            await(queue, queue.update(e), null);
+            return;
+        }
+
+        Metrics.Span span = Metrics.start("dao.updateExpense");
+        ChangeJournal.Change change = null;
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            change = update(pc, e);
+            span.executed(UPDATE_SQL);
+            if (change != null) ChangeJournal.get().publish(change);
         } catch (SQLException ex) {
+            span.failed();
             ex.printStackTrace();
         }
+        span.end(change == null ? 0 : 1);
+    }
+
+    /**
+     * Applies edit to the stored expense id and writes it back under one
+     * writer borrow, so a concurrent update cannot land between the read
+     * and the write and be lost. Returns the expense as updated, or null if
+     * there is no expense id. If edit throws, nothing is written.
+     */
+    public static Expense editExpense(int id, Consumer<Expense> edit) {
+        WriteBehindQueue queue = queue();
+        // Commit what is queued first, so the read below sees it
+        if (queue != null) queue.flush();
+
+        Metrics.Span span = Metrics.start("dao.editExpense");
+        ChangeJournal.Change change = null;
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            Expense e = findExpense(pc, id);
+            if (e != null) {
+                edit.accept(e);
+                change = update(pc, e);
+                span.executed(UPDATE_SQL);
+                if (change != null) ChangeJournal.get().publish(change);
+            }
+        } catch (SQLException ex) {
+            span.failed();
+            ex.printStackTrace();
+        } finally {
+            span.end(change == null ? 0 : 1);
+        }
+        return change == null ? null : change.after();
     }
 
     public static void deleteExpense(int id) {
-        String sql = "DELETE FROM expenses WHERE id = ?";
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
+        WriteBehindQueue queue = queue();
+        if (queue != null) {
+            await(queue, queue.delete(id), null);
+            return;
+        }
+
+        Metrics.Span span = Metrics.start("dao.deleteExpense");
+        ChangeJournal.Change change = null;
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            change = delete(pc, id);
+            span.executed(DELETE_SQL);
+            if (change != null) ChangeJournal.get().publish(change);
         } catch (SQLException ex) {
+            span.failed();
+            ex.printStackTrace();
+        }
+        span.end(change == null ? 0 : 1);
+    }
+
+    // Write-behind queue, unless this thread holds the writer (the queue could not commit until it lets go)
+    private static WriteBehindQueue queue() {
+        ConnectionManager manager = Database.manager();
+        WriteBehindQueue queue = manager.writeBehind();
+        return queue == null || manager.holdsWriter() ? null : queue;
+    }
+
+    // Write-behind mode: commit everything queued so far as one group, then report this call's outcome
+    private static <T> T await(WriteBehindQueue queue, CompletableFuture<T> pending, T failed) {
+        queue.flush();
+        try {
+            return pending.join();
+        } catch (CompletionException | CancellationException ex) {
             ex.printStackTrace();
         }
+        return failed;
+    }
+
+    // The mutations themselves, on a writer connection the caller holds (maybe inside a transaction).
+    // Each returns the change to publish once committed, or null if the row did not exist.
+
+    static ChangeJournal.Change insert(PooledConnection pc, Expense e) throws SQLException {
+        PreparedStatement ps = pc.prepareWithKeys(INSERT_SQL);
+        ps.setLong(1, e.getAmount().minorUnits());
+        ps.setString(2, e.getDate().toString());
+        ps.setInt(3, e.getCategoryId());
+        ps.setString(4, e.getNote());
+        ps.executeUpdate();
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            if (!rs.next()) throw new SQLException("Failed to retrieve new expense id");
+            e.setId(rs.getInt(1));
+        }
+        return new ChangeJournal.Change(ChangeJournal.Op.INSERT, null, copyOf(e));
     }
 
-    public static Map<String, Double> getMonthlyTotalsByCategory(int year, int month) {
-        Map<String, Double> map = new LinkedHashMap<>();
+    static ChangeJournal.Change update(PooledConnection pc, Expense e) throws SQLException {
+        Expense before = findExpense(pc, e.getId());
+        if (before == null) return null;
+
+        PreparedStatement ps = pc.prepare(UPDATE_SQL);
+        ps.setLong(1, e.getAmount().minorUnits());
+        ps.setString(2, e.getDate().toString());
+        ps.setInt(3, e.getCategoryId());
+        ps.setString(4, e.getNote());
+        ps.setInt(5, e.getId());
+        ps.executeUpdate();
+        return new ChangeJournal.Change(ChangeJournal.Op.UPDATE, before, copyOf(e));
+    }
+
+    static ChangeJournal.Change delete(PooledConnection pc, int id) throws SQLException {
+        Expense before = findExpense(pc, id);
+        if (before == null) return null;
+
+        PreparedStatement ps = pc.prepare(DELETE_SQL);
+        ps.setInt(1, id);
+        ps.executeUpdate();
+        return new ChangeJournal.Change(ChangeJournal.Op.DELETE, before, null);
+    }
+
+    private static final String FIND_SQL = """
+            SELECT e.id, e.amount_minor, e.date,
+                   c.id AS cid, c.name AS cname,
+                   e.note
+            FROM expenses e
+            JOIN categories c ON e.category_id = c.id
+            WHERE e.id = ?
+            """;
+
+    // Current row for id on the given connection, or null
+    static Expense findExpense(PooledConnection pc, int id) throws SQLException {
+        PreparedStatement ps = pc.prepare(FIND_SQL);
+        ps.setInt(1, id);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? readExpense(rs) : null;
+        }
+    }
+
+    // Detached copy for the journal, with the stored category name
+    static Expense copyOf(Expense e) {
+        String name = CategoryRegistry.get().name(e.getCategoryId());
+        return new Expense(e.getId(), e.getAmount(), e.getDate(), e.getCategoryId(),
+                name != null ? name : e.getCategoryName(), e.getNote());
+    }
+
+    public static Map<String, Money> getMonthlyTotalsByCategory(int year, int month) {
+        Map<String, Money> map = new LinkedHashMap<>();
         String sql = """
-                SELECT c.name, SUM(e.amount) AS total
-                FROM expenses e
-                JOIN categories c ON e.category_id = c.id
-                WHERE strftime('%Y', e.date) = ?
-                  AND strftime('%m', e.date) = ?
-                GROUP BY c.name
-                ORDER BY total DESC
+                SELECT category_id, total_minor
+                FROM monthly_category_totals
+                WHERE year = ? AND month = ?
+                ORDER BY total_minor DESC
                 """;
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, String.format("%04d", year));
-            ps.setString(2, String.format("%02d", month));
+        CategoryRegistry categories = CategoryRegistry.get();
+        Metrics.Span span = Metrics.start("dao.getMonthlyTotalsByCategory");
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            ps.setInt(1, year);
+            ps.setInt(2, month);
 
             try (ResultSet rs = ps.executeQuery()) {
+                span.executed(sql);
                 while (rs.next()) {
-                    map.put(rs.getString("name"), rs.getDouble("total"));
+                    map.put(categories.name(rs.getInt("category_id")), Money.ofMinor(rs.getLong("total_minor")));
                 }
             }
         } catch (SQLException e) {
+            span.failed();
             e.printStackTrace();
         }
+        span.end(map.size());
         return map;
     }
 
-    public static Map<LocalDate, Double> getDailyTotals(int year, int month) {
-        Map<LocalDate, Double> map = new LinkedHashMap<>();
+    public static Map<LocalDate, Money> getDailyTotals(int year, int month) {
+        Map<LocalDate, Money> map = new LinkedHashMap<>();
         String sql = """
-                SELECT date, SUM(amount) AS total
-                FROM expenses
-                WHERE strftime('%Y', date) = ?
-                  AND strftime('%m', date) = ?
-                GROUP BY date
+                SELECT date, total_minor
+                FROM daily_totals
+                WHERE date >= ? AND date < ?
                 ORDER BY date
                 """;
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, String.format("%04d", year));
-            ps.setString(2, String.format("%02d", month));
+        Metrics.Span span = Metrics.start("dao.getDailyTotals");
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            bindMonth(ps, 1, year, month);
 
             try (ResultSet rs = ps.executeQuery()) {
+                span.executed(sql);
                 while (rs.next()) {
                     LocalDate d = LocalDate.parse(rs.getString("date"));
-                    map.put(d, rs.getDouble("total"));
+                    map.put(d, Money.ofMinor(rs.getLong("total_minor")));
                 }
             }
         } catch (SQLException e) {
+            span.failed();
             e.printStackTrace();
         }
+        span.end(map.size());
         return map;
     }
 }
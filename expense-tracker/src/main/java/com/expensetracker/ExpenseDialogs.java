@@ -8,7 +8,6 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.time.LocalDate;
-import java.util.Map;
 import java.util.Optional;
 
 public class ExpenseDialogs {
@@ -19,11 +18,8 @@ public class ExpenseDialogs {
         dialog.initModality(Modality.WINDOW_MODAL);
         dialog.setTitle(existing == null ? "Add Expense" : "Edit Expense");
 
-        Map<Integer, String> categories = ExpenseDAO.getCategories();
-
         DatePicker datePicker = new DatePicker(LocalDate.now());
         ComboBox<String> categoryBox = new ComboBox<>();
-        categoryBox.getItems().addAll(categories.values());
         categoryBox.setEditable(true);  // 🔹 allow typing new category names
 
         TextField amountField = new TextField();
@@ -39,14 +35,21 @@ public class ExpenseDialogs {
                 datePicker.setValue(existing.getDate());
             }
             categoryBox.setValue(existing.getCategoryName());
-            amountField.setText(String.valueOf(existing.getAmount()));
+            amountField.setText(existing.getAmount().toString());
             noteArea.setText(existing.getNote());
-        } else {
-            // New expense: select first category by default (if any)
-            if (!categoryBox.getItems().isEmpty()) {
+        }
+
+        // Categories load in the background; fill the box when they arrive
+        FxAsync.then(AsyncExpenseDAO.getCategories(), categories -> {
+            String typed = categoryBox.getEditor().getText();
+            categoryBox.getItems().setAll(categories.values());
+            if (typed != null && !typed.isEmpty()) {
+                categoryBox.setValue(typed); // keep what the user (or the edited expense) has
+            } else if (!categoryBox.getItems().isEmpty()) {
+                // New expense: select first category by default (if any)
                 categoryBox.getSelectionModel().select(0);
             }
-        }
+        }, Throwable::printStackTrace);
 
         Button okBtn = new Button("OK");
         Button cancelBtn = new Button("Cancel");
@@ -102,35 +105,42 @@ public class ExpenseDialogs {
                     return;
                 }
 
-                double amount;
+                Money amount;
                 try {
-                    amount = Double.parseDouble(amountStr);
+                    amount = Money.parse(amountStr);
                 } catch (NumberFormatException ex) {
-                    showError("Amount must be a valid number.");
+                    showError("Amount must be a valid number with at most two decimals.");
                     return;
                 }
 
-                if (amount <= 0) {
+                if (!amount.isPositive()) {
                     showError("Amount must be greater than zero.");
                     return;
                 }
 
-                // 🔹 Get or create category id in DB
-                int catId = ExpenseDAO.getOrCreateCategoryId(catName);
-
-                if (existing == null) {
-                    // New expense
-                    resultHolder[0] = new Expense(amount, date, catId, catName.trim(), note);
-                } else {
-                    // Update existing
-                    existing.setAmount(amount);
-                    existing.setDate(date);
-                    existing.setCategoryId(catId);
-                    existing.setCategoryName(catName.trim());
-                    existing.setNote(note);
-                    resultHolder[0] = existing;
-                }
-                dialog.close();
+                // 🔹 Get or create category id in DB (off the FX thread)
+                okBtn.setDisable(true);
+                FxAsync.then(AsyncExpenseDAO.getOrCreateCategoryId(catName), catId -> {
+                    // Lookup is case-insensitive; show the stored spelling
+                    String storedName = CategoryRegistry.get().name(catId);
+                    if (existing == null) {
+                        // New expense
+                        resultHolder[0] = new Expense(amount, date, catId, storedName, note);
+                    } else {
+                        // Update existing
+                        existing.setAmount(amount);
+                        existing.setDate(date);
+                        existing.setCategoryId(catId);
+                        existing.setCategoryName(storedName);
+                        existing.setNote(note);
+                        resultHolder[0] = existing;
+                    }
+                    dialog.close();
+                }, ex -> {
+                    okBtn.setDisable(false);
+                    ex.printStackTrace();
+                    showError("Unexpected error: " + ex.getMessage());
+                });
             } catch (Exception ex) {
                 ex.printStackTrace();
                 showError("Unexpected error: " + ex.getMessage());
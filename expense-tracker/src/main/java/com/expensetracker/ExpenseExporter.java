@@ -0,0 +1,118 @@
+package com.expensetracker;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports expenses to CSV straight from the database. Rows are streamed
+ * from a forward-only result set into a buffered writer, so the export
+ * size is not limited by what the UI has loaded.
+ */
+public class ExpenseExporter {
+
+    public interface ProgressListener {
+        void onProgress(long written, long total);
+    }
+
+    private static final int FETCH_SIZE = 1000;
+    private static final int PROGRESS_EVERY = 5000;
+
+    /** Exports to file; a name ending in ".gz" is gzip-compressed. */
+    public static long exportTo(Path file, ExpenseFilter filter, ProgressListener listener)
+            throws IOException, SQLException {
+        boolean gzip = file.getFileName().toString().toLowerCase().endsWith(".gz");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return export(out, filter, gzip, listener);
+        }
+    }
+
+    /** Writes matching rows as CSV to out and returns the number of rows. */
+    public static long export(OutputStream out, ExpenseFilter filter, boolean gzip,
+                              ProgressListener listener) throws IOException, SQLException {
+        GzipStream gz = gzip ? new GzipStream(out) : null;
+        OutputStream target = gz != null ? gz : new BufferedOutputStream(out, 64 * 1024);
+        try {
+            return write(target, filter, listener);
+        } finally {
+            // target is never closed, as the caller still owns out
+            if (gz != null) gz.end();
+        }
+    }
+
+    private static long write(OutputStream target, ExpenseFilter filter, ProgressListener listener)
+            throws IOException, SQLException {
+        CsvWriter csv = new CsvWriter(new BufferedWriter(
+                new OutputStreamWriter(target, StandardCharsets.UTF_8), 64 * 1024));
+
+        long written = 0;
+        Metrics.Span span = Metrics.start("export.stream");
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            long total = listener == null ? -1 : count(pc, filter);
+
+            String sql = """
+                    SELECT e.date, c.name, e.amount_minor, e.note
+                    FROM expenses e
+                    JOIN categories c ON e.category_id = c.id
+                    """ + "WHERE " + filter.where("e") + " ORDER BY e.date, e.id";
+            PreparedStatement ps = pc.prepare(sql);
+            ps.setFetchSize(FETCH_SIZE);
+            filter.bind(ps, 1);
+
+            csv.record("Date", "Category", "Amount", "Note");
+            try (ResultSet rs = ps.executeQuery()) {
+                span.executed(sql);
+                while (rs.next()) {
+                    csv.field(rs.getString(1))
+                       .field(rs.getString(2))
+                       .amount(rs.getLong(3))
+                       .field(rs.getString(4))
+                       .endRecord();
+                    written++;
+                    if (listener != null && written % PROGRESS_EVERY == 0) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedIOException("Export cancelled after " + written + " rows");
+                        }
+                        listener.onProgress(written, total);
+                    }
+                }
+            }
+            if (listener != null) listener.onProgress(written, total);
+        } catch (IOException | SQLException e) {
+            span.failed();
+            throw e;
+        } finally {
+            span.end(written);
+        }
+        // Finishes the gzip trailer; the caller still owns out
+        csv.flush();
+        if (target instanceof GZIPOutputStream gz) gz.finish();
+        target.flush();
+        return written;
+    }
+
+    // Gzip without closing out: only close() frees the native Deflater, so end() does that instead
+    private static final class GzipStream extends GZIPOutputStream {
+        GzipStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+        }
+
+        void end() {
+            def.end();
+        }
+    }
+
+    private static long count(PooledConnection pc, ExpenseFilter filter) throws SQLException {
+        PreparedStatement ps = pc.prepare("SELECT COUNT(*) FROM expenses e WHERE " + filter.where("e"));
+        filter.bind(ps, 1);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.expensetracker;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Which expenses a query covers: dates in [from, to) and optionally one
+ * category. Null bounds / category mean "no restriction".
+ */
+public record ExpenseFilter(LocalDate from, LocalDate to, Integer categoryId) {
+
+    public static ExpenseFilter all() {
+        return new ExpenseFilter(null, null, null);
+    }
+
+    public static ExpenseFilter month(int year, int month) {
+        LocalDate start = LocalDate.of(year, month, 1);
+        return new ExpenseFilter(start, start.plusMonths(1), null);
+    }
+
+    public static ExpenseFilter year(int year) {
+        LocalDate start = LocalDate.of(year, 1, 1);
+        return new ExpenseFilter(start, start.plusYears(1), null);
+    }
+
+    /**
+     * Date range from request/command-line parameters: from and to
+     * (YYYY-MM-DD, to exclusive), or year with an optional month. With none
+     * of them, everything. Bad values throw IllegalArgumentException.
+     */
+    public static ExpenseFilter fromParams(Map<String, String> params) {
+        try {
+            if (params.containsKey("from") || params.containsKey("to")) {
+                if (!params.containsKey("from") || !params.containsKey("to")) {
+                    throw new IllegalArgumentException("from and to go together");
+                }
+                LocalDate from = LocalDate.parse(params.get("from"));
+                LocalDate to = LocalDate.parse(params.get("to"));
+                if (!from.isBefore(to)) throw new IllegalArgumentException("from must be before to");
+                return new ExpenseFilter(from, to, null);
+            }
+            if (params.containsKey("year")) {
+                int year = Integer.parseInt(params.get("year"));
+                return params.containsKey("month")
+                        ? month(year, Integer.parseInt(params.get("month")))
+                        : year(year);
+            }
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        if (params.containsKey("month")) throw new IllegalArgumentException("month needs year");
+        return all();
+    }
+
+    public boolean isAll() {
+        return from == null && to == null && categoryId == null;
+    }
+
+    public ExpenseFilter withCategory(Integer categoryId) {
+        return new ExpenseFilter(from, to, categoryId);
+    }
+
+    /**
+     * SQL conditions for this filter against the expenses table aliased as
+     * alias, joined with AND, or "1" when unrestricted. Bind with bind().
+     */
+    public String where(String alias) {
+        StringBuilder sql = new StringBuilder();
+        if (from != null) sql.append(alias).append(".date >= ?");
+        if (to != null) {
+            if (sql.length() > 0) sql.append(" AND ");
+            sql.append(alias).append(".date < ?");
+        }
+        if (categoryId != null) {
+            if (sql.length() > 0) sql.append(" AND ");
+            sql.append(alias).append(".category_id = ?");
+        }
+        return sql.length() == 0 ? "1" : sql.toString();
+    }
+
+    // Binds the parameters of where() starting at index; returns the next free index
+    public int bind(PreparedStatement ps, int index) throws SQLException {
+        if (from != null) ps.setString(index++, from.toString());
+        if (to != null) ps.setString(index++, to.toString());
+        if (categoryId != null) ps.setInt(index++, categoryId);
+        return index;
+    }
+}
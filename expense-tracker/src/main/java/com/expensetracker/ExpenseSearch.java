@@ -0,0 +1,132 @@
+package com.expensetracker;
+
+import javafx.collections.ObservableList;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory search over loaded expenses (the search box without
+ * "All history"): case- and accent-insensitive substring match on category
+ * or note, against keys cached on each Expense.
+ *
+ * An instance keeps the visible list and its total in step with the query.
+ * A query that extends the previous one only re-tests the rows that are
+ * still visible; anything else rescans all rows.
+ */
+public class ExpenseSearch {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final List<Expense> rows;
+    private final ObservableList<Expense> visible;
+    private String query = "";
+    private long total; // minor units of the visible rows
+
+    /** rows is every loaded row; visible receives the matches, in rows order. */
+    public ExpenseSearch(List<Expense> rows, ObservableList<Expense> visible) {
+        this.rows = rows;
+        this.visible = visible;
+    }
+
+    public static Predicate<Expense> substringMatcher(String text) {
+        String q = queryKey(text);
+        if (q.isEmpty()) {
+            return e -> true;
+        }
+        return e -> e.searchKey().contains(q);
+    }
+
+    /** Rescans all rows for text, e.g. after rows were replaced. */
+    public void refresh(String text) {
+        query = queryKey(text);
+        List<Expense> matches = new ArrayList<>(query.isEmpty() ? rows.size() : 64);
+        long sum = 0;
+        for (Expense e : rows) {
+            if (matches(e)) {
+                matches.add(e);
+                sum += e.getAmount().minorUnits();
+            }
+        }
+        visible.setAll(matches);
+        total = sum;
+    }
+
+    /** Applies text as typed; narrows the visible rows when text extends the last query. */
+    public void search(String text) {
+        String q = queryKey(text);
+        if (q.equals(query)) return;
+        if (!q.contains(query)) {
+            refresh(text);
+            return;
+        }
+        // Every row matching q also matched the shorter query, so only visible rows can match
+        query = q;
+        long removed = 0;
+        List<Expense> kept = new ArrayList<>(visible.size());
+        for (Expense e : visible) {
+            if (matches(e)) kept.add(e);
+            else removed += e.getAmount().minorUnits();
+        }
+        if (kept.size() != visible.size()) {
+            visible.setAll(kept);
+            total -= removed;
+        }
+    }
+
+    /** Call after e was added to rows; shows it if it matches. */
+    public void added(Expense e) {
+        if (!matches(e)) return;
+        int i = Collections.binarySearch(visible, e, Expense.BY_DATE_ID);
+        visible.add(i < 0 ? -i - 1 : i, e);
+        total += e.getAmount().minorUnits();
+    }
+
+    /** Call after e was removed from rows. */
+    public void removed(Expense e) {
+        removed(e, e.getAmount());
+    }
+
+    /**
+     * Call after shown was removed from rows, when shown may already carry
+     * an edited amount; amount is what it contributed to the total.
+     */
+    public void removed(Expense shown, Money amount) {
+        if (visible.remove(shown)) total -= amount.minorUnits();
+    }
+
+    public long total() {
+        return total;
+    }
+
+    private boolean matches(Expense e) {
+        return query.isEmpty() || e.searchKey().contains(query);
+    }
+
+    // Blank text matches everything; otherwise it is matched as typed, spaces included
+    private static String queryKey(String text) {
+        return text == null || text.isBlank() ? "" : normalize(text);
+    }
+
+    // Category and note joined by a separator no query contains, so a match can't span both
+    static String key(String categoryName, String note) {
+        return normalize(categoryName) + '\0' + normalize(note);
+    }
+
+    // Lower case without accents, so "cafe" finds "Café"
+    static String normalize(String s) {
+        if (s == null) return "";
+        String lower = s.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            if (lower.charAt(i) >= 0x80) {
+                return COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+            }
+        }
+        return lower;
+    }
+}
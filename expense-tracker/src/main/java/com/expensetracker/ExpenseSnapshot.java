@@ -0,0 +1,436 @@
+package com.expensetracker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Every expense in a fixed-width columnar file next to the database,
+ * &lt;db&gt;-snap.&lt;seq&gt;, read through a memory mapping: opening it
+ * costs one mmap, and scans read epoch days and amounts straight from the
+ * page cache without parsing anything.
+ *
+ * seq is the last expense_changes row the file reflects. refresh() brings
+ * it up to date by re-reading only the expenses changed since then and
+ * merging them into a new file; the first refresh scans the table. A
+ * snapshot is only used while nothing has been written since its refresh,
+ * by this process or another (see current()). Each refresh first prunes
+ * the journal rows older than the snapshot it starts from, since nothing
+ * else reads them.
+ *
+ * Layout, little-endian: a 32-byte header (magic, version, rows, seq,
+ * note bytes), then the columns id int[], epoch day int[], category id
+ * int[], note offset int[] (-1 for none), amount long[], then the notes as
+ * length-prefixed UTF-8. Rows are in (date, id) order.
+ */
+public final class ExpenseSnapshot {
+
+    private static final long MAGIC = 0x3150414E53505845L; // "EXPSNAP1" little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private static final String SUFFIX = "-snap.";
+
+    private final Path file;
+    private final int size;
+    private final long seq;
+    private final IntBuffer ids;
+    private final IntBuffer epochDays;
+    private final IntBuffer categoryIds;
+    private final IntBuffer noteOffsets;
+    private final LongBuffer amounts;
+    private final ByteBuffer notes;
+    // The manager's dataVersion when this was last known to match the database, or -1
+    private volatile long verifiedVersion = -1;
+
+    private ExpenseSnapshot(Path file, ByteBuffer map, int size, long seq, long noteBytes) {
+        this.file = file;
+        this.size = size;
+        this.seq = seq;
+        int at = HEADER;
+        ids = column(map, at, size).asIntBuffer();
+        epochDays = column(map, at += 4 * size, size).asIntBuffer();
+        categoryIds = column(map, at += 4 * size, size).asIntBuffer();
+        noteOffsets = column(map, at += 4 * size, size).asIntBuffer();
+        amounts = column(map, at += 4 * size, 2 * size).asLongBuffer();
+        notes = map.slice(at + 8 * size, (int) noteBytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer column(ByteBuffer map, int offset, int words) {
+        return map.slice(offset, 4 * words).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * The database's snapshot if it reflects every write so far, else null
+     * (callers fall back to SQL).
+     */
+    public static ExpenseSnapshot current() {
+        ConnectionManager m = Database.manager();
+        ExpenseSnapshot s = m.snapshot();
+        if (s == null || s.verifiedVersion != m.dataVersion()) return null;
+        // dataVersion only counts this process's writes; the CLI or a write-behind replay leave it alone
+        try (PooledConnection pc = m.reader()) {
+            return maxSeq(pc) == s.seq ? s : null;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Brings the database's snapshot up to date, writing a new file if
+     * expenses changed, and returns it. Cheap when nothing changed.
+     */
+    public static ExpenseSnapshot refresh() throws IOException, SQLException {
+        ConnectionManager m = Database.manager();
+        synchronized (ExpenseSnapshot.class) {
+            Metrics.Span span = Metrics.start("snapshot.refresh");
+            Path base = Database.dataFile();
+            ExpenseSnapshot old = m.snapshot();
+            if (old == null) old = openLatest(base);
+            ExpenseSnapshot next = old;
+            // Pruning is a write, so it goes before the version is taken or current() would never match
+            if (old != null) prune(m, old.seq);
+            // Version before seq: a write in between leaves the result looking stale, never wrong
+            long version = m.dataVersion();
+            try (PooledConnection pc = m.reader()) {
+                span.acquired();
+                long maxSeq = maxSeq(pc);
+                // Rows are read after maxSeq, so they may include later changes too;
+                // the next refresh reads those again, which is harmless
+                if (old == null || old.seq > maxSeq) {
+                    next = write(base, maxSeq, fullScan(pc));
+                } else if (old.seq < maxSeq) {
+                    next = write(base, maxSeq, merge(pc, old, maxSeq));
+                }
+            } catch (IOException | SQLException | RuntimeException e) {
+                span.failed();
+                throw e;
+            } finally {
+                span.end(next == null ? 0 : next.size);
+            }
+            next.verifiedVersion = version;
+            m.setSnapshot(next);
+            if (old != null && old != next) deleteQuietly(old.file);
+            return next;
+        }
+    }
+
+    private static long maxSeq(PooledConnection pc) throws SQLException {
+        try (ResultSet rs = pc.prepare("SELECT COALESCE(MAX(seq), 0) FROM expense_changes").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Deletes the expense_changes rows no snapshot needs: those before the
+     * newest snapshot's seq, or all but the last if there is no snapshot.
+     */
+    public static void pruneJournal() throws SQLException {
+        ConnectionManager m = Database.manager();
+        synchronized (ExpenseSnapshot.class) {
+            ExpenseSnapshot s = m.snapshot();
+            if (s == null) {
+                try {
+                    s = openLatest(Database.dataFile());
+                } catch (IOException e) {
+                    throw new SQLException("Could not read the expense snapshot", e);
+                }
+            }
+            prune(m, s != null ? s.seq : Long.MAX_VALUE);
+        }
+    }
+
+    // Keeps the newest row even when it is older than keepFrom, so MAX(seq) never goes back
+    private static void prune(ConnectionManager m, long keepFrom) throws SQLException {
+        Metrics.Span span = Metrics.start("snapshot.pruneJournal");
+        int rows = 0;
+        try (PooledConnection pc = m.writer()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare("""
+                    DELETE FROM expense_changes
+                    WHERE seq < MIN(?, (SELECT MAX(seq) FROM expense_changes))
+                    """);
+            ps.setLong(1, keepFrom);
+            rows = ps.executeUpdate();
+        } catch (SQLException e) {
+            span.failed();
+            throw e;
+        } finally {
+            span.end(rows);
+        }
+    }
+
+    public int size() { return size; }
+
+    // Last expense_changes seq reflected
+    public long seq() { return seq; }
+
+    public int id(int row) { return ids.get(row); }
+    public int epochDay(int row) { return epochDays.get(row); }
+    public long amountMinor(int row) { return amounts.get(row); }
+    public int categoryId(int row) { return categoryIds.get(row); }
+    public LocalDate date(int row) { return LocalDate.ofEpochDay(epochDays.get(row)); }
+
+    public String note(int row) {
+        int at = noteOffsets.get(row);
+        if (at < 0) return null;
+        byte[] bytes = new byte[notes.getInt(at)];
+        notes.get(at + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public Expense toExpense(int row) {
+        int categoryId = categoryIds.get(row);
+        return new Expense(id(row), Money.ofMinor(amountMinor(row)), date(row),
+                categoryId, CategoryRegistry.get().name(categoryId), note(row));
+    }
+
+    // First row with epochDay >= day
+    public int lowerBound(int day) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochDays.get(mid) < day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Sum of amounts (minor units) for days in [fromDay, toDay). */
+    public long sum(int fromDay, int toDay) {
+        long total = 0;
+        for (int i = lowerBound(fromDay), end = lowerBound(toDay); i < end; i++) {
+            total += amounts.get(i);
+        }
+        return total;
+    }
+
+    // --- building ---
+
+    private static Builder fullScan(PooledConnection pc) throws SQLException {
+        Builder b = new Builder();
+        PreparedStatement ps = pc.prepare(
+                "SELECT id, amount_minor, date, category_id, note FROM expenses ORDER BY date, id");
+        ps.setFetchSize(1000);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                b.add(rs.getInt(1), rs.getLong(2), epochDay(rs.getString(3)),
+                        rs.getInt(4), b.note(rs.getString(5)));
+            }
+        }
+        return b;
+    }
+
+    private record Row(int id, long amountMinor, int epochDay, int categoryId, String note) {}
+
+    // old's rows with the expenses changed after old.seq replaced by their current state
+    private static Builder merge(PooledConnection pc, ExpenseSnapshot old, long maxSeq) throws SQLException {
+        Set<Integer> changed = new HashSet<>();
+        List<Row> fresh = new ArrayList<>();
+        PreparedStatement ps = pc.prepare("""
+                SELECT c.expense_id, e.amount_minor, e.date, e.category_id, e.note
+                FROM (SELECT DISTINCT expense_id FROM expense_changes WHERE seq > ? AND seq <= ?) c
+                LEFT JOIN expenses e ON e.id = c.expense_id
+                """);
+        ps.setLong(1, old.seq);
+        ps.setLong(2, maxSeq);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                changed.add(id);
+                String date = rs.getString(3);
+                if (date != null) {   // null: deleted
+                    fresh.add(new Row(id, rs.getLong(2), epochDay(date),
+                            rs.getInt(4), rs.getString(5)));
+                }
+            }
+        }
+        fresh.sort(Comparator.comparingInt(Row::epochDay).thenComparingInt(Row::id));
+
+        Builder b = new Builder();
+        Map<Integer, Integer> copiedNotes = new HashMap<>();
+        int j = 0;
+        for (int i = 0; i < old.size; i++) {
+            int id = old.id(i);
+            if (changed.contains(id)) continue;
+            int day = old.epochDay(i);
+            for (; j < fresh.size() && before(fresh.get(j), day, id); j++) b.add(fresh.get(j));
+            int note = old.noteOffsets.get(i);
+            if (note >= 0) note = copiedNotes.computeIfAbsent(note, at -> b.copyNote(old.notes, at));
+            b.add(id, old.amountMinor(i), day, old.categoryId(i), note);
+        }
+        for (; j < fresh.size(); j++) b.add(fresh.get(j));
+        return b;
+    }
+
+    private static boolean before(Row r, int epochDay, int id) {
+        return r.epochDay() < epochDay || (r.epochDay() == epochDay && r.id() < id);
+    }
+
+    // "YYYY-MM-DD" -> epoch day, without building a formatter per row
+    static int epochDay(String iso) {
+        int y = Integer.parseInt(iso, 0, 4, 10);
+        int m = Integer.parseInt(iso, 5, 7, 10);
+        int d = Integer.parseInt(iso, 8, 10, 10);
+        return (int) LocalDate.of(y, m, d).toEpochDay();
+    }
+
+    /** Columns being built, in (date, id) order; notes are stored once per distinct text. */
+    private static final class Builder {
+        private int size;
+        private int[] ids = new int[1024];
+        private int[] epochDays = new int[1024];
+        private int[] categoryIds = new int[1024];
+        private int[] noteOffsets = new int[1024];
+        private long[] amounts = new long[1024];
+        private ByteBuffer notes = ByteBuffer.allocate(16 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private final Map<String, Integer> noteCodes = new HashMap<>();
+
+        void add(int id, long amountMinor, int epochDay, int categoryId, int noteOffset) {
+            if (size == ids.length) grow();
+            ids[size] = id;
+            amounts[size] = amountMinor;
+            epochDays[size] = epochDay;
+            categoryIds[size] = categoryId;
+            noteOffsets[size] = noteOffset;
+            size++;
+        }
+
+        void add(Row r) {
+            add(r.id(), r.amountMinor(), r.epochDay(), r.categoryId(), note(r.note()));
+        }
+
+        // Offset of text in the note area, adding it if new; -1 for null
+        int note(String text) {
+            if (text == null) return -1;
+            Integer at = noteCodes.get(text);
+            if (at == null) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                at = append(ByteBuffer.wrap(bytes), 0, bytes.length);
+                noteCodes.put(text, at);
+            }
+            return at;
+        }
+
+        // Copies the note at offset of another snapshot's note area without decoding it
+        int copyNote(ByteBuffer from, int offset) {
+            return append(from, offset + 4, from.getInt(offset));
+        }
+
+        private int append(ByteBuffer from, int offset, int length) {
+            if (notes.remaining() < 4 + length) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(notes.capacity() * 2, notes.position() + 4 + length))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                bigger.put(notes.flip());
+                notes = bigger;
+            }
+            int at = notes.position();
+            notes.putInt(length);
+            notes.put(notes.position(), from, offset, length);
+            notes.position(notes.position() + length);
+            return at;
+        }
+
+        private void grow() {
+            int n = ids.length * 2;
+            ids = Arrays.copyOf(ids, n);
+            amounts = Arrays.copyOf(amounts, n);
+            epochDays = Arrays.copyOf(epochDays, n);
+            categoryIds = Arrays.copyOf(categoryIds, n);
+            noteOffsets = Arrays.copyOf(noteOffsets, n);
+        }
+    }
+
+    // --- files ---
+
+    // Writes b as base-snap.<seq> (via a temporary file, so a crash never leaves half a snapshot) and maps it
+    private static ExpenseSnapshot write(Path base, long seq, Builder b) throws IOException {
+        Path tmp = Path.of(base + SUFFIX + "tmp");
+        Path file = Path.of(base + SUFFIX + seq);
+        int n = b.size;
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(MAGIC).putInt(VERSION).putInt(n).putLong(seq).putLong(b.notes.position()).flip();
+        ByteBuffer columns = ByteBuffer.allocate(24 * n).order(ByteOrder.LITTLE_ENDIAN);
+        columns.asIntBuffer().put(b.ids, 0, n).put(b.epochDays, 0, n).put(b.categoryIds, 0, n).put(b.noteOffsets, 0, n);
+        columns.position(16 * n);
+        columns.asLongBuffer().put(b.amounts, 0, n);
+        columns.position(0);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] parts = {header, columns, b.notes.flip()};
+            long total = HEADER + 24L * n + b.notes.remaining();
+            for (long written = 0; written < total; ) written += ch.write(parts);
+            ch.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ExpenseSnapshot s = open(file, seq);
+        if (s == null) throw new IOException("Snapshot " + file + " did not read back");
+        return s;
+    }
+
+    // The newest valid snapshot file for base, or null; older and broken ones are deleted
+    private static ExpenseSnapshot openLatest(Path base) throws IOException {
+        Path dir = base.toAbsolutePath().getParent();
+        String prefix = base.getFileName() + SUFFIX;
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> found = Files.newDirectoryStream(dir,
+                f -> f.getFileName().toString().startsWith(prefix))) {
+            for (Path f : found) {
+                String tail = f.getFileName().toString().substring(prefix.length());
+                try {
+                    files.put(Long.parseLong(tail), f);
+                } catch (NumberFormatException e) {
+                    deleteQuietly(f);   // an interrupted write's temporary file
+                }
+            }
+        }
+        ExpenseSnapshot latest = null;
+        for (Map.Entry<Long, Path> e : files.descendingMap().entrySet()) {
+            if (latest == null) latest = open(e.getValue(), e.getKey());
+            if (latest == null || latest.file != e.getValue()) deleteQuietly(e.getValue());
+        }
+        return latest;
+    }
+
+    // Maps file, or returns null if it isn't a complete snapshot for seq
+    private static ExpenseSnapshot open(Path file, long seq) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = ch.size();
+            if (length < HEADER || length > Integer.MAX_VALUE) return null;
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            int n = map.getInt(12);
+            long noteBytes = map.getLong(24);
+            if (map.getLong(0) != MAGIC || map.getInt(8) != VERSION || map.getLong(16) != seq
+                    || n < 0 || noteBytes < 0 || length != HEADER + 24L * n + noteBytes) {
+                return null;
+            }
+            return new ExpenseSnapshot(file, map, n, seq, noteBytes);
+        }
+    }
+
+    // Best effort: on Windows a file that is still mapped can't be deleted until the next start
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignore) {
+            // Left for openLatest to remove later
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.expensetracker;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Hands results of background work back to the JavaFX Application Thread.
+ */
+public class FxAsync {
+
+    public static final Executor FX_THREAD = Platform::runLater;
+
+    /** Calls onSuccess or onError on the FX thread; cancelled futures call neither. */
+    public static <T> void then(CompletableFuture<T> future,
+                                Consumer<? super T> onSuccess,
+                                Consumer<Throwable> onError) {
+        future.whenCompleteAsync((value, ex) -> {
+            if (ex == null) {
+                onSuccess.accept(value);
+            } else {
+                Throwable cause = unwrap(ex);
+                if (!(cause instanceof CancellationException)) {
+                    onError.accept(cause);
+                }
+            }
+        }, FX_THREAD);
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    /**
+     * Tracks the newest request of one kind (e.g. "load month"). Submitting
+     * a new request cancels the previous one, and a superseded request's
+     * result is dropped even if it already finished. Use from the FX thread.
+     */
+    public static class Latest {
+        private CompletableFuture<?> current;
+
+        public <T> void submit(CompletableFuture<T> future,
+                               Consumer<? super T> onSuccess,
+                               Consumer<Throwable> onError) {
+            if (current != null) current.cancel(false);
+            current = future;
+            then(future,
+                    value -> { if (current == future) onSuccess.accept(value); },
+                    ex -> { if (current == future) onError.accept(ex); });
+        }
+
+        public void cancel() {
+            if (current != null) current.cancel(false);
+            current = null;
+        }
+    }
+}
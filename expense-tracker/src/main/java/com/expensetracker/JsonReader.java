@@ -0,0 +1,118 @@
+package com.expensetracker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses the flat JSON objects the API accepts: string, number, boolean
+ * and null members only. Numbers are kept as their source text, so an
+ * amount like 12.10 reaches Money.parse() without a trip through double.
+ */
+public class JsonReader {
+
+    private final String s;
+    private int pos;
+
+    private JsonReader(String s) {
+        this.s = s;
+    }
+
+    /** Member name -> String (for strings and numbers), Boolean, or null. */
+    public static Map<String, Object> parseObject(String json) {
+        JsonReader r = new JsonReader(json);
+        r.skipSpace();
+        Map<String, Object> map = r.object();
+        r.skipSpace();
+        if (r.pos != json.length()) throw r.error("Unexpected content after object");
+        return map;
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        expect('{');
+        skipSpace();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipSpace();
+            String name = string();
+            skipSpace();
+            expect(':');
+            skipSpace();
+            map.put(name, value());
+            skipSpace();
+            char c = next();
+            if (c == '}') return map;
+            if (c != ',') throw error("Expected , or }");
+        }
+    }
+
+    private Object value() {
+        char c = peek();
+        if (c == '"') return string();
+        if (c == '-' || (c >= '0' && c <= '9')) return number();
+        if (s.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+        if (s.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+        if (s.startsWith("null", pos)) { pos += 4; return null; }
+        throw error("Unsupported value");
+    }
+
+    private String number() {
+        int start = pos;
+        while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+        return s.substring(start, pos);
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = next();
+            switch (e) {
+                case '"', '\\', '/' -> sb.append(e);
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > s.length()) throw error("Bad unicode escape");
+                    sb.append((char) Integer.parseInt(s, pos, pos + 4, 16));
+                    pos += 4;
+                }
+                default -> throw error("Bad escape");
+            }
+        }
+    }
+
+    private void skipSpace() {
+        while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+    }
+
+    private char peek() {
+        if (pos >= s.length()) throw error("Unexpected end of JSON");
+        return s.charAt(pos);
+    }
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) throw error("Expected " + c);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+}
@@ -0,0 +1,134 @@
+package com.expensetracker;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming JSON writer. Values go straight into the underlying
+ * (buffered) writer; commas are tracked per nesting level, so callers only
+ * open and close containers and write names and values.
+ */
+public class JsonWriter implements Closeable, Flushable {
+
+    private static final int MAX_DEPTH = 32;
+
+    private final Writer out;
+    // first[depth] is true until the container at that depth has a member
+    private final boolean[] first = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separator();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separator();
+        if (value == null) out.write("null");
+        else string(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separator();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    // Exact decimal, e.g. 1200.50
+    public JsonWriter value(Money value) throws IOException {
+        separator();
+        out.write(value == null ? "null" : value.toString());
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separator();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    private JsonWriter open(char c) throws IOException {
+        separator();
+        if (depth == MAX_DEPTH) throw new IllegalStateException("JSON nested too deeply");
+        out.write(c);
+        first[depth++] = true;
+        return this;
+    }
+
+    private JsonWriter close(char c) throws IOException {
+        depth--;
+        out.write(c);
+        return this;
+    }
+
+    private void separator() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (!first[depth - 1]) out.write(',');
+            first[depth - 1] = false;
+        }
+    }
+
+    private void string(String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escape = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (escape != null) {
+                out.write(s, start, i - start);
+                out.write(escape);
+                start = i + 1;
+            }
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,394 @@
+package com.expensetracker;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Expenses split into one database file per tenant and year,
+ * root/&lt;tenant&gt;/&lt;year&gt;.db, so tenants (and years) don't share
+ * a write lock. Each ledger is a full app database and the usual DAOs run
+ * against it inside call(); ledgers open on first use and the least
+ * recently used idle ones are closed beyond maxOpen.
+ *
+ * Ids are per ledger: an expense is identified by (tenant, year, id).
+ * Category ids differ between ledgers too, so fan-out queries filter by
+ * date only. A finished year can be archived to a read-only
+ * &lt;year&gt;-archive.db.
+ */
+public class LedgerRouter implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_OPEN = 32;
+
+    private static final Pattern TENANT = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final Pattern LEDGER_FILE = Pattern.compile("(\\d{4})(-archive)?\\.db");
+    private static final int READERS_PER_LEDGER = 2;
+
+    private record Key(String tenant, int year) {}
+
+    private static final class Ledger {
+        final ConnectionManager db;
+        int users;          // guarded by the open map
+        boolean ready;      // guarded by this
+
+        Ledger(ConnectionManager db) {
+            this.db = db;
+        }
+    }
+
+    private final Path root;
+    private final int maxOpen;
+    private final LinkedHashMap<Key, Ledger> open = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Key> archiving = new HashSet<>();
+    private final ExecutorService fanOut;
+    private boolean closed;
+
+    public LedgerRouter(Path root, int maxOpen) {
+        if (maxOpen < 1) throw new IllegalArgumentException("maxOpen must be >= 1");
+        this.root = root;
+        this.maxOpen = maxOpen;
+        this.fanOut = ThreadSupport.newExecutor("ledger", ConnectionManager.defaultReaderCount());
+    }
+
+    public LedgerRouter(Path root) {
+        this(root, DEFAULT_MAX_OPEN);
+    }
+
+    /** Years tenant has a ledger for, oldest first. */
+    public List<Integer> years(String tenant) throws IOException {
+        Path dir = root.resolve(checkTenant(tenant));
+        TreeSet<Integer> years = new TreeSet<>();
+        if (!Files.isDirectory(dir)) return new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.db")) {
+            for (Path f : files) {
+                Matcher m = LEDGER_FILE.matcher(f.getFileName().toString());
+                if (m.matches()) years.add(Integer.parseInt(m.group(1)));
+            }
+        }
+        return new ArrayList<>(years);
+    }
+
+    public boolean isArchived(String tenant, int year) {
+        return Files.exists(file(new Key(checkTenant(tenant), year), true));
+    }
+
+    /**
+     * Runs work with Database bound to the (tenant, year) ledger, creating
+     * the ledger if needed. ExpenseDAO, SummaryDAO, AsyncExpenseDAO etc.
+     * called from work use that ledger.
+     */
+    public <T> T call(String tenant, int year, Supplier<T> work) throws SQLException {
+        Ledger l = acquire(new Key(checkTenant(tenant), year), true);
+        try {
+            return Database.bind(l.db, work);
+        } finally {
+            release(l);
+        }
+    }
+
+    // --- writes, routed by the expense's year ---
+
+    /** Inserts e into the ledger for its date's year; returns the new id, or -1. */
+    public int insertExpense(String tenant, Expense e) throws SQLException {
+        return call(tenant, e.getDate().getYear(), () -> ExpenseDAO.insertExpense(e));
+    }
+
+    /**
+     * Updates e, which is stored in the ledger for year. If its date moved
+     * to another year it is inserted there (getting a new id and that
+     * ledger's id for its category, set on e) and then deleted from the old
+     * one; a crash in between leaves a duplicate rather than losing the row.
+     */
+    public void updateExpense(String tenant, int year, Expense e) throws SQLException {
+        int newYear = e.getDate().getYear();
+        if (newYear == year) {
+            call(tenant, year, () -> {
+                ExpenseDAO.updateExpense(e);
+                return null;
+            });
+            return;
+        }
+        int oldId = e.getId();
+        int oldCategoryId = e.getCategoryId();
+        // Category ids are per ledger, so carry the category over by name
+        String category = e.getCategoryName() != null ? e.getCategoryName()
+                : call(tenant, year, () -> CategoryRegistry.get().name(oldCategoryId));
+        if (category == null) throw new SQLException("Expense " + oldId + " has no category");
+        int newId = call(tenant, newYear, () -> {
+            e.setCategoryId(ExpenseDAO.getOrCreateCategoryId(category));
+            return ExpenseDAO.insertExpense(e);
+        });
+        if (newId < 0) {
+            e.setId(oldId);
+            e.setCategoryId(oldCategoryId);
+            throw new SQLException("Could not move expense " + oldId + " to " + newYear);
+        }
+        deleteExpense(tenant, year, oldId);
+    }
+
+    public void deleteExpense(String tenant, int year, int id) throws SQLException {
+        call(tenant, year, () -> {
+            ExpenseDAO.deleteExpense(id);
+            return null;
+        });
+    }
+
+    // --- reads across ledgers ---
+
+    /**
+     * Runs query against every existing ledger of tenant that overlaps
+     * [from, to) (null = unbounded), in parallel, and returns the results
+     * oldest year first. query gets the date filter and runs bound to the
+     * ledger, like call().
+     */
+    public <T> List<T> fanOut(String tenant, LocalDate from, LocalDate to,
+                              Function<ExpenseFilter, T> query) throws SQLException {
+        ExpenseFilter filter = new ExpenseFilter(from, to, null);
+        List<Integer> years = new ArrayList<>();
+        try {
+            for (int y : years(tenant)) {
+                if ((from == null || y >= from.getYear()) && (to == null || y <= to.minusDays(1).getYear())) {
+                    years.add(y);
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not list ledgers of " + tenant, e);
+        }
+        if (years.size() == 1) {
+            return Collections.singletonList(read(tenant, years.get(0), () -> query.apply(filter)));
+        }
+        List<CompletableFuture<T>> parts = new ArrayList<>(years.size());
+        for (int y : years) {
+            parts.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return read(tenant, y, () -> query.apply(filter));
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, fanOut));
+        }
+        List<T> results = new ArrayList<>(parts.size());
+        try {
+            for (CompletableFuture<T> part : parts) results.add(part.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException s) throw s;
+            throw e;
+        }
+        return results;
+    }
+
+    /** Expenses of tenant in [from, to), in (date, id) order. */
+    public List<Expense> getExpenses(String tenant, LocalDate from, LocalDate to) throws SQLException {
+        List<Expense> all = new ArrayList<>();
+        // Each ledger is one year, so concatenating them in year order keeps date order
+        for (List<Expense> part : fanOut(tenant, from, to,
+                f -> ExpenseDAO.getExpensePage(f, null, 0, 0, Integer.MAX_VALUE))) {
+            all.addAll(part);
+        }
+        return all;
+    }
+
+    public long countExpenses(String tenant, LocalDate from, LocalDate to) throws SQLException {
+        long count = 0;
+        for (long n : fanOut(tenant, from, to, ExpenseDAO::countExpenses)) count += n;
+        return count;
+    }
+
+    public Money sumAmount(String tenant, LocalDate from, LocalDate to) throws SQLException {
+        Money sum = Money.ZERO;
+        for (Money m : fanOut(tenant, from, to, ExpenseDAO::sumAmount)) sum = sum.plus(m);
+        return sum;
+    }
+
+    // --- archiving ---
+
+    /**
+     * Makes tenant's ledger for year read-only: takes it out of WAL mode,
+     * compacts it and renames it to &lt;year&gt;-archive.db. Later opens have
+     * readers only, and writes to that year fail. The ledger must not be in
+     * use; calls for it fail while this runs.
+     */
+    public void archive(String tenant, int year) throws SQLException, IOException {
+        Key key = new Key(checkTenant(tenant), year);
+        Path live = file(key, false);
+        if (!Files.exists(live)) throw new NoSuchFileException(live.toString());
+        Ledger l;
+        synchronized (open) {
+            l = open.get(key);
+            if (l != null && l.users > 0) throw new SQLException("Ledger " + live + " is in use");
+            if (!archiving.add(key)) throw new SQLException("Ledger " + live + " is being archived");
+            open.remove(key);
+        }
+        try {
+            if (l != null) l.db.close();
+            // Opened through init() first so a write-behind log left behind gets replayed
+            ConnectionManager db = new ConnectionManager(url(live), 1);
+            try {
+                Database.bind(db, () -> {
+                    Database.init();
+                    return null;
+                });
+            } finally {
+                db.close();
+            }
+            // Leaving WAL mode needs the only connection to the file
+            try (Connection conn = DriverManager.getConnection(url(live));
+                 Statement st = conn.createStatement()) {
+                st.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                st.execute("PRAGMA journal_mode = DELETE");
+                st.execute("VACUUM");
+                st.execute("PRAGMA optimize");
+            }
+            Path archived = file(key, true);
+            Files.move(live, archived, StandardCopyOption.ATOMIC_MOVE);
+            archived.toFile().setReadOnly();
+        } finally {
+            synchronized (open) {
+                archiving.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Ledger> all;
+        synchronized (open) {
+            closed = true;
+            all = new ArrayList<>(open.values());
+            open.clear();
+        }
+        fanOut.shutdown();
+        all.forEach(l -> l.db.close());
+    }
+
+    // --- ledger handles ---
+
+    // Like call(), but a missing ledger is not created
+    private <T> T read(String tenant, int year, Supplier<T> work) throws SQLException {
+        Ledger l = acquire(new Key(tenant, year), false);
+        try {
+            return Database.bind(l.db, work);
+        } finally {
+            release(l);
+        }
+    }
+
+    private Ledger acquire(Key key, boolean create) throws SQLException {
+        Ledger l;
+        List<Ledger> evicted;
+        synchronized (open) {
+            if (closed) throw new SQLException("Ledger router is closed");
+            if (archiving.contains(key)) throw new SQLException("Ledger " + file(key, false) + " is being archived");
+            l = open.get(key);
+            if (l == null) {
+                l = new Ledger(openManager(key, create));
+                open.put(key, l);
+            }
+            l.users++;
+            evicted = trim();
+        }
+        evicted.forEach(e -> e.db.close());
+        try {
+            ensureReady(l);
+        } catch (SQLException | RuntimeException e) {
+            release(l);
+            throw e;
+        }
+        return l;
+    }
+
+    private void release(Ledger l) {
+        List<Ledger> evicted;
+        synchronized (open) {
+            l.users--;
+            evicted = trim();
+        }
+        evicted.forEach(e -> e.db.close());
+    }
+
+    // Drops least recently used idle ledgers beyond maxOpen; caller closes them outside the lock
+    private List<Ledger> trim() {
+        List<Ledger> evicted = new ArrayList<>();
+        Iterator<Ledger> it = open.values().iterator();
+        while (open.size() - evicted.size() > maxOpen && it.hasNext()) {
+            Ledger l = it.next();
+            if (l.users == 0) {
+                it.remove();
+                evicted.add(l);
+            }
+        }
+        return evicted;
+    }
+
+    private ConnectionManager openManager(Key key, boolean create) throws SQLException {
+        Path archived = file(key, true);
+        if (Files.exists(archived)) {
+            return new ConnectionManager(url(archived), READERS_PER_LEDGER, true);
+        }
+        Path live = file(key, false);
+        if (!create && !Files.exists(live)) {
+            throw new SQLException("No ledger " + live);
+        }
+        try {
+            Files.createDirectories(live.getParent());
+        } catch (IOException e) {
+            throw new SQLException("Could not create " + live.getParent(), e);
+        }
+        return new ConnectionManager(url(live), READERS_PER_LEDGER);
+    }
+
+    // Schema and categories, once per open; other users of the ledger wait for it
+    private static void ensureReady(Ledger l) throws SQLException {
+        synchronized (l) {
+            if (l.ready) return;
+            if (l.db.isReadOnly()) {
+                l.db.categories().load();
+            } else {
+                Database.bind(l.db, () -> {
+                    Database.init();
+                    return null;
+                });
+            }
+            l.ready = true;
+        }
+    }
+
+    private Path file(Key key, boolean archived) {
+        return root.resolve(key.tenant()).resolve(key.year() + (archived ? "-archive.db" : ".db"));
+    }
+
+    private static String url(Path file) {
+        return "jdbc:sqlite:" + file;
+    }
+
+    // Tenant names become directory names
+    private static String checkTenant(String tenant) {
+        if (tenant == null || !TENANT.matcher(tenant).matches()) {
+            throw new IllegalArgumentException("Bad tenant name: " + tenant);
+        }
+        return tenant;
+    }
+}
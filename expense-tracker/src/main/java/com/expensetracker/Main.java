@@ -1,11 +1,12 @@
 package com.expensetracker;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -14,16 +15,19 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.sql.SQLException;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.Month;
+import java.time.YearMonth;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Predicate;
 
 public class Main extends Application {
 
@@ -31,13 +35,33 @@ public class Main extends Application {
 
     // Raw data from DB
     private final ObservableList<Expense> masterData = FXCollections.observableArrayList();
-    // For search
-    private FilteredList<Expense> filteredData;
+    // Rows passing the search box, kept by search
+    private final ObservableList<Expense> visibleData = FXCollections.observableArrayList();
+    private final ExpenseSearch search = new ExpenseSearch(masterData, visibleData);
+    private SortedList<Expense> sortedData;
 
     private ComboBox<Integer> yearBox;
     private ComboBox<Month> monthBox;
+    private CheckBox allDatesBox;
     private TextField searchField;
+    private CheckBox searchAllBox;
     private Label totalLabel;
+    private Label statusLabel;
+    private ProgressBar progressBar;
+
+    private static final int HISTORY_SEARCH_LIMIT = 2000;
+    // Larger journal batches (imports) reload the month instead of patching it
+    private static final int MAX_DELTA_CHANGES = 500;
+
+    // Search waits for a pause in typing; whole-history search hits the database, so longer
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(120));
+    private final PauseTransition historySearchDelay = new PauseTransition(Duration.millis(250));
+
+    // Newest month load; switching months drops stale results
+    private final FxAsync.Latest monthRequest = new FxAsync.Latest();
+    private ChartService charts;
+    private RecurringScheduler recurring;
+    private boolean monthLoading;
 
     private final NumberFormat currencyFormat =
             NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
@@ -45,6 +69,12 @@ public class Main extends Application {
     @Override
     public void start(Stage primaryStage) {
         Database.init(); // ensure DB + tables + categories
+        Metrics.registerMBean();
+        charts = new ChartService(primaryStage, ChartService.defaultRenderer());
+        ChangeJournal.get().subscribe(changes -> Platform.runLater(() -> applyChanges(changes)));
+        AsyncExpenseDAO.run(Main::refreshSnapshot);
+        BudgetTracker.get().subscribe(alerts -> Platform.runLater(() -> showBudgetAlerts(alerts)));
+        recurring = new RecurringScheduler();
 
         BorderPane root = new BorderPane();
         root.setPadding(new Insets(10));
@@ -58,9 +88,8 @@ public class Main extends Application {
         HBox bottomBar = buildBottomBar();
         root.setBottom(bottomBar);
 
-        // Wrap master data in FilteredList & SortedList
-        filteredData = new FilteredList<>(masterData, p -> true);
-        SortedList<Expense> sortedData = new SortedList<>(filteredData);
+        // Search results, sorted by the table's columns
+        sortedData = new SortedList<>(visibleData);
         sortedData.comparatorProperty().bind(table.comparatorProperty());
         table.setItems(sortedData);
 
@@ -86,6 +115,27 @@ public class Main extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        if (recurring != null) recurring.close();
+        // Written at the end of each session, so the next start just maps it. Not on the
+        // FX thread: a non-daemon thread keeps the JVM up until the snapshot is written,
+        // and only then closes the pool.
+        Thread closer = new Thread(() -> {
+            refreshSnapshot();
+            Database.shutdown();
+        }, "shutdown");
+        closer.start();
+    }
+
+    private static void refreshSnapshot() {
+        try {
+            ExpenseSnapshot.refresh();
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
     private HBox buildTopBar(Stage stage) {
         HBox box = new HBox(10);
         box.setAlignment(Pos.CENTER_LEFT);
@@ -105,11 +155,36 @@ public class Main extends Application {
         Button filterBtn = new Button("Apply Filter");
         filterBtn.setOnAction(e -> refreshTable());
 
+        // Browse the whole ledger, loaded page by page as the table scrolls
+        allDatesBox = new CheckBox("All dates");
+        allDatesBox.setOnAction(e -> refreshTable());
+        monthBox.disableProperty().bind(allDatesBox.selectedProperty());
+        yearBox.disableProperty().bind(allDatesBox.selectedProperty());
+
         // Search field – filters by category or note
         Label searchLabel = new Label("Search:");
         searchField = new TextField();
         searchField.setPromptText("Category or note...");
-        searchField.textProperty().addListener((obs, old, val) -> applySearchFilter());
+        searchField.textProperty().addListener((obs, old, val) -> {
+            if (searchAllBox.isSelected()) {
+                historySearchDelay.playFromStart();
+            } else {
+                searchDelay.playFromStart();
+            }
+        });
+        // Enter searches without waiting
+        searchField.setOnAction(e -> {
+            if (searchAllBox.isSelected()) return;
+            searchDelay.stop();
+            applySearchFilter();
+        });
+        searchDelay.setOnFinished(e -> applySearchFilter());
+
+        // Search the full-text index over the whole history instead of the loaded month
+        searchAllBox = new CheckBox("All history");
+        searchAllBox.setOnAction(e -> refreshTable());
+        searchAllBox.disableProperty().bind(searchField.disabledProperty());
+        historySearchDelay.setOnFinished(e -> refreshTable());
 
         Button addBtn = new Button("Add");
         addBtn.setOnAction(e -> onAdd(stage));
@@ -121,35 +196,47 @@ public class Main extends Application {
         deleteBtn.setOnAction(e -> onDelete());
 
         Button chartsBtn = new Button("Show Charts");
-        chartsBtn.setOnAction(e -> onShowCharts(stage));
+        chartsBtn.setOnAction(e -> onShowCharts());
 
         Button exportBtn = new Button("Export CSV");
         exportBtn.setOnAction(e -> onExport(stage));
 
+        Button importBtn = new Button("Import CSV");
+        importBtn.setOnAction(e -> onImport(stage));
+
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
 
         box.getChildren().addAll(
                 monthLabel, monthBox,
                 yearLabel, yearBox,
-                filterBtn,
-                searchLabel, searchField,
+                filterBtn, allDatesBox,
+                searchLabel, searchField, searchAllBox,
                 spacer,
                 addBtn, editBtn, deleteBtn,
-                chartsBtn, exportBtn
+                chartsBtn, importBtn, exportBtn
         );
         return box;
     }
 
     private HBox buildBottomBar() {
-        HBox box = new HBox();
+        HBox box = new HBox(10);
         box.setPadding(new Insets(8, 5, 0, 5));
-        box.setAlignment(Pos.CENTER_RIGHT);
+        box.setAlignment(Pos.CENTER_LEFT);
+
+        // Progress of background jobs (import/export), hidden when idle
+        statusLabel = new Label();
+        progressBar = new ProgressBar();
+        progressBar.setPrefWidth(180);
+        progressBar.setVisible(false);
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
 
         totalLabel = new Label("Total: ₹0.00");
         totalLabel.getStyleClass().add("total-label");
 
-        box.getChildren().add(totalLabel);
+        box.getChildren().addAll(progressBar, statusLabel, spacer, totalLabel);
         return box;
     }
 
@@ -164,18 +251,18 @@ public class Main extends Application {
         catCol.setCellValueFactory(new PropertyValueFactory<>("categoryName"));
         catCol.setPrefWidth(160);
 
-        TableColumn<Expense, Double> amountCol = new TableColumn<>("Amount");
+        TableColumn<Expense, Money> amountCol = new TableColumn<>("Amount");
         amountCol.setCellValueFactory(new PropertyValueFactory<>("amount"));
         amountCol.setPrefWidth(120);
         // Format as currency in the cell
         amountCol.setCellFactory(col -> new TableCell<>() {
             @Override
-            protected void updateItem(Double value, boolean empty) {
+            protected void updateItem(Money value, boolean empty) {
                 super.updateItem(value, empty);
                 if (empty || value == null) {
                     setText(null);
                 } else {
-                    setText(currencyFormat.format(value));
+                    setText(currencyFormat.format(value.toBigDecimal()));
                 }
             }
         });
@@ -186,54 +273,163 @@ public class Main extends Application {
 
         tv.getColumns().addAll(dateCol, catCol, amountCol, noteCol);
         tv.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        // The paged list is always in (date, id) order and can't be re-sorted in memory
+        tv.setSortPolicy(t -> !(t.getItems() instanceof PagedExpenseList)
+                && TableView.DEFAULT_SORT_POLICY.call(t));
         return tv;
     }
 
     private void refreshTable() {
+        if (allDatesBox.isSelected()) {
+            showAllDates();
+            return;
+        }
+        searchField.setDisable(false);
+        if (table.getItems() != sortedData) table.setItems(sortedData);
+        if (isHistorySearch()) {
+            runHistorySearch();
+            return;
+        }
+
         Integer year = yearBox.getValue();
         Month month = monthBox.getValue();
         if (year == null || month == null) return;
 
-        List<Expense> list = ExpenseDAO.getExpensesByMonthYear(year, month.getValue());
-        masterData.setAll(list);
-        applySearchFilter(); // reapply search filter
-        updateTotalLabel();
+        monthLoading = true;
+        long requested = System.nanoTime();
+        monthRequest.submit(AsyncExpenseDAO.getExpensesByMonthYear(year, month.getValue()),
+                list -> {
+                    // Time the FX thread is blocked, and request-to-table latency
+                    Metrics.Span span = Metrics.start("fx.refreshTable");
+                    monthLoading = false;
+                    masterData.setAll(list);
+                    searchDelay.stop();
+                    search.refresh(searchField.getText()); // reapply search filter
+                    updateTotalLabel();
+                    span.end(list.size());
+                    Metrics.timer("ui.monthLoad").record(System.nanoTime() - requested, list.size());
+                },
+                ex -> {
+                    monthLoading = false;
+                    showAsyncError(ex);
+                });
     }
 
-    private void applySearchFilter() {
-        String text = searchField == null ? "" : searchField.getText();
-        if (filteredData == null) return;
+    /**
+     * Applies committed changes to the loaded month: the changed rows are
+     * replaced in masterData and the total moves by the difference. Other
+     * views, large batches, or changes racing a month load fall back to a
+     * full refresh.
+     */
+    private void applyChanges(List<ChangeJournal.Change> changes) {
+        Metrics.Span span = Metrics.start("fx.applyChanges");
+        try {
+            applyChangesNow(changes);
+        } finally {
+            span.end(changes.size());
+        }
+    }
 
-        String lower = text == null ? "" : text.toLowerCase();
+    private void applyChangesNow(List<ChangeJournal.Change> changes) {
+        charts.refreshOpen();
+        Integer year = yearBox.getValue();
+        Month month = monthBox.getValue();
+        if (isPaged() || isHistorySearch() || monthLoading || year == null || month == null
+                || changes.size() > MAX_DELTA_CHANGES) {
+            refreshTable();
+            return;
+        }
 
-        Predicate<Expense> predicate;
-        if (lower.isBlank()) {
-            predicate = e -> true;
-        } else {
-            predicate = e ->
-                    (e.getCategoryName() != null &&
-                            e.getCategoryName().toLowerCase().contains(lower))
-                    || (e.getNote() != null &&
-                            e.getNote().toLowerCase().contains(lower));
+        YearMonth shown = YearMonth.of(year, month);
+        for (ChangeJournal.Change c : changes) {
+            // Remove-then-add keeps this idempotent if the row was already loaded
+            int index = indexOfId(c.expenseId());
+            if (index >= 0) {
+                // The dialog edits the shown row in place, so its amount may already be the new one
+                Expense row = masterData.remove(index);
+                search.removed(row, c.before() != null ? c.before().getAmount() : row.getAmount());
+            }
+            Expense after = c.after();
+            if (after != null && YearMonth.from(after.getDate()).equals(shown)) {
+                masterData.add(insertionPoint(after), after);
+                search.added(after);
+            }
         }
-        filteredData.setPredicate(predicate);
+        showTotal();
+    }
+
+    private int indexOfId(int id) {
+        for (int i = 0; i < masterData.size(); i++) {
+            if (masterData.get(i).getId() == id) return i;
+        }
+        return -1;
+    }
+
+    // masterData is in (date, id) order, as loaded
+    private int insertionPoint(Expense e) {
+        int i = Collections.binarySearch(masterData, e, Expense.BY_DATE_ID);
+        return i < 0 ? -i - 1 : i;
+    }
+
+    private boolean isHistorySearch() {
+        return searchAllBox.isSelected() && !searchField.getText().isBlank();
+    }
+
+    private void runHistorySearch() {
+        monthRequest.submit(AsyncExpenseDAO.searchExpenses(
+                        searchField.getText(), ExpenseFilter.all(), HISTORY_SEARCH_LIMIT),
+                list -> {
+                    masterData.setAll(list);
+                    // Results already match; don't filter them again by substring
+                    search.refresh("");
+                    updateTotalLabel();
+                },
+                this::showAsyncError);
+    }
+
+    private void showAllDates() {
+        // Search works on the loaded month only
+        searchField.setDisable(true);
+        ExpenseFilter filter = ExpenseFilter.all();
+        var count = AsyncExpenseDAO.countExpenses(filter);
+        var sum = AsyncExpenseDAO.sumAmount(filter);
+        monthRequest.submit(count.thenCombine(sum, Map::entry),
+                r -> {
+                    table.setItems(new PagedExpenseList(filter, Math.toIntExact(r.getKey())));
+                    // Footer total comes from SQL, not from loaded rows
+                    totalLabel.setText("Total: " + currencyFormat.format(r.getValue().toBigDecimal()));
+                },
+                this::showAsyncError);
+    }
+
+    private boolean isPaged() {
+        return table.getItems() instanceof PagedExpenseList;
+    }
+
+    private void applySearchFilter() {
+        if (isPaged() || isHistorySearch()) return;
+
+        Metrics.Span span = Metrics.start("fx.applySearchFilter");
+        search.search(searchField.getText());
         updateTotalLabel();
+        span.end(visibleData.size());
     }
 
     private void updateTotalLabel() {
-        double sum = filteredData == null
-                ? masterData.stream().mapToDouble(Expense::getAmount).sum()
-                : filteredData.stream().mapToDouble(Expense::getAmount).sum();
+        if (isPaged()) return;
+        showTotal();
+    }
 
-        totalLabel.setText("Total: " + currencyFormat.format(sum));
+    // search keeps the total of the visible rows as they change
+    private void showTotal() {
+        totalLabel.setText("Total: " + currencyFormat.format(Money.ofMinor(search.total()).toBigDecimal()));
     }
 
     private void onAdd(Stage owner) {
         Optional<Expense> result = ExpenseDialogs.showExpenseDialog(owner, null);
-        result.ifPresent(exp -> {
-            ExpenseDAO.insertExpense(exp);
-            refreshTable();
-        });
+        // The table picks the change up from the journal
+        result.ifPresent(exp -> FxAsync.then(AsyncExpenseDAO.insertExpense(exp),
+                id -> {}, this::showAsyncError));
     }
 
     private void onEdit(Stage owner) {
@@ -243,10 +439,8 @@ public class Main extends Application {
             return;
         }
         Optional<Expense> result = ExpenseDialogs.showExpenseDialog(owner, selected);
-        result.ifPresent(exp -> {
-            ExpenseDAO.updateExpense(exp);
-            refreshTable();
-        });
+        result.ifPresent(exp -> FxAsync.then(AsyncExpenseDAO.updateExpense(exp),
+                v -> {}, this::showAsyncError));
     }
 
     private void onDelete() {
@@ -260,50 +454,149 @@ public class Main extends Application {
         alert.setHeaderText(null);
         alert.showAndWait().ifPresent(btn -> {
             if (btn == ButtonType.YES) {
-                ExpenseDAO.deleteExpense(selected.getId());
-                refreshTable();
+                FxAsync.then(AsyncExpenseDAO.deleteExpense(selected.getId()),
+                        v -> {}, this::showAsyncError);
             }
         });
     }
 
-    private void onShowCharts(Stage owner) {
+    private void onShowCharts() {
         Integer year = yearBox.getValue();
         Month month = monthBox.getValue();
         if (year == null || month == null) return;
 
-        Map<String, Double> byCategory =
-                ExpenseDAO.getMonthlyTotalsByCategory(year, month.getValue());
-        Map<LocalDate, Double> byDay =
-                ExpenseDAO.getDailyTotals(year, month.getValue());
-
-        ChartUtils.showCategoryPieChart(owner, byCategory,
-                "Expenses by Category - " + month + " " + year);
-        ChartUtils.showDailyBarChart(owner, byDay,
-                "Daily Expenses - " + month + " " + year);
+        YearMonth period = YearMonth.of(year, month);
+        charts.show(ChartService.ChartType.CATEGORY_PIE, period);
+        charts.show(ChartService.ChartType.DAILY_BAR, period);
     }
 
     private void onExport(Stage owner) {
+        Integer year = yearBox.getValue();
+        Month month = monthBox.getValue();
+        if (year == null || month == null) return;
+
+        String thisMonth = month + " " + year;
+        String thisYear = "All of " + year;
+        String everything = "All expenses";
+        ChoiceDialog<String> scope = new ChoiceDialog<>(thisMonth, thisMonth, thisYear, everything);
+        scope.setTitle("Export expenses");
+        scope.setHeaderText(null);
+        scope.setContentText("Export:");
+        Optional<String> choice = scope.showAndWait();
+        if (choice.isEmpty()) return;
+
+        ExpenseFilter filter;
+        String name;
+        if (choice.get().equals(thisYear)) {
+            filter = ExpenseFilter.year(year);
+            name = "expenses_" + year;
+        } else if (choice.get().equals(everything)) {
+            filter = ExpenseFilter.all();
+            name = "expenses_all";
+        } else {
+            filter = ExpenseFilter.month(year, month.getValue());
+            name = "expenses_" + month + "_" + year;
+        }
+
         FileChooser fc = new FileChooser();
         fc.setTitle("Export expenses to CSV");
-        fc.setInitialFileName("expenses_" + monthBox.getValue() + "_" + yearBox.getValue() + ".csv");
+        fc.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV files", "*.csv"),
+                new FileChooser.ExtensionFilter("Gzipped CSV files", "*.csv.gz"));
+        fc.setInitialFileName(name + ".csv");
         var file = fc.showSaveDialog(owner);
         if (file == null) return;
 
-        try (PrintWriter pw = new PrintWriter(file, "UTF-8")) {
-            pw.println("Date,Category,Amount,Note");
-            for (Expense e : table.getItems()) {
-                String cleanNote = e.getNote() == null ? "" : e.getNote().replace(",", " ");
-                pw.printf("%s,%s,%.2f,%s%n",
-                        e.getDate(),
-                        e.getCategoryName(),
-                        e.getAmount(),
-                        cleanNote);
+        Task<Long> task = new Task<>() {
+            @Override
+            protected Long call() throws Exception {
+                return ExpenseExporter.exportTo(file.toPath(), filter, (written, total) -> {
+                    updateMessage("Exporting... " + written + " rows");
+                    if (total > 0) updateProgress(written, total);
+                });
+            }
+        };
+        task.setOnSucceeded(e ->
+                showInfo("Exported " + task.getValue() + " expenses to " + file.getAbsolutePath()));
+        task.setOnFailed(e -> {
+            task.getException().printStackTrace();
+            showError("Failed to export CSV: " + task.getException().getMessage());
+        });
+        runInBackground(task);
+    }
+
+    private void onImport(Stage owner) {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Import expenses from CSV");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        var file = fc.showOpenDialog(owner);
+        if (file == null) return;
+
+        Task<BulkImporter.Result> task = new Task<>() {
+            @Override
+            protected BulkImporter.Result call() throws Exception {
+                return new BulkImporter().importFile(file.toPath(), (read, imported, rejected) ->
+                        updateMessage("Importing... " + imported + " rows, " + rejected + " rejected"));
+            }
+        };
+        task.setOnSucceeded(e -> {
+            BulkImporter.Result r = task.getValue();
+            refreshTable();
+            StringBuilder msg = new StringBuilder("Imported " + r.imported() + " expenses.");
+            if (r.rejected() > 0) {
+                msg.append("\n").append(r.rejected()).append(" rows were rejected:");
+                r.rejectedRows().stream().limit(10).forEach(row ->
+                        msg.append("\n  line ").append(row.line()).append(": ").append(row.reason()));
             }
-            showInfo("Exported to " + file.getAbsolutePath());
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            showError("Failed to export CSV: " + ex.getMessage());
+            showInfo(msg.toString());
+        });
+        task.setOnFailed(e -> {
+            refreshTable();
+            showError("Import failed: " + task.getException().getMessage());
+        });
+        runInBackground(task);
+    }
+
+    // Runs task on a daemon thread, showing its message/progress in the bottom bar
+    private void runInBackground(Task<?> task) {
+        statusLabel.textProperty().bind(task.messageProperty());
+        progressBar.progressProperty().bind(task.progressProperty());
+        progressBar.setVisible(true);
+        task.runningProperty().addListener((obs, was, running) -> {
+            if (!running) {
+                statusLabel.textProperty().unbind();
+                statusLabel.setText("");
+                progressBar.progressProperty().unbind();
+                progressBar.setVisible(false);
+            }
+        });
+        Thread t = new Thread(task, "background-task");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void showAsyncError(Throwable ex) {
+        ex.printStackTrace();
+        showError("Database error: " + ex.getMessage());
+    }
+
+    // Non-modal, so a bulk change raising several alerts doesn't stack dialogs to click through
+    private void showBudgetAlerts(List<BudgetTracker.Alert> alerts) {
+        StringBuilder msg = new StringBuilder();
+        for (BudgetTracker.Alert a : alerts) {
+            BudgetTracker.Budget b = a.budget();
+            String what = b.categoryId() == null ? "Overall" : CategoryRegistry.get().name(b.categoryId());
+            String period = b.period() == BudgetTracker.Period.MONTH
+                    ? YearMonth.from(a.periodStart()).toString() : String.valueOf(a.periodStart().getYear());
+            msg.append(what).append(' ').append(period).append(": ")
+                    .append(currencyFormat.format(a.spent().toBigDecimal())).append(" of ")
+                    .append(currencyFormat.format(b.limit().toBigDecimal()))
+                    .append(a.level() == BudgetTracker.Level.EXCEEDED ? " (over budget)" : " (nearing budget)")
+                    .append('\n');
         }
+        Alert alert = new Alert(Alert.AlertType.WARNING, msg.toString().trim(), ButtonType.OK);
+        alert.setHeaderText("Budget");
+        alert.show();
     }
 
     private void showInfo(String msg) {
@@ -0,0 +1,394 @@
+package com.expensetracker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms, counts and row counts for DAO calls and FX-thread work.
+ * A DAO call is timed in phases: acquire (waiting for a pooled connection or
+ * the writer lock), execute (until SQLite has the first row; it steps lazily)
+ * and fetch (the remaining rows, mapping them, and giving the connection back).
+ * Statements are also profiled per SQL text.
+ *
+ * Everything is visible through dump(), the JMX bean
+ * com.expensetracker:type=Metrics and the JFR event com.expensetracker.Operation.
+ * -Dexpensetracker.metrics=false turns recording off;
+ * -Dexpensetracker.slowMs=N prints operations slower than N ms to stderr.
+ */
+public class Metrics {
+
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("expensetracker.metrics"));
+    private static final long SLOW_NANOS = Long.getLong("expensetracker.slowMs", -1) < 0
+            ? Long.MAX_VALUE : Long.getLong("expensetracker.slowMs") * 1_000_000;
+
+    // Dynamic WHERE clauses make a few variants per query; anything past this is not profiled
+    private static final int MAX_STATEMENTS = 200;
+
+    private static final ConcurrentMap<String, Timer> operations = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Timer> statements = new ConcurrentHashMap<>();
+
+    private static final Span DISABLED = new Span(null);
+
+    /** Starts timing one call of operation; call end() exactly once when it is done. */
+    public static Span start(String operation) {
+        return ENABLED ? new Span(timer(operation)) : DISABLED;
+    }
+
+    public static Timer timer(String operation) {
+        Timer t = operations.get(operation);
+        return t != null ? t : operations.computeIfAbsent(operation, Timer::new);
+    }
+
+    private static Timer statement(String sql) {
+        Timer t = statements.get(sql);
+        if (t != null || statements.size() >= MAX_STATEMENTS) return t;
+        return statements.computeIfAbsent(sql, s -> new Timer(s.strip().replaceAll("\\s+", " ")));
+    }
+
+    public static List<Snapshot> operations() {
+        return snapshots(operations);
+    }
+
+    public static List<Snapshot> statements() {
+        return snapshots(statements);
+    }
+
+    private static List<Snapshot> snapshots(Map<String, Timer> timers) {
+        List<Snapshot> list = new ArrayList<>();
+        for (Timer t : timers.values()) {
+            Snapshot s = t.snapshot();
+            if (s.count() > 0) list.add(s);
+        }
+        return list;
+    }
+
+    public static void reset() {
+        operations.values().forEach(Timer::reset);
+        statements.values().forEach(Timer::reset);
+    }
+
+    /** Plain-text report: operations by name, then the statements that took the most time. */
+    public static String dump() {
+        StringWriter out = new StringWriter();
+        PrintWriter w = new PrintWriter(out);
+
+        List<Snapshot> ops = operations();
+        ops.sort(Comparator.comparing(Snapshot::name));
+        w.printf("%-34s %8s %6s %9s %9s %9s %9s %9s %9s %9s %9s %9s%n", "Operation (ms)",
+                "count", "errors", "rows", "mean", "p50", "p90", "p99", "max", "acquire", "execute", "fetch");
+        for (Snapshot s : ops) {
+            w.printf("%-34s %8d %6d %9d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n", s.name(),
+                    s.count(), s.errors(), s.rows(), ms(s.meanNanos()), ms(s.p50()), ms(s.p90()),
+                    ms(s.p99()), ms(s.max()), ms(s.acquireNanos() / s.count()),
+                    ms(s.executeNanos() / s.count()), ms(s.fetchNanos() / s.count()));
+        }
+
+        List<Snapshot> sql = statements();
+        sql.sort(Comparator.comparingLong(Snapshot::totalNanos).reversed());
+        w.println();
+        w.printf("%8s %9s %9s %9s %9s %11s  %s%n", "count", "rows", "mean", "p99", "max", "total", "Statement (ms)");
+        for (Snapshot s : sql.subList(0, Math.min(20, sql.size()))) {
+            // Keep both ends: variants of a query usually differ in the WHERE clause
+            String text = s.name().length() <= 110 ? s.name()
+                    : s.name().substring(0, 50) + " ... " + s.name().substring(s.name().length() - 55);
+            w.printf("%8d %9d %9.3f %9.3f %9.3f %11.3f  %s%n", s.count(), s.rows(), ms(s.meanNanos()),
+                    ms(s.p99()), ms(s.max()), ms(s.totalNanos()), text);
+        }
+        w.flush();
+        return out.toString();
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    // Registers the JMX bean once; later calls do nothing
+    public static synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("com.expensetracker:type=Metrics");
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) server.registerMBean(new MBean(), name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public record Snapshot(String name, long count, long errors, long rows, long totalNanos,
+                           long acquireNanos, long executeNanos, long fetchNanos,
+                           long p50, long p90, long p99, long max) {
+
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+    }
+
+    /** Counts, rows, phase totals and a latency histogram for one operation. */
+    public static final class Timer {
+        private final String name;
+        private final Histogram histogram = new Histogram();
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAdder acquire = new LongAdder();
+        private final LongAdder execute = new LongAdder();
+        private final LongAdder fetch = new LongAdder();
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        // For work without phases, e.g. a stall on the FX thread
+        public void record(long nanos, long rowCount) {
+            record(nanos, rowCount, 0, 0, 0, false);
+        }
+
+        void record(long nanos, long rowCount, long acquireNanos, long executeNanos,
+                    long fetchNanos, boolean failed) {
+            if (!ENABLED) return;
+            histogram.record(nanos);
+            count.increment();
+            total.add(nanos);
+            rows.add(rowCount);
+            acquire.add(acquireNanos);
+            execute.add(executeNanos);
+            fetch.add(fetchNanos);
+            if (failed) errors.increment();
+        }
+
+        Snapshot snapshot() {
+            long[] counts = histogram.counts();
+            long n = 0;
+            for (long c : counts) n += c;
+            long max = histogram.max();
+            return new Snapshot(name, count.sum(), errors.sum(), rows.sum(), total.sum(),
+                    acquire.sum(), execute.sum(), fetch.sum(),
+                    Histogram.percentile(counts, n, 50, max), Histogram.percentile(counts, n, 90, max),
+                    Histogram.percentile(counts, n, 99, max), max);
+        }
+
+        void reset() {
+            histogram.reset();
+            count.reset();
+            errors.reset();
+            rows.reset();
+            total.reset();
+            acquire.reset();
+            execute.reset();
+            fetch.reset();
+        }
+    }
+
+    /**
+     * One timed call. Mark the phases as they finish: acquired() once the
+     * connection is held, executed(sql) once the main statement returns,
+     * then end(rows).
+     */
+    public static final class Span {
+        private final Timer timer;
+        private final OperationEvent event;
+        private final long start;
+        private long mark;
+        private long acquire, execute;
+        private String sql;
+        private boolean failed, ended;
+
+        private Span(Timer timer) {
+            this.timer = timer;
+            if (timer == null) {
+                event = null;
+                start = 0;
+                return;
+            }
+            event = new OperationEvent();
+            event.begin();
+            start = mark = System.nanoTime();
+        }
+
+        public void acquired() {
+            if (timer == null) return;
+            long now = System.nanoTime();
+            acquire = now - mark;
+            mark = now;
+        }
+
+        public void executed(String sql) {
+            if (timer == null) return;
+            long now = System.nanoTime();
+            execute = now - mark;
+            mark = now;
+            this.sql = sql;
+        }
+
+        public void failed() {
+            if (timer != null) failed = true;
+        }
+
+        public void end(long rows) {
+            if (timer == null || ended) return;
+            ended = true;
+            long now = System.nanoTime();
+            long total = now - start;
+            long fetch = sql == null ? 0 : now - mark;
+            timer.record(total, rows, acquire, execute, fetch, failed);
+            if (sql != null) {
+                Timer st = statement(sql);
+                if (st != null) st.record(execute + fetch, rows, 0, execute, fetch, failed);
+            }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = timer.name;
+                event.rows = rows;
+                event.acquire = acquire;
+                event.execute = execute;
+                event.fetch = fetch;
+                event.sql = sql;
+                event.failed = failed;
+                event.commit();
+            }
+            if (total >= SLOW_NANOS) {
+                System.err.printf("Slow %s: %.1f ms (acquire %.1f, execute %.1f, fetch %.1f), %d rows%n",
+                        timer.name, ms(total), ms(acquire), ms(execute), ms(fetch), rows);
+            }
+        }
+    }
+
+    /**
+     * Log-linear latency histogram in the style of HdrHistogram: 32 buckets
+     * per power of two, so a value is reported within 1/32 (about 3%).
+     * Values are nanoseconds, clamped to about 73 minutes.
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final long MAX_VALUE = (1L << 42) - 1;
+        private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            long v = Math.max(0, Math.min(nanos, MAX_VALUE));
+            counts.incrementAndGet(index(v));
+            max.accumulate(v);
+        }
+
+        static int index(long v) {
+            if (v < 2 * SUB_COUNT) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return (shift << SUB_BITS) + (int) (v >>> shift);
+        }
+
+        // Largest value that falls into bucket index
+        static long highestValue(int index) {
+            if (index < 2 * SUB_COUNT) return index;
+            int shift = (index >>> SUB_BITS) - 1;
+            long sub = index - ((long) shift << SUB_BITS);
+            return ((sub + 1) << shift) - 1;
+        }
+
+        static long percentile(long[] counts, long total, double percent, long max) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(highestValue(i), max);
+            }
+            return max;
+        }
+
+        long[] counts() {
+            long[] copy = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+            return copy;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+            max.reset();
+        }
+    }
+
+    @Name("com.expensetracker.Operation")
+    @Label("Expense Tracker Operation")
+    @Category("Expense Tracker")
+    @StackTrace(false)
+    static final class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Rows")
+        long rows;
+        @Label("Acquire")
+        @Timespan
+        long acquire;
+        @Label("Execute")
+        @Timespan
+        long execute;
+        @Label("Fetch")
+        @Timespan
+        long fetch;
+        @Label("SQL")
+        String sql;
+        @Label("Failed")
+        boolean failed;
+    }
+
+    /** JMX view; dump() returns the same report as Metrics.dump(). */
+    public interface MetricsMXBean {
+        Map<String, Long> getCounts();
+
+        Map<String, Long> getP99Micros();
+
+        String dump();
+
+        void reset();
+    }
+
+    private static final class MBean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> map = new TreeMap<>();
+            for (Snapshot s : operations()) map.put(s.name(), s.count());
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getP99Micros() {
+            Map<String, Long> map = new TreeMap<>();
+            for (Snapshot s : operations()) map.put(s.name(), s.p99() / 1000);
+            return map;
+        }
+
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.expensetracker;
+
+import java.math.BigDecimal;
+
+/**
+ * An amount in minor units (paise / cents), stored as a long so sums are
+ * exact. This is what the database stores in expenses.amount_minor.
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private static final int SCALE = 2;
+    private static final int MAX_INTEGER_DIGITS = 19; // a long holds at most 19 digits
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Parses a plain decimal such as "1200.5" or "-3". More than two
+     * decimal places (other than trailing zeros) is rejected rather than
+     * silently rounded.
+     */
+    public static Money parse(String text) {
+        // Exponent notation can make setScale() arbitrarily slow ("1e10000000"),
+        // so check the magnitude on the stripped value before scaling
+        BigDecimal value = new BigDecimal(text.trim()).stripTrailingZeros();
+        if (value.scale() > SCALE || value.precision() - value.scale() > MAX_INTEGER_DIGITS) {
+            throw new NumberFormatException("Not a valid amount: " + text);
+        }
+        try {
+            return ofMinor(value.setScale(SCALE).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Not a valid amount: " + text);
+        }
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money negate() {
+        return ofMinor(Math.negateExact(minorUnits));
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    // For plotting only; never sum doubles
+    public double toDouble() {
+        return minorUnits / 100.0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    // Plain decimal, e.g. "1200.50"
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
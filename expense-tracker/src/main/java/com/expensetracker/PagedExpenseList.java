@@ -0,0 +1,121 @@
+package com.expensetracker;
+
+import javafx.collections.ObservableListBase;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Read-only list over every expense matching a filter, for a TableView.
+ * Only a bounded window of pages is kept in memory. Missing pages are
+ * fetched in the background; until they arrive, their rows read as null
+ * (empty table rows) and are filled in with a change event.
+ *
+ * Pages are fetched with keyset pagination on (date, id): the first and
+ * last key of every page seen so far are remembered, and a page is read
+ * forwards from the nearest known key before it or backwards from the
+ * nearest one after it (or the end of the list), whichever skips fewer
+ * rows. Scrolling, and jumping to either end, never needs a large OFFSET;
+ * only a jump into the middle of a long list that has not been seen yet
+ * does.
+ */
+public class PagedExpenseList extends ObservableListBase<Expense> {
+
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_PAGES = 10;
+
+    private record Key(LocalDate date, int id) {}
+
+    private final ExpenseFilter filter;
+    private final int size;
+
+    // Access-ordered, so the least recently used page is dropped first
+    private final Map<Integer, List<Expense>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Expense>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final TreeMap<Integer, Key> pageStarts = new TreeMap<>();
+    private final TreeMap<Integer, Key> pageEnds = new TreeMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+
+    public PagedExpenseList(ExpenseFilter filter, int size) {
+        this.filter = filter;
+        this.size = size;
+    }
+
+    public ExpenseFilter getFilter() { return filter; }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Expense get(int index) {
+        Objects.checkIndex(index, size);
+        int page = index / PAGE_SIZE;
+        int offset = index % PAGE_SIZE;
+
+        List<Expense> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        // Prefetch the next page as the user nears the end of this one
+        if (offset >= PAGE_SIZE * 3 / 4 && (page + 1) * PAGE_SIZE < size
+                && !pages.containsKey(page + 1)) {
+            requestPage(page + 1);
+        }
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    private void requestPage(int page) {
+        if (!loading.add(page)) return;
+
+        Map.Entry<Integer, Key> known = pageEnds.floorEntry(page - 1);
+        Key after = known == null ? null : known.getValue();
+        int skip = (page - (known == null ? 0 : known.getKey() + 1)) * PAGE_SIZE;
+
+        // Rows between this page and the nearest known page start after it, or the end
+        Map.Entry<Integer, Key> next = pageStarts.ceilingEntry(page + 1);
+        Key before = next == null ? null : next.getValue();
+        int pageEnd = Math.min(size, (page + 1) * PAGE_SIZE);
+        int skipBack = (next == null ? size : next.getKey() * PAGE_SIZE) - pageEnd;
+
+        FxAsync.then(AsyncExpenseDAO.supply(() -> skipBack < skip
+                        ? ExpenseDAO.getExpensePageBefore(filter,
+                                before == null ? null : before.date(), before == null ? 0 : before.id(),
+                                skipBack, pageEnd - page * PAGE_SIZE)
+                        : ExpenseDAO.getExpensePage(filter,
+                                after == null ? null : after.date(), after == null ? 0 : after.id(),
+                                skip, PAGE_SIZE)),
+                rows -> pageLoaded(page, rows),
+                ex -> {
+                    loading.remove(page);
+                    ex.printStackTrace();
+                });
+    }
+
+    private void pageLoaded(int page, List<Expense> rows) {
+        loading.remove(page);
+        pages.put(page, rows);
+        if (!rows.isEmpty()) {
+            Expense first = rows.get(0);
+            Expense last = rows.get(rows.size() - 1);
+            pageStarts.put(page, new Key(first.getDate(), first.getId()));
+            pageEnds.put(page, new Key(last.getDate(), last.getId()));
+        }
+
+        int from = page * PAGE_SIZE;
+        int to = Math.min(size, from + rows.size());
+        if (from < to) {
+            beginChange();
+            for (int i = from; i < to; i++) {
+                nextSet(i, null);
+            }
+            endChange();
+        }
+    }
+}
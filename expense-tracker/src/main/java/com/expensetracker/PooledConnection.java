@@ -0,0 +1,87 @@
+package com.expensetracker;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A long-lived connection handed out by {@link ConnectionManager}.
+ * Closing it returns it to its manager; prepared statements are cached
+ * per SQL string and must not be closed by callers.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final Connection connection;
+    private final boolean readOnly;
+    private final Consumer<PooledConnection> release;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Map<String, PreparedStatement> keyStatements = new HashMap<>();
+
+    PooledConnection(Connection connection, boolean readOnly,
+                     Consumer<PooledConnection> release) {
+        this.connection = connection;
+        this.readOnly = readOnly;
+        this.release = release;
+    }
+
+    public Connection connection() { return connection; }
+
+    public boolean isReadOnly() { return readOnly; }
+
+    // Cached statement for sql, with parameters cleared
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return cached(statements, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    // Same as prepare(), but the statement reports generated keys
+    public PreparedStatement prepareWithKeys(String sql) throws SQLException {
+        return cached(keyStatements, sql, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    private PreparedStatement cached(Map<String, PreparedStatement> cache,
+                                     String sql, int keys) throws SQLException {
+        PreparedStatement ps = cache.get(sql);
+        if (ps == null || ps.isClosed()) {
+            ps = connection.prepareStatement(sql, keys);
+            cache.put(sql, ps);
+        } else {
+            ps.clearParameters();
+        }
+        return ps;
+    }
+
+    // Runs a plain (uncached) statement, e.g. DDL or a pragma
+    public void execute(String sql) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    @Override
+    public void close() {
+        release.accept(this);
+    }
+
+    // Really closes the statements and the underlying connection
+    void destroy() {
+        closeAll(statements);
+        closeAll(keyStatements);
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void closeAll(Map<String, PreparedStatement> cache) {
+        for (PreparedStatement ps : cache.values()) {
+            try {
+                ps.close();
+            } catch (SQLException ignore) {
+                // closing anyway
+            }
+        }
+        cache.clear();
+    }
+}
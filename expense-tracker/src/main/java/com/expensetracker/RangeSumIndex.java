@@ -0,0 +1,239 @@
+package com.expensetracker;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Spending per day, per category and overall, in Fenwick trees (binary
+ * indexed trees), so the total for any date range is two O(log days)
+ * prefix sums however long the range, e.g. for range sliders over years
+ * of data. Built on first use (or load()) and then kept current from the
+ * ChangeJournal, each change costing O(log days).
+ *
+ * Covers a span of days that grows when an expense falls outside it, but
+ * never past SPAN_YEARS either side of the day it was loaded: a typo such
+ * as 9999-12-31 would otherwise size every tree to millions of days.
+ * Expenses outside that go in sorted per-day side maps, which are summed
+ * by walking the days in range.
+ */
+public class RangeSumIndex {
+
+    private static final int MARGIN_DAYS = 366;
+    private static final int SPAN_YEARS = 50;
+
+    private final ConnectionManager db;
+    private final ChangeJournal.Listener journalListener = this::apply;
+    private int firstDay;       // epoch day at tree index 1
+    private int days;           // trees have days + 1 slots; slot 0 is unused
+    private long[] overall;
+    private final Map<Integer, long[]> byCategory = new HashMap<>();
+    private int spanStart;      // trees never cover days before this
+    private int spanEnd;        // or from this one on
+    // Totals per epoch day outside [spanStart, spanEnd)
+    private final TreeMap<Integer, Long> outliers = new TreeMap<>();
+    private final Map<Integer, TreeMap<Integer, Long>> outliersByCategory = new HashMap<>();
+    private volatile boolean loaded;
+
+    RangeSumIndex(ConnectionManager db) {
+        this.db = db;
+    }
+
+    // Index of the app's database
+    public static RangeSumIndex get() {
+        return Database.manager().rangeSums();
+    }
+
+    /**
+     * (Re)builds the trees from per-day totals and starts following the
+     * journal. Holds the writer throughout, so no change is missed in
+     * between. Reads the ExpenseSnapshot instead of SQL when it is current.
+     */
+    public void load() throws SQLException {
+        try (PooledConnection pc = db.writer()) {
+            int n = 0;
+            int[] dayOf = new int[1024];
+            int[] categoryOf = new int[1024];
+            long[] amountOf = new long[1024];
+            ExpenseSnapshot snapshot = Database.bind(db, ExpenseSnapshot::current);
+            if (snapshot != null) {
+                for (int i = 0; i < snapshot.size(); i++, n++) {
+                    if (n == dayOf.length) {
+                        dayOf = Arrays.copyOf(dayOf, n * 2);
+                        categoryOf = Arrays.copyOf(categoryOf, n * 2);
+                        amountOf = Arrays.copyOf(amountOf, n * 2);
+                    }
+                    dayOf[n] = snapshot.epochDay(i);
+                    categoryOf[n] = snapshot.categoryId(i);
+                    amountOf[n] = snapshot.amountMinor(i);
+                }
+            } else {
+                // One row per day and category, so each date string is parsed once
+                PreparedStatement ps = pc.prepare("""
+                        SELECT date, category_id, SUM(amount_minor) FROM expenses
+                        GROUP BY date, category_id
+                        """);
+                try (ResultSet rs = ps.executeQuery()) {
+                    for (; rs.next(); n++) {
+                        if (n == dayOf.length) {
+                            dayOf = Arrays.copyOf(dayOf, n * 2);
+                            categoryOf = Arrays.copyOf(categoryOf, n * 2);
+                            amountOf = Arrays.copyOf(amountOf, n * 2);
+                        }
+                        dayOf[n] = ExpenseSnapshot.epochDay(rs.getString(1));
+                        categoryOf[n] = rs.getInt(2);
+                        amountOf[n] = rs.getLong(3);
+                    }
+                }
+            }
+
+            LocalDate today = LocalDate.now();
+            int start = (int) today.minusYears(SPAN_YEARS).toEpochDay();
+            int end = (int) today.plusYears(SPAN_YEARS).toEpochDay();
+            int min = (int) today.toEpochDay(), max = min;
+            for (int i = 0; i < n; i++) {
+                if (dayOf[i] < start || dayOf[i] >= end) continue;
+                min = Math.min(min, dayOf[i]);
+                max = Math.max(max, dayOf[i]);
+            }
+            synchronized (this) {
+                spanStart = start;
+                spanEnd = end;
+                firstDay = min;
+                days = Math.min(max + 1 + MARGIN_DAYS, spanEnd) - min;   // room for the coming year
+                overall = new long[days + 1];
+                byCategory.clear();
+                outliers.clear();
+                outliersByCategory.clear();
+                for (int i = 0; i < n; i++) {
+                    if (dayOf[i] < spanStart || dayOf[i] >= spanEnd) {
+                        addOutlier(dayOf[i], categoryOf[i], amountOf[i]);
+                        continue;
+                    }
+                    int slot = dayOf[i] - firstDay + 1;
+                    overall[slot] += amountOf[i];
+                    byCategory.computeIfAbsent(categoryOf[i], k -> new long[days + 1])[slot] += amountOf[i];
+                }
+                build(overall);
+                byCategory.values().forEach(RangeSumIndex::build);
+                if (!loaded) db.journal().subscribe(journalListener);
+                loaded = true;
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            try {
+                load();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to build range sums: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /** Total over [from, to) for one category, or all spending when categoryId is null. */
+    public Money total(Integer categoryId, LocalDate from, LocalDate to) {
+        return Money.ofMinor(sum(categoryId, (int) from.toEpochDay(), (int) to.toEpochDay()));
+    }
+
+    /** Minor units over epoch days [fromDay, toDay) for one category, or all when categoryId is null. */
+    public long sum(Integer categoryId, int fromDay, int toDay) {
+        ensureLoaded();  // outside the monitor: loading takes the writer first, like apply()
+        synchronized (this) {
+            if (toDay <= fromDay) return 0;
+            long[] tree = categoryId == null ? overall : byCategory.get(categoryId);
+            long sum = tree == null ? 0 : prefix(tree, toDay) - prefix(tree, fromDay);
+            TreeMap<Integer, Long> side = categoryId == null ? outliers : outliersByCategory.get(categoryId);
+            if (side != null) {
+                for (long amount : side.subMap(fromDay, toDay).values()) sum += amount;
+            }
+            return sum;
+        }
+    }
+
+    // Days the trees cover
+    synchronized int treeDays() {
+        return days;
+    }
+
+    // Journal listener, called holding the writer
+    private synchronized void apply(List<ChangeJournal.Change> changes) {
+        for (ChangeJournal.Change c : changes) {
+            if (c.before() != null) add(c.before(), -c.before().getAmount().minorUnits());
+            if (c.after() != null) add(c.after(), c.after().getAmount().minorUnits());
+        }
+    }
+
+    private void add(Expense e, long amount) {
+        int day = (int) e.getDate().toEpochDay();
+        if (day < spanStart || day >= spanEnd) {
+            addOutlier(day, e.getCategoryId(), amount);
+            return;
+        }
+        if (day < firstDay || day >= firstDay + days) grow(day);
+        int slot = day - firstDay + 1;
+        update(overall, slot, amount);
+        update(byCategory.computeIfAbsent(e.getCategoryId(), k -> new long[days + 1]), slot, amount);
+    }
+
+    // Drops days that net to zero, so a corrected typo leaves nothing behind
+    private void addOutlier(int day, int categoryId, long amount) {
+        outliers.merge(day, amount, (a, b) -> a + b == 0 ? null : a + b);
+        TreeMap<Integer, Long> side = outliersByCategory.computeIfAbsent(categoryId, k -> new TreeMap<>());
+        side.merge(day, amount, (a, b) -> a + b == 0 ? null : a + b);
+        if (side.isEmpty()) outliersByCategory.remove(categoryId);
+    }
+
+    // Re-lays every tree over a span that includes day, with a year's margin on that side
+    private void grow(int day) {
+        int newFirst = Math.max(spanStart, Math.min(firstDay, day - MARGIN_DAYS));
+        int newDays = Math.min(spanEnd, Math.max(firstDay + days, day + 1 + MARGIN_DAYS)) - newFirst;
+        overall = relay(overall, newFirst, newDays);
+        byCategory.replaceAll((id, tree) -> relay(tree, newFirst, newDays));
+        firstDay = newFirst;
+        days = newDays;
+    }
+
+    private long[] relay(long[] tree, int newFirst, int newDays) {
+        long[] values = new long[newDays + 1];
+        int shift = firstDay - newFirst;
+        for (int i = 1; i <= days; i++) {
+            values[i + shift] = prefixAt(tree, i) - prefixAt(tree, i - 1);
+        }
+        build(values);
+        return values;
+    }
+
+    // --- Fenwick tree over slots 1..length-1 ---
+
+    // Turns per-slot values into a tree in place, in O(n)
+    private static void build(long[] tree) {
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) tree[parent] += tree[i];
+        }
+    }
+
+    private static void update(long[] tree, int slot, long amount) {
+        for (int i = slot; i < tree.length; i += i & -i) tree[i] += amount;
+    }
+
+    // Sum of slots 1..slot
+    private static long prefixAt(long[] tree, int slot) {
+        long sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) sum += tree[i];
+        return sum;
+    }
+
+    // Sum of every day before day
+    private long prefix(long[] tree, int day) {
+        return prefixAt(tree, (int) Math.min(Math.max((long) day - firstDay, 0), days));
+    }
+}
@@ -0,0 +1,219 @@
+package com.expensetracker;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recurring expenses (rent, bills, subscriptions) and turning their due
+ * occurrences into expense rows.
+ *
+ * A rule's occurrences are start, start + every, start + 2 * every, ...
+ * (always counted from start, so a rule on the 31st lands on the last day
+ * of shorter months). materialized counts those already added;
+ * materializeDue() adds the rest up to a day and advances the count in the
+ * same transaction, so running it again, or after a crash, adds nothing
+ * twice.
+ */
+public class RecurringDAO {
+
+    public enum Frequency { WEEKLY, MONTHLY, YEARLY }
+
+    public record Rule(int id, Money amount, int categoryId, String note,
+                       Frequency frequency, int every, LocalDate start, LocalDate end,
+                       int materialized) {
+
+        // The n-th occurrence (0 = start), ignoring end
+        public LocalDate occurrence(int n) {
+            long steps = (long) n * every;
+            return switch (frequency) {
+                case WEEKLY -> start.plusWeeks(steps);
+                case MONTHLY -> start.plusMonths(steps);
+                case YEARLY -> start.plusYears(steps);
+            };
+        }
+
+        // Next occurrence not yet added, or null once past end
+        public LocalDate next() {
+            return occurrenceOrNull(materialized);
+        }
+
+        LocalDate occurrenceOrNull(int n) {
+            LocalDate d = occurrence(n);
+            return end != null && d.isAfter(end) ? null : d;
+        }
+    }
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String COLUMNS =
+            "id, amount_minor, category_id, note, frequency, every, start_date, end_date, materialized";
+
+    public static List<Rule> getRules() {
+        List<Rule> list = new ArrayList<>();
+        String sql = "SELECT " + COLUMNS + " FROM recurring_rules ORDER BY id";
+        Metrics.Span span = Metrics.start("dao.getRecurringRules");
+        try (PooledConnection pc = Database.reader()) {
+            span.acquired();
+            try (ResultSet rs = pc.prepare(sql).executeQuery()) {
+                span.executed(sql);
+                while (rs.next()) list.add(readRule(rs));
+            }
+        } catch (SQLException e) {
+            span.failed();
+            e.printStackTrace();
+        }
+        span.end(list.size());
+        return list;
+    }
+
+    /** Adds a rule (its id and materialized are ignored); returns the new id. */
+    public static int addRule(Rule r) throws SQLException {
+        if (r.every() < 1) throw new IllegalArgumentException("every must be >= 1");
+        if (r.end() != null && r.end().isBefore(r.start())) throw new IllegalArgumentException("end is before start");
+        String sql = """
+                INSERT INTO recurring_rules
+                    (amount_minor, category_id, note, frequency, every, start_date, end_date, materialized, next_date)
+                VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?)
+                """;
+        Metrics.Span span = Metrics.start("dao.addRecurringRule");
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepareWithKeys(sql);
+            ps.setLong(1, r.amount().minorUnits());
+            ps.setInt(2, r.categoryId());
+            ps.setString(3, r.note());
+            ps.setString(4, r.frequency().name());
+            ps.setInt(5, r.every());
+            ps.setString(6, r.start().toString());
+            ps.setString(7, r.end() == null ? null : r.end().toString());
+            ps.setString(8, r.start().toString());
+            ps.executeUpdate();
+            span.executed(sql);
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (!rs.next()) throw new SQLException("Failed to retrieve new rule id");
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            span.failed();
+            throw e;
+        } finally {
+            span.end(1);
+        }
+    }
+
+    // Stops a rule; expenses it already added stay
+    public static void deleteRule(int id) throws SQLException {
+        String sql = "DELETE FROM recurring_rules WHERE id = ?";
+        Metrics.Span span = Metrics.start("dao.deleteRecurringRule");
+        int rows = 0;
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            PreparedStatement ps = pc.prepare(sql);
+            ps.setInt(1, id);
+            rows = ps.executeUpdate();
+            span.executed(sql);
+        } catch (SQLException e) {
+            span.failed();
+            throw e;
+        } finally {
+            span.end(rows);
+        }
+    }
+
+    /**
+     * Adds every occurrence on or before today that isn't in yet, for all
+     * rules, as one transaction of batched inserts. Returns how many
+     * expenses were added.
+     */
+    public static int materializeDue(LocalDate today) throws SQLException {
+        Metrics.Span span = Metrics.start("dao.materializeRecurring");
+        int rows = 0;
+        try (PooledConnection pc = Database.writer()) {
+            span.acquired();
+            Connection conn = pc.connection();
+            conn.setAutoCommit(false);
+            try {
+                List<Rule> due = new ArrayList<>();
+                PreparedStatement ps = pc.prepare("SELECT " + COLUMNS
+                        + " FROM recurring_rules WHERE next_date IS NOT NULL AND next_date <= ?");
+                ps.setString(1, today.toString());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) due.add(readRule(rs));
+                }
+
+                ChangeJournal journal = ChangeJournal.get();
+                CategoryRegistry categories = CategoryRegistry.get();
+                List<Expense> added = journal.hasListeners() ? new ArrayList<>() : null;
+                PreparedStatement insert = pc.prepare(ExpenseDAO.INSERT_SQL);
+                PreparedStatement advance = pc.prepare(
+                        "UPDATE recurring_rules SET materialized = ?, next_date = ? WHERE id = ?");
+                for (Rule r : due) {
+                    int n = r.materialized();
+                    for (LocalDate d = r.next(); d != null && !d.isAfter(today); d = r.occurrenceOrNull(++n)) {
+                        insert.setLong(1, r.amount().minorUnits());
+                        insert.setString(2, d.toString());
+                        insert.setInt(3, r.categoryId());
+                        insert.setString(4, r.note());
+                        insert.addBatch();
+                        if (++rows % BATCH_SIZE == 0) insert.executeBatch();
+                        if (added != null) {
+                            added.add(new Expense(r.amount(), d, r.categoryId(),
+                                    categories.name(r.categoryId()), r.note()));
+                        }
+                    }
+                    LocalDate next = r.occurrenceOrNull(n);
+                    advance.setInt(1, n);
+                    advance.setString(2, next == null ? null : next.toString());
+                    advance.setInt(3, r.id());
+                    advance.addBatch();
+                }
+                insert.executeBatch();
+                advance.executeBatch();
+                span.executed(ExpenseDAO.INSERT_SQL);
+                long lastId = lastInsertId(pc);
+                conn.commit();
+                // Still holding the writer, so the journal sees these in commit order
+                if (added != null && rows > 0) publish(journal, added, lastId);
+            } catch (SQLException e) {
+                conn.rollback();
+                span.failed();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            span.end(rows);
+        }
+        return rows;
+    }
+
+    private static long lastInsertId(PooledConnection pc) throws SQLException {
+        try (ResultSet rs = pc.prepare("SELECT last_insert_rowid()").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // With AUTOINCREMENT and the writer held throughout, the new ids are consecutive up to lastId
+    private static void publish(ChangeJournal journal, List<Expense> added, long lastId) {
+        List<ChangeJournal.Change> changes = new ArrayList<>(added.size());
+        long firstId = lastId - added.size() + 1;
+        for (int i = 0; i < added.size(); i++) {
+            Expense e = added.get(i);
+            e.setId((int) (firstId + i));
+            changes.add(new ChangeJournal.Change(ChangeJournal.Op.INSERT, null, e));
+        }
+        journal.publish(changes);
+    }
+
+    private static Rule readRule(ResultSet rs) throws SQLException {
+        String end = rs.getString(8);
+        return new Rule(rs.getInt(1), Money.ofMinor(rs.getLong(2)), rs.getInt(3), rs.getString(4),
+                Frequency.valueOf(rs.getString(5)), rs.getInt(6), LocalDate.parse(rs.getString(7)),
+                end == null ? null : LocalDate.parse(end), rs.getInt(9));
+    }
+}
@@ -0,0 +1,47 @@
+package com.expensetracker;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds due recurring expenses (RecurringDAO.materializeDue) right away and
+ * then every periodMinutes on a daemon thread, for the database current
+ * when it was created. Catches up after downtime in one transaction.
+ */
+public class RecurringScheduler implements AutoCloseable {
+
+    public static final long DEFAULT_PERIOD_MINUTES = 60;
+
+    private final ConnectionManager db = Database.manager();
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(ThreadSupport.daemonFactory("recurring"));
+
+    public RecurringScheduler(long periodMinutes) {
+        timer.scheduleWithFixedDelay(this::runDue, 0, periodMinutes, TimeUnit.MINUTES);
+    }
+
+    public RecurringScheduler() {
+        this(DEFAULT_PERIOD_MINUTES);
+    }
+
+    private void runDue() {
+        Database.bind(db, () -> {
+            try {
+                RecurringDAO.materializeDue(LocalDate.now());
+            } catch (SQLException | RuntimeException e) {
+                // Nothing was added; the next run retries. Anything thrown out of
+                // here would cancel the schedule for the rest of the session.
+                e.printStackTrace();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
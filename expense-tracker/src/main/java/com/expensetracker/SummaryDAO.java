@@ -0,0 +1,68 @@
+package com.expensetracker;
+
+import java.sql.*;
+import java.time.LocalDate;
+
+/**
+ * Maintenance for the summary tables (monthly_category_totals and
+ * daily_totals). Triggers on expenses keep them current row by row;
+ * this class recomputes them from scratch for a date range, for
+ * Database.reindex().
+ */
+public class SummaryDAO {
+
+    /**
+     * Recomputes the summaries for [from, to), widened to whole months, on
+     * conn in its current transaction. Null bounds mean open-ended.
+     */
+    static void rebuild(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        String start = from == null ? "0000-01-01" : from.withDayOfMonth(1).toString();
+        String end = to == null ? "9999-12-31"
+                : (to.getDayOfMonth() == 1 ? to : to.withDayOfMonth(1).plusMonths(1)).toString();
+        int startKey = monthKey(start);
+        int endKey = monthKey(end);
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "DELETE FROM monthly_category_totals WHERE year * 100 + month >= ? AND year * 100 + month < ?")) {
+            ps.setInt(1, startKey);
+            ps.setInt(2, endKey);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement("""
+                INSERT INTO monthly_category_totals (year, month, category_id, total_minor, count)
+                SELECT CAST(substr(date, 1, 4) AS INTEGER), CAST(substr(date, 6, 2) AS INTEGER),
+                       category_id, SUM(amount_minor), COUNT(*)
+                FROM expenses
+                WHERE date >= ? AND date < ?
+                GROUP BY 1, 2, 3
+                """)) {
+            ps.setString(1, start);
+            ps.setString(2, end);
+            ps.executeUpdate();
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "DELETE FROM daily_totals WHERE date >= ? AND date < ?")) {
+            ps.setString(1, start);
+            ps.setString(2, end);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement("""
+                INSERT INTO daily_totals (date, total_minor, count)
+                SELECT date, SUM(amount_minor), COUNT(*)
+                FROM expenses
+                WHERE date >= ? AND date < ?
+                GROUP BY date
+                """)) {
+            ps.setString(1, start);
+            ps.setString(2, end);
+            ps.executeUpdate();
+        }
+    }
+
+    // "2024-03-01" -> 202403
+    private static int monthKey(String isoDate) {
+        return Integer.parseInt(isoDate.substring(0, 4)) * 100
+                + Integer.parseInt(isoDate.substring(5, 7));
+    }
+}
@@ -0,0 +1,45 @@
+package com.expensetracker;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor helpers. The app targets Java 17, so virtual threads are used
+ * only when the running JVM has them (21+), looked up reflectively.
+ */
+public class ThreadSupport {
+
+    /**
+     * A virtual-thread-per-task executor when available, otherwise a fixed
+     * pool of daemon threads named {@code name-N}.
+     */
+    public static ExecutorService newExecutor(String name, int fallbackThreads) {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newFixedThreadPool(fallbackThreads, daemonFactory(name));
+        }
+    }
+
+    public static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public static ThreadFactory daemonFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,477 @@
+package com.expensetracker;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Write-behind mode for expense inserts, updates and deletes. A mutation is
+ * appended to a log file next to the database and queued in memory, and the
+ * caller gets a future right away. A background thread applies the queue in
+ * group commits: one writer transaction per batch, once maxBatch mutations
+ * are waiting or maxDelay after the oldest one.
+ *
+ * Each batch stores its last log sequence number in the same transaction, so
+ * replaying the log after a crash applies every mutation exactly once. A
+ * mutation that fails for good (a constraint violation) is skipped; on any
+ * other error it and everything after it stay queued and are retried, and
+ * whatever is still unapplied at close() is left in the log for replay.
+ * Reads do not see queued mutations; callers that need their own writes use
+ * flush() or barrier(). Changes reach the ChangeJournal when they commit.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH = 500;
+    public static final long DEFAULT_MAX_DELAY_MS = 50;
+
+    // The log is cut back once it is this large and everything in it is committed
+    private static final long LOG_TRUNCATE_BYTES = 1 << 20;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    // SQLite primary result codes for errors that a retry would hit again
+    private static final int SQLITE_CONSTRAINT = 19;
+    private static final int SQLITE_MISMATCH = 20;
+
+    private record Mutation(long seq, ChangeJournal.Op op, Expense expense, Expense source,
+                            long queuedAt, CompletableFuture<Integer> done) {
+
+        // Id for update/delete, or the source's new id once an insert commits
+        int id() {
+            return expense.getId();
+        }
+    }
+
+    private final ConnectionManager manager;
+    private final Path logFile;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final boolean fsync;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Mutation> queue = new ArrayDeque<>();
+    private final FileChannel log;
+    private final CsvWriter logWriter;
+    private long nextSeq;
+    private volatile long committedSeq; // every mutation up to this one is in SQLite
+    private long oldestQueuedAt;
+    private boolean flushRequested;
+    private boolean closing;
+    private CompletableFuture<Integer> newest;
+    private final Thread thread;
+
+    /**
+     * Replays whatever an earlier run left in logFile, then starts the
+     * background writer. With fsync, every append is forced to disk before
+     * the call returns; without it the log survives the app crashing but not
+     * the machine, the same as SQLite's synchronous=NORMAL.
+     */
+    public WriteBehindQueue(ConnectionManager manager, Path logFile, int maxBatch,
+                            long maxDelayMillis, boolean fsync) throws IOException, SQLException {
+        if (maxBatch < 1) throw new IllegalArgumentException("maxBatch must be >= 1");
+        this.manager = manager;
+        this.logFile = logFile;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.fsync = fsync;
+
+        long applied = appliedSeq();
+        List<Mutation> pending = new ArrayList<>();
+        long lastLogged = readLog(logFile, applied, pending);
+        committedSeq = applied;
+        nextSeq = Math.max(applied, lastLogged) + 1;
+        // Bound like the writer thread, so the DAO code replay runs uses this queue's database
+        Database.bind(manager, () -> {
+            for (int i = 0; i < pending.size(); i += maxBatch) {
+                List<Mutation> batch = pending.subList(i, Math.min(pending.size(), i + maxBatch));
+                if (commit(batch) < batch.size()) break;
+            }
+            return null;
+        });
+        if (!pending.isEmpty() && committedSeq < pending.get(pending.size() - 1).seq()) {
+            throw new SQLException("Could not replay write-behind log " + logFile);
+        }
+
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.truncate(0);
+        logWriter = new CsvWriter(Channels.newWriter(log, StandardCharsets.UTF_8));
+
+        // Bound so the DAO code it runs uses this queue's database
+        thread = new Thread(() -> Database.bind(manager, () -> {
+            run();
+            return null;
+        }), "write-behind");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Queues an insert; the future yields the new id, which is also set on e. */
+    public CompletableFuture<Integer> insert(Expense e) {
+        return enqueue(ChangeJournal.Op.INSERT, e);
+    }
+
+    public CompletableFuture<Void> update(Expense e) {
+        return enqueue(ChangeJournal.Op.UPDATE, e).thenAccept(id -> {});
+    }
+
+    public CompletableFuture<Void> delete(int id) {
+        // Only the id matters; the other fields just fill the log record
+        return enqueue(ChangeJournal.Op.DELETE,
+                new Expense(id, Money.ZERO, LocalDate.EPOCH, 0, null, null)).thenAccept(x -> {});
+    }
+
+    /** Completes once everything queued before the call has committed (or failed). */
+    public CompletableFuture<Void> barrier() {
+        synchronized (lock) {
+            return newest == null ? CompletableFuture.completedFuture(null) : newest.handle((id, ex) -> null);
+        }
+    }
+
+    /** Commits everything queued so far without waiting for a full batch, and waits for it. */
+    public void flush() {
+        if (Thread.currentThread() == thread) {
+            throw new IllegalStateException("flush() from a journal listener would wait on itself");
+        }
+        CompletableFuture<Void> done;
+        synchronized (lock) {
+            done = barrier();
+            if (!queue.isEmpty()) {
+                flushRequested = true;
+                lock.notifyAll();
+            }
+        }
+        done.join();
+    }
+
+    public int pending() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /** Commits what is queued, stops the writer and removes the log once all of it is in SQLite. */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closing) return;
+            closing = true;
+            lock.notifyAll();
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            log.close();
+            if (committedSeq == nextSeq - 1) Files.deleteIfExists(logFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private CompletableFuture<Integer> enqueue(ChangeJournal.Op op, Expense e) {
+        // Snapshot now: the caller may keep editing its object while this waits
+        Expense copy = new Expense(e.getId(), e.getAmount(), e.getDate(), e.getCategoryId(),
+                e.getCategoryName(), e.getNote());
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        synchronized (lock) {
+            if (closing) {
+                done.completeExceptionally(new IllegalStateException("Write-behind queue is closed"));
+                return done;
+            }
+            Mutation m = new Mutation(nextSeq, op, copy, e, System.nanoTime(), done);
+            try {
+                append(m);
+            } catch (IOException ex) {
+                // Not in the log, so not accepted
+                done.completeExceptionally(ex);
+                return done;
+            }
+            nextSeq++;
+            queue.add(m);
+            newest = done;
+            if (queue.size() == 1) {
+                oldestQueuedAt = m.queuedAt();
+                lock.notifyAll();
+            } else if (queue.size() == maxBatch) {
+                lock.notifyAll();
+            }
+        }
+        return done;
+    }
+
+    private void run() {
+        List<Mutation> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            synchronized (lock) {
+                try {
+                    while (queue.isEmpty() && !closing) lock.wait();
+                    // Group commit: wait for a full batch, the oldest entry's deadline, a flush or close
+                    while (!queue.isEmpty() && queue.size() < maxBatch && !flushRequested && !closing) {
+                        long wait = oldestQueuedAt + maxDelayNanos - System.nanoTime();
+                        if (wait <= 0) break;
+                        TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                    }
+                } catch (InterruptedException e) {
+                    closing = true;
+                }
+                if (queue.isEmpty()) {
+                    if (closing) return;
+                    continue;
+                }
+                while (batch.size() < maxBatch && !queue.isEmpty()) batch.add(queue.poll());
+                if (queue.isEmpty()) flushRequested = false;
+            }
+
+            int settled = commit(batch);
+            List<Mutation> unapplied = batch.subList(settled, batch.size());
+            synchronized (lock) {
+                if (!unapplied.isEmpty()) {
+                    if (closing) {
+                        abandon(unapplied);
+                        return;
+                    }
+                    // Back to the front, in order, so nothing after them commits first
+                    for (int i = unapplied.size() - 1; i >= 0; i--) queue.addFirst(unapplied.get(i));
+                    oldestQueuedAt = unapplied.get(0).queuedAt();
+                    try {
+                        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY_MS);
+                        long wait;
+                        while (!closing && (wait = until - System.nanoTime()) > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                        }
+                    } catch (InterruptedException e) {
+                        closing = true;
+                    }
+                } else if (queue.isEmpty()) {
+                    truncateLog();
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    // Closing with mutations SQLite would not take: they stay in the log, so the next start replays them
+    private void abandon(List<Mutation> unapplied) {
+        List<Mutation> rest = new ArrayList<>(unapplied);
+        rest.addAll(queue);
+        queue.clear();
+        IllegalStateException e = new IllegalStateException(
+                "Not committed before close; kept in " + logFile + " for replay");
+        for (Mutation m : rest) m.done().completeExceptionally(e);
+    }
+
+    /**
+     * Applies batch and settles the futures of the mutations it got through:
+     * returns how many, from the front, are committed or skipped for good.
+     * The rest hit an error that may pass and are not in SQLite.
+     */
+    private int commit(List<Mutation> batch) {
+        Metrics.Span span = Metrics.start("writeBehind.commit");
+        List<ChangeJournal.Change> changes = new ArrayList<>(batch.size());
+        SQLException[] failures = new SQLException[batch.size()];
+        int settled = 0;
+        try (PooledConnection pc = manager.writer()) {
+            span.acquired();
+            Connection conn = pc.connection();
+            conn.setAutoCommit(false);
+            try {
+                for (Mutation m : batch) {
+                    ChangeJournal.Change c = apply(pc, m);
+                    if (c != null) changes.add(c);
+                }
+                setApplied(pc, batch.get(batch.size() - 1).seq());
+                conn.commit();
+                settled = batch.size();
+            } catch (SQLException e) {
+                conn.rollback();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            if (settled == 0) {
+                // One bad mutation must not sink the rest: apply them one at a time
+                span.failed();
+                changes.clear();
+                try {
+                    for (; settled < batch.size(); settled++) {
+                        failures[settled] = commitOne(pc, batch.get(settled), changes);
+                    }
+                } catch (SQLException e) {
+                    // applied_seq stays before this one, so a retry or replay gets it
+                    e.printStackTrace();
+                }
+            }
+            if (settled > 0) {
+                committedSeq = batch.get(settled - 1).seq();
+                // Still holding the writer, so listeners see changes in commit order
+                manager.journal().publish(changes);
+            }
+        } catch (SQLException e) {
+            span.failed();
+            e.printStackTrace();
+        }
+        span.end(settled);
+
+        long now = System.nanoTime();
+        for (int i = 0; i < settled; i++) {
+            Mutation m = batch.get(i);
+            Metrics.timer("writeBehind.latency").record(now - m.queuedAt(), 1);
+            if (failures[i] != null) {
+                m.done().completeExceptionally(failures[i]);
+            } else {
+                if (m.op() == ChangeJournal.Op.INSERT) m.source().setId(m.id());
+                m.done().complete(m.id());
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * Applies m in its own transaction. Returns null once committed, or the
+     * error if m can never succeed; it is then skipped for good, or a replay
+     * would fail on it again. Any other error is thrown with nothing
+     * committed.
+     */
+    private SQLException commitOne(PooledConnection pc, Mutation m, List<ChangeJournal.Change> changes)
+            throws SQLException {
+        Connection conn = pc.connection();
+        conn.setAutoCommit(false);
+        ChangeJournal.Change c = null;
+        SQLException skipped = null;
+        try {
+            try {
+                c = apply(pc, m);
+            } catch (SQLException e) {
+                if (!isPermanent(e)) throw e;
+                conn.rollback();
+                e.printStackTrace();
+                skipped = e;
+            }
+            setApplied(pc, m.seq());
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        if (c != null) changes.add(c);
+        return skipped;
+    }
+
+    // Constraint and type errors fail the same way every time; busy, I/O or a full disk may not
+    static boolean isPermanent(SQLException e) {
+        int code = e.getErrorCode() & 0xff;
+        return code == SQLITE_CONSTRAINT || code == SQLITE_MISMATCH;
+    }
+
+    private static ChangeJournal.Change apply(PooledConnection pc, Mutation m) throws SQLException {
+        return switch (m.op()) {
+            case INSERT -> ExpenseDAO.insert(pc, m.expense());
+            case UPDATE -> ExpenseDAO.update(pc, m.expense());
+            case DELETE -> ExpenseDAO.delete(pc, m.id());
+        };
+    }
+
+    private long appliedSeq() throws SQLException {
+        try (PooledConnection pc = manager.writer();
+             ResultSet rs = pc.prepare("SELECT applied_seq FROM write_behind").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static void setApplied(PooledConnection pc, long seq) throws SQLException {
+        PreparedStatement ps = pc.prepare("UPDATE write_behind SET applied_seq = ?");
+        ps.setLong(1, seq);
+        ps.executeUpdate();
+    }
+
+    // Log record: seq, op, id, amount_minor, date, category_id, note, crc of the other fields
+    private void append(Mutation m) throws IOException {
+        String[] fields = fields(m);
+        for (String f : fields) logWriter.field(f);
+        logWriter.field(crc(Arrays.asList(fields)));
+        logWriter.endRecord();
+        logWriter.flush();
+        if (fsync) log.force(false);
+    }
+
+    private static String[] fields(Mutation m) {
+        Expense e = m.expense();
+        return new String[] {
+                Long.toString(m.seq()), m.op().name().substring(0, 1), Integer.toString(e.getId()),
+                Long.toString(e.getAmount().minorUnits()), e.getDate().toString(),
+                Integer.toString(e.getCategoryId()), e.getNote()
+        };
+    }
+
+    private static String crc(List<String> fields) {
+        CRC32 crc = new CRC32();
+        for (String f : fields) {
+            if (f != null) crc.update(f.getBytes(StandardCharsets.UTF_8));
+            crc.update(0x1f);
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Adds the log's records after applied to pending and returns the last
+     * sequence number in the log. Reading stops at the first incomplete
+     * record, which a crash mid-append can leave at the end.
+     */
+    private static long readLog(Path file, long applied, List<Mutation> pending) throws IOException {
+        long last = 0;
+        if (!Files.exists(file)) return last;
+        try (CsvReader csv = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            List<String> rec;
+            while ((rec = csv.next()) != null) {
+                if (rec.size() != 8 || !crc(rec.subList(0, 7)).equals(rec.get(7))) break;
+                long seq = Long.parseLong(rec.get(0));
+                last = seq;
+                if (seq <= applied) continue;
+                ChangeJournal.Op op = switch (rec.get(1)) {
+                    case "I" -> ChangeJournal.Op.INSERT;
+                    case "U" -> ChangeJournal.Op.UPDATE;
+                    default -> ChangeJournal.Op.DELETE;
+                };
+                // CSV can't tell an empty note from none; both come back as none
+                String note = rec.get(6).isEmpty() ? null : rec.get(6);
+                Expense e = new Expense(Integer.parseInt(rec.get(2)), Money.ofMinor(Long.parseLong(rec.get(3))),
+                        LocalDate.parse(rec.get(4)), Integer.parseInt(rec.get(5)), null, note);
+                pending.add(new Mutation(seq, op, e, e, System.nanoTime(), new CompletableFuture<>()));
+            }
+        } catch (IOException e) {
+            // An unterminated quoted note is the same torn tail
+            System.err.println("Write-behind log " + file + ": ignoring incomplete tail (" + e.getMessage() + ")");
+        }
+        return last;
+    }
+
+    private void truncateLog() {
+        try {
+            if (committedSeq == nextSeq - 1 && log.size() >= LOG_TRUNCATE_BYTES) log.truncate(0);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
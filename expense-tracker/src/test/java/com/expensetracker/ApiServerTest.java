@@ -0,0 +1,136 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ApiServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private ApiServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        TestDatabase.fresh();
+        server = new ApiServer(new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        TestDatabase.close();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + path));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return send(request(path));
+    }
+
+    private HttpResponse<String> post(String body) throws Exception {
+        return send(request("/api/expenses").POST(HttpRequest.BodyPublishers.ofString(body)));
+    }
+
+    private HttpResponse<String> put(int id, String body) throws Exception {
+        return send(request("/api/expenses/" + id).PUT(HttpRequest.BodyPublishers.ofString(body)));
+    }
+
+    private static void insert(String date, long minor, String note) {
+        ExpenseDAO.insertExpense(new Expense(Money.ofMinor(minor), LocalDate.parse(date), 1, null, note));
+    }
+
+    @Test
+    public void matchingETagGets304UntilTheDataChanges() throws Exception {
+        insert("2024-03-01", 1250, "lunch");
+        HttpResponse<String> first = get("/api/expenses?year=2024&month=3");
+        assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        assertNotNull(etag);
+        assertTrue(first.body().contains("\"amount\":12.50"));
+
+        HttpResponse<String> again = send(request("/api/expenses?year=2024&month=3").header("If-None-Match", etag));
+        assertEquals(304, again.statusCode());
+        assertEquals(etag, again.headers().firstValue("ETag").orElse(null));
+        assertEquals("", again.body());
+
+        insert("2024-03-02", 100, "tea");
+        HttpResponse<String> changed = send(request("/api/expenses?year=2024&month=3").header("If-None-Match", etag));
+        assertEquals(200, changed.statusCode());
+        assertNotEquals(etag, changed.headers().firstValue("ETag").orElse(null));
+        assertTrue(changed.body().contains("\"note\":\"tea\""));
+    }
+
+    @Test
+    public void createReadUpdateDelete() throws Exception {
+        HttpResponse<String> created = post("{\"amount\": 12.10, \"date\": \"2024-03-01\", \"category\": \"Pets\"}");
+        assertEquals(201, created.statusCode());
+        String location = created.headers().firstValue("Location").orElseThrow();
+        int id = Integer.parseInt(location.substring(location.lastIndexOf('/') + 1));
+        assertTrue(created.body().contains("\"category\":\"Pets\""));
+        assertTrue(created.body().contains("\"amount\":12.10"));
+
+        HttpResponse<String> updated = put(id, "{\"note\": \"vet\"}");
+        assertEquals(200, updated.statusCode());
+        assertTrue(updated.body().contains("\"note\":\"vet\""));
+        assertTrue(updated.body().contains("\"amount\":12.10"));
+
+        assertEquals(204, send(request(location).DELETE()).statusCode());
+        assertEquals(404, get(location).statusCode());
+        assertEquals(404, put(id, "{\"note\": \"gone\"}").statusCode());
+    }
+
+    @Test
+    public void aRejectedPutChangesNothing() throws Exception {
+        insert("2024-03-01", 100, "kept");
+        int id = ExpenseDAO.getExpensesByMonthYear(2024, 3).get(0).getId();
+        // The amount is fine but the date is not, so neither is written
+        assertEquals(400, put(id, "{\"amount\": 5, \"date\": \"2024-02-30\"}").statusCode());
+        Expense e = ExpenseDAO.getExpense(id);
+        assertEquals(Money.ofMinor(100), e.getAmount());
+        assertEquals("kept", e.getNote());
+    }
+
+    @Test
+    public void badRequestsGetClientErrors() throws Exception {
+        assertEquals(400, post("{\"amount\": 0, \"date\": \"2024-03-01\", \"category\": \"Food\"}").statusCode());
+        assertEquals(400, post("{\"amount\": 1.005, \"date\": \"2024-03-01\", \"category\": \"Food\"}").statusCode());
+        assertEquals(400, post("{\"amount\": 1, \"date\": \"2024-02-30\", \"category\": \"Food\"}").statusCode());
+        assertEquals(400, post("{\"amount\": 1, \"date\": \"2024-03-01\"}").statusCode());
+        assertEquals(400, post("not json").statusCode());
+        assertEquals(404, get("/api/expenses?category=Nope").statusCode());
+        assertEquals(404, get("/api/nothing").statusCode());
+        assertEquals(405, send(request("/api/months").DELETE()).statusCode());
+        assertEquals(400, get("/api/totals/daily?year=2024&month=13").statusCode());
+    }
+
+    @Test
+    public void summaryAndTotals() throws Exception {
+        insert("2024-03-01", 1000, null);
+        insert("2024-03-01", 250, null);
+        insert("2024-04-01", 1, null);
+
+        HttpResponse<String> summary = get("/api/summary?year=2024&month=3");
+        assertEquals("{\"from\":\"2024-03-01\",\"to\":\"2024-04-01\",\"count\":2,\"total\":12.50}", summary.body());
+        assertEquals("{\"2024-03-01\":12.50}", get("/api/totals/daily?year=2024&month=3").body());
+        assertEquals("{\"Food\":12.50}", get("/api/totals/categories?year=2024&month=3").body());
+    }
+}
@@ -0,0 +1,137 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class BudgetTrackerTest {
+
+    private static final int FOOD = 1;
+    private static final int RENT = 3;
+
+    private final List<BudgetTracker.Alert> alerts = new ArrayList<>();
+    private final BudgetTracker.Listener listener = alerts::addAll;
+
+    @Before
+    public void setUp() {
+        TestDatabase.fresh();
+        BudgetTracker.get().subscribe(listener);
+    }
+
+    @After
+    public void tearDown() {
+        BudgetTracker.get().unsubscribe(listener);
+        TestDatabase.close();
+    }
+
+    private static Expense insert(String date, long minor, int categoryId) {
+        Expense e = new Expense(Money.ofMinor(minor), LocalDate.parse(date), categoryId, null, null);
+        ExpenseDAO.insertExpense(e);
+        return e;
+    }
+
+    private List<String> levels() {
+        List<String> levels = new ArrayList<>();
+        for (BudgetTracker.Alert a : alerts) {
+            levels.add(a.level() + " " + a.periodStart() + " " + a.spent().minorUnits());
+        }
+        return levels;
+    }
+
+    @Test
+    public void warnsThenExceedsOncePerLevel() throws SQLException {
+        BudgetDAO.setBudget(FOOD, BudgetTracker.Period.MONTH, Money.ofMinor(1000), 80);
+
+        insert("2024-03-01", 500, FOOD);
+        assertEquals(List.of(), levels());
+        insert("2024-03-02", 300, FOOD);
+        assertEquals(List.of("WARNING 2024-03-01 800"), levels());
+        insert("2024-03-03", 100, FOOD);
+        insert("2024-03-04", 100, FOOD);
+        assertEquals(List.of("WARNING 2024-03-01 800", "EXCEEDED 2024-03-01 1000"), levels());
+        insert("2024-03-05", 100, FOOD);
+        assertEquals(2, alerts.size());
+    }
+
+    @Test
+    public void otherCategoriesAndMonthsDoNotCount() throws SQLException {
+        BudgetDAO.setBudget(FOOD, BudgetTracker.Period.MONTH, Money.ofMinor(1000), 0);
+        insert("2024-03-01", 900, FOOD);
+        insert("2024-03-01", 5000, RENT);
+        insert("2024-04-01", 900, FOOD);
+        assertEquals(List.of(), levels());
+    }
+
+    @Test
+    public void droppingBelowAndRisingAgainAlertsAgain() throws SQLException {
+        BudgetDAO.setBudget(null, BudgetTracker.Period.YEAR, Money.ofMinor(1000), 0);
+        Expense big = insert("2024-01-01", 1000, RENT);
+        assertEquals(List.of("EXCEEDED 2024-01-01 1000"), levels());
+
+        ExpenseDAO.deleteExpense(big.getId());
+        insert("2024-12-31", 600, FOOD);
+        Expense moved = insert("2025-01-01", 400, FOOD);
+        assertEquals(1, alerts.size());
+
+        // Moving it into 2024 is an update: out of 2025, into 2024
+        moved.setDate(LocalDate.of(2024, 6, 1));
+        ExpenseDAO.updateExpense(moved);
+        assertEquals(List.of("EXCEEDED 2024-01-01 1000", "EXCEEDED 2024-01-01 1000"), levels());
+    }
+
+    @Test
+    public void existingSpendingIsCountedWhenABudgetIsSet() throws SQLException {
+        insert("2024-03-01", 700, FOOD);
+        insert("2024-02-01", 700, FOOD);
+        BudgetDAO.setBudget(FOOD, BudgetTracker.Period.MONTH, Money.ofMinor(1000), 0);
+
+        List<BudgetTracker.Status> status = BudgetTracker.get().status(LocalDate.of(2024, 3, 15));
+        assertEquals(1, status.size());
+        assertEquals(Money.ofMinor(700), status.get(0).spent());
+        assertEquals(Money.ofMinor(300), status.get(0).remaining());
+        assertFalse(status.get(0).exceeded());
+
+        insert("2024-03-20", 300, FOOD);
+        assertEquals(List.of("EXCEEDED 2024-03-01 1000"), levels());
+        assertTrue(BudgetTracker.get().status(LocalDate.of(2024, 3, 15)).get(0).exceeded());
+    }
+
+    @Test
+    public void aBulkImportChunkAlertsOnceAtItsEnd() throws Exception {
+        BudgetDAO.setBudget(FOOD, BudgetTracker.Period.MONTH, Money.ofMinor(1000), 50);
+        new BulkImporter().importFrom(new StringReader("""
+                2024-03-01,Food,3,
+                2024-03-02,Food,3,
+                2024-03-03,Food,6,
+                """), null);
+        assertEquals(List.of("EXCEEDED 2024-03-01 1200"), levels());
+    }
+
+    @Test
+    public void deletedBudgetsStopAlerting() throws SQLException {
+        BudgetDAO.setBudget(FOOD, BudgetTracker.Period.MONTH, Money.ofMinor(100), 0);
+        BudgetDAO.deleteBudget(FOOD, BudgetTracker.Period.MONTH);
+        insert("2024-03-01", 500, FOOD);
+        assertEquals(List.of(), levels());
+        assertEquals(List.of(), BudgetTracker.get().budgets());
+    }
+
+    @Test
+    public void rejectsBadBudgets() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BudgetDAO.setBudget(FOOD, BudgetTracker.Period.MONTH, Money.ZERO, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> BudgetDAO.setBudget(FOOD, BudgetTracker.Period.MONTH, Money.ofMinor(1), 101));
+    }
+}
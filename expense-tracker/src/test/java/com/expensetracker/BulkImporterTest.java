@@ -0,0 +1,143 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class BulkImporterTest {
+
+    @Before
+    public void setUp() {
+        TestDatabase.fresh();
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.close();
+    }
+
+    private static BulkImporter.Result importCsv(BulkImporter importer, String csv) throws Exception {
+        return importer.importFrom(new StringReader(csv), null);
+    }
+
+    @Test
+    public void importsRowsAcrossSeveralChunks() throws Exception {
+        String csv = """
+                ﻿Date,Category,Amount,Note
+                2024-03-01,Food,12.50,lunch
+                2024-03-02,Transport,"1,200.00",
+                2024-03-03,Food,₹ 40,"tea, biscuits"
+                2024-03-04,Books,99,new category
+                2024-03-05,Food,1,
+                """;
+        List<long[]> progress = new ArrayList<>();
+        BulkImporter.Result r = new BulkImporter().batchSize(2)
+                .importFrom(new StringReader(csv), (read, imported, rejected) ->
+                        progress.add(new long[] {read, imported, rejected}));
+
+        assertEquals(5, r.imported());
+        assertEquals(0, r.rejected());
+        assertEquals(3, progress.size());   // two full chunks and the end
+        assertEquals(5, progress.get(2)[1]);
+
+        List<Expense> march = ExpenseDAO.getExpensesByMonthYear(2024, 3);
+        assertEquals(5, march.size());
+        assertEquals("Transport", march.get(1).getCategoryName());
+        assertEquals(Money.ofMinor(120000), march.get(1).getAmount());
+        assertEquals(null, march.get(1).getNote());
+        assertEquals("tea, biscuits", march.get(2).getNote());
+        assertEquals("Books", march.get(3).getCategoryName());
+        assertTrue(ExpenseDAO.getCategories().containsValue("Books"));
+    }
+
+    @Test
+    public void rejectsBadRowsWithTheirLineNumbers() throws Exception {
+        String csv = """
+                Date,Category,Amount,Note
+                2024-03-01,Food,10,ok
+                not-a-date,Food,10,
+                2024-03-02,,10,
+                2024-03-03,Food,abc,
+                2024-03-04,Food,0,
+
+                2024-03-05,Food,-5,
+                2024-03-06,Food,5,ok
+                """;
+        BulkImporter.Result r = importCsv(new BulkImporter(), csv);
+
+        assertEquals(2, r.imported());
+        assertEquals(5, r.rejected());
+        List<Long> lines = new ArrayList<>();
+        for (BulkImporter.RejectedRow row : r.rejectedRows()) lines.add(row.line());
+        assertEquals(List.of(3L, 4L, 5L, 6L, 8L), lines);
+        assertTrue(r.rejectedRows().get(0).reason().startsWith("Invalid date"));
+        assertEquals("Missing category", r.rejectedRows().get(1).reason());
+    }
+
+    @Test
+    public void customDateFormatAndColumns() throws Exception {
+        String csv = """
+                Ref,Amount,Date,Category
+                A1,15.25,31/01/2024,Bills
+                """;
+        BulkImporter.Result r = importCsv(new BulkImporter().dateFormat("dd/MM/yyyy").columns(2, 3, 1, -1), csv);
+
+        assertEquals(1, r.imported());
+        Expense e = ExpenseDAO.getExpensesByMonthYear(2024, 1).get(0);
+        assertEquals("2024-01-31", e.getDate().toString());
+        assertEquals(Money.ofMinor(1525), e.getAmount());
+        assertEquals(null, e.getNote());
+    }
+
+    // Summary rows that disagree with a sum over expenses, as "year-month category total"
+    private static List<String> staleMonthlyTotals() throws SQLException {
+        List<String> stale = new ArrayList<>();
+        try (PooledConnection pc = Database.reader();
+             ResultSet rs = pc.prepare("""
+                     SELECT t.year, t.month, t.category_id, t.total_minor
+                     FROM monthly_category_totals t
+                     WHERE t.total_minor IS NOT (
+                         SELECT SUM(e.amount_minor) FROM expenses e
+                         WHERE e.category_id = t.category_id
+                           AND CAST(substr(e.date, 1, 4) AS INTEGER) = t.year
+                           AND CAST(substr(e.date, 6, 2) AS INTEGER) = t.month)
+                     """).executeQuery()) {
+            while (rs.next()) stale.add(rs.getInt(1) + "-" + rs.getInt(2) + " " + rs.getInt(3) + " " + rs.getLong(4));
+        }
+        return stale;
+    }
+
+    @Test
+    public void summariesAreExactAfterAnImport() throws Exception {
+        StringBuilder csv = new StringBuilder("Date,Category,Amount,Note\n");
+        for (int i = 0; i < 500; i++) {
+            csv.append("2024-").append(String.format("%02d", 1 + i % 12)).append("-15,")
+                    .append(i % 3 == 0 ? "Food" : "Rent").append(',').append(1 + i).append(".25,\n");
+        }
+        BulkImporter.Result r = importCsv(new BulkImporter().batchSize(64), csv.toString());
+
+        assertEquals(500, r.imported());
+        assertEquals(List.of(), staleMonthlyTotals());
+        assertEquals(Money.ofMinor(100 * (500 * 501 / 2) + 25 * 500),
+                ExpenseDAO.sumAmount(ExpenseFilter.all()));
+    }
+
+    @Test
+    public void parsesAmountsWithSeparatorsAndSymbols() {
+        assertEquals(Money.ofMinor(120050), BulkImporter.parseAmount("1,200.50"));
+        assertEquals(Money.ofMinor(1200), BulkImporter.parseAmount("$12"));
+        assertEquals(Money.ofMinor(120050), BulkImporter.parseAmount("₹ 1200.50"));
+        assertThrows(NumberFormatException.class, () -> BulkImporter.parseAmount("12 EUR"));
+        assertThrows(NumberFormatException.class, () -> BulkImporter.parseAmount("1.005"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ChangeJournalTest {
+
+    private static final int FOOD = 1;
+    private static final int RENT = 3;
+
+    private final List<ChangeJournal.Change> seen = new ArrayList<>();
+    private final ChangeJournal.Listener listener = seen::addAll;
+
+    @Before
+    public void setUp() {
+        TestDatabase.fresh();
+        ChangeJournal.get().subscribe(listener);
+    }
+
+    @After
+    public void tearDown() {
+        ChangeJournal.get().unsubscribe(listener);
+        TestDatabase.close();
+    }
+
+    private static List<String> journalRows() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (PooledConnection pc = Database.reader();
+             ResultSet rs = pc.prepare("SELECT expense_id, op FROM expense_changes ORDER BY seq").executeQuery()) {
+            while (rs.next()) rows.add(rs.getInt(1) + rs.getString(2));
+        }
+        return rows;
+    }
+
+    @Test
+    public void publishesEachWriteWithBeforeAndAfter() {
+        Expense e = new Expense(Money.ofMinor(500), LocalDate.of(2024, 3, 1), FOOD, null, "lunch");
+        int id = ExpenseDAO.insertExpense(e);
+        assertEquals(id, e.getId());
+
+        e.setAmount(Money.ofMinor(350));
+        e.setCategoryId(RENT);
+        ExpenseDAO.updateExpense(e);
+        ExpenseDAO.deleteExpense(id);
+
+        assertEquals(3, seen.size());
+        ChangeJournal.Change insert = seen.get(0);
+        assertEquals(ChangeJournal.Op.INSERT, insert.op());
+        assertNull(insert.before());
+        assertEquals("Food", insert.after().getCategoryName());
+        assertEquals(500, insert.amountDelta());
+
+        ChangeJournal.Change update = seen.get(1);
+        assertEquals(ChangeJournal.Op.UPDATE, update.op());
+        assertEquals("Food", update.before().getCategoryName());
+        assertEquals("Rent", update.after().getCategoryName());
+        assertEquals(-150, update.amountDelta());
+
+        ChangeJournal.Change delete = seen.get(2);
+        assertEquals(ChangeJournal.Op.DELETE, delete.op());
+        assertEquals(id, delete.expenseId());
+        assertEquals(-350, delete.amountDelta());
+    }
+
+    @Test
+    public void missingRowsPublishNothing() {
+        Expense ghost = new Expense(42, Money.ofMinor(1), LocalDate.of(2024, 3, 1), FOOD, null, null);
+        ExpenseDAO.updateExpense(ghost);
+        ExpenseDAO.deleteExpense(42);
+        assertEquals(List.of(), seen);
+    }
+
+    @Test
+    public void triggersRecordEveryChangeInOrder() throws SQLException {
+        Expense a = new Expense(Money.ofMinor(1), LocalDate.of(2024, 3, 1), FOOD, null, null);
+        Expense b = new Expense(Money.ofMinor(2), LocalDate.of(2024, 3, 2), FOOD, null, null);
+        ExpenseDAO.insertExpense(a);
+        ExpenseDAO.insertExpense(b);
+        a.setNote("edited");
+        ExpenseDAO.updateExpense(a);
+        ExpenseDAO.deleteExpense(b.getId());
+
+        assertEquals(List.of(a.getId() + "I", b.getId() + "I", a.getId() + "U", b.getId() + "D"), journalRows());
+    }
+
+    @Test
+    public void bulkImportPublishesEveryRowWithItsId() throws Exception {
+        new BulkImporter().batchSize(2).importFrom(new StringReader("""
+                2024-03-01,Food,1,a
+                2024-03-02,Rent,2,b
+                2024-03-03,Food,3,c
+                """), null);
+
+        assertEquals(3, seen.size());
+        List<Expense> stored = ExpenseDAO.getExpensesByMonthYear(2024, 3);
+        for (int i = 0; i < 3; i++) {
+            Expense published = seen.get(i).after();
+            assertEquals(stored.get(i).getId(), published.getId());
+            assertEquals(stored.get(i).getNote(), published.getNote());
+            assertEquals(stored.get(i).getCategoryName(), published.getCategoryName());
+        }
+    }
+
+    @Test
+    public void aFailingListenerDoesNotStopTheOthers() {
+        ChangeJournal.Listener broken = changes -> {
+            throw new IllegalStateException("boom");
+        };
+        ChangeJournal.get().subscribe(broken);
+        try {
+            ExpenseDAO.insertExpense(new Expense(Money.ofMinor(1), LocalDate.of(2024, 3, 1), FOOD, null, null));
+        } finally {
+            ChangeJournal.get().unsubscribe(broken);
+        }
+        assertEquals(1, seen.size());
+        assertEquals(1, ExpenseDAO.countExpenses(ExpenseFilter.all()));
+    }
+}
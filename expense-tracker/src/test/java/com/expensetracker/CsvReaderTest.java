@@ -0,0 +1,64 @@
+package com.expensetracker;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class CsvReaderTest {
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader r = new CsvReader(new StringReader(csv))) {
+            List<String> rec;
+            while ((rec = r.next()) != null) records.add(new ArrayList<>(rec));
+        }
+        return records;
+    }
+
+    @Test
+    public void splitsPlainFields() throws IOException {
+        assertEquals(List.of(List.of("a", "b", "c"), List.of("1", "", "3")), readAll("a,b,c\n1,,3\n"));
+    }
+
+    @Test
+    public void acceptsCrLfAndNoFinalNewline() throws IOException {
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d")), readAll("a,b\r\nc,d"));
+    }
+
+    @Test
+    public void quotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        assertEquals(List.of(List.of("x,y", "say \"hi\"", "two\nlines"), List.of("next")),
+                readAll("\"x,y\",\"say \"\"hi\"\"\",\"two\nlines\"\nnext\n"));
+    }
+
+    @Test
+    public void reportsTheLineEachRecordStartsOn() throws IOException {
+        try (CsvReader r = new CsvReader(new StringReader("a\n\"b\nb\"\nc\n"))) {
+            r.next();
+            assertEquals(1, r.getRecordLine());
+            r.next();
+            assertEquals(2, r.getRecordLine());
+            r.next();
+            assertEquals(4, r.getRecordLine());
+            assertNull(r.next());
+        }
+    }
+
+    @Test
+    public void unterminatedQuoteIsAnError() {
+        assertThrows(IOException.class, () -> readAll("a,\"never closed\n"));
+    }
+
+    @Test
+    public void readsRecordsLongerThanItsBuffer() throws IOException {
+        String big = "x".repeat(200_000);
+        assertEquals(List.of(List.of(big, "\"" + big)), readAll(big + ",\"\"\"" + big + "\"\n"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.expensetracker;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CsvWriterTest {
+
+    private static String write(CsvWriterBody body) throws IOException {
+        StringWriter out = new StringWriter();
+        CsvWriter csv = new CsvWriter(out);
+        body.write(csv);
+        csv.flush();
+        return out.toString();
+    }
+
+    private interface CsvWriterBody {
+        void write(CsvWriter csv) throws IOException;
+    }
+
+    @Test
+    public void plainFieldsAreNotQuoted() throws IOException {
+        assertEquals("a,b,,c\r\n", write(csv -> csv.record("a", "b", null, "c")));
+    }
+
+    @Test
+    public void quotesOnlyWhenNeeded() throws IOException {
+        assertEquals("\"x,y\",\"say \"\"hi\"\"\",\"two\nlines\",\" padded\",ok\r\n",
+                write(csv -> csv.record("x,y", "say \"hi\"", "two\nlines", " padded", "ok")));
+    }
+
+    @Test
+    public void amountsHaveTwoDecimals() throws IOException {
+        assertEquals("0.00,12.50,-0.05,1234567.89,92233720368547758.07,-92233720368547758.08\r\n", write(csv -> {
+            csv.amount(0).amount(1250).amount(-5).amount(123456789).amount(Long.MAX_VALUE).amount(Long.MIN_VALUE);
+            csv.endRecord();
+        }));
+    }
+
+    @Test
+    public void writtenRecordsReadBack() throws IOException {
+        String text = write(csv -> {
+            csv.record("a\"b", "c,d");
+            csv.field("e\r\nf").amount(300).endRecord();
+        });
+        try (CsvReader r = new CsvReader(new StringReader(text))) {
+            assertEquals(List.of("a\"b", "c,d"), r.next());
+            assertEquals(List.of("e\r\nf", "3.00"), r.next());
+        }
+    }
+}
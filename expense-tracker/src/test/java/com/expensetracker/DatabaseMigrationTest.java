@@ -0,0 +1,127 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class DatabaseMigrationTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        Database.shutdown();
+    }
+
+    // A database as the first release created it: REAL amounts, no user_version
+    private Path legacyDatabase(double... amounts) throws SQLException {
+        Path file = tmp.getRoot().toPath().resolve("legacy.db");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE categories (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL UNIQUE)");
+            st.execute("""
+                    CREATE TABLE expenses (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        amount REAL NOT NULL,
+                        date   TEXT NOT NULL,
+                        category_id INTEGER NOT NULL,
+                        note   TEXT,
+                        FOREIGN KEY (category_id) REFERENCES categories(id)
+                    )
+                    """);
+            st.execute("INSERT INTO categories (name) VALUES ('Food'), ('Rent')");
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO expenses (amount, date, category_id, note) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < amounts.length; i++) {
+                    ps.setDouble(1, amounts[i]);
+                    ps.setString(2, i % 2 == 0 ? "2024-01-15" : "2024-02-03");
+                    ps.setInt(3, 1 + i % 2);
+                    ps.setString(4, "row " + i);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+        return file;
+    }
+
+    private static Map<Integer, Long> amountsById() throws SQLException {
+        Map<Integer, Long> amounts = new LinkedHashMap<>();
+        try (PooledConnection pc = Database.reader();
+             ResultSet rs = pc.prepare("SELECT id, amount_minor FROM expenses ORDER BY id").executeQuery()) {
+            while (rs.next()) amounts.put(rs.getInt(1), rs.getLong(2));
+        }
+        return amounts;
+    }
+
+    private static long queryLong(String sql) throws SQLException {
+        try (PooledConnection pc = Database.reader();
+             ResultSet rs = pc.prepare(sql).executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    public void realAmountsBecomeRoundedMinorUnits() throws SQLException {
+        // 0.29 * 100 and 0.07 * 100 are not whole in binary; 0.125 is an exact half
+        Path file = legacyDatabase(0.29, 19.99, 0.07, 1234567.89, 0.125, 0.1);
+        Database.useFile(file.toString());
+        Database.init();
+
+        Map<Integer, Long> expected = new LinkedHashMap<>();
+        expected.put(1, 29L);
+        expected.put(2, 1999L);
+        expected.put(3, 7L);
+        expected.put(4, 123456789L);
+        expected.put(5, 13L);      // ROUND() takes halves away from zero
+        expected.put(6, 10L);
+        assertEquals(expected, amountsById());
+    }
+
+    @Test
+    public void summaryTablesAreRebuiltInMinorUnits() throws SQLException {
+        Path file = legacyDatabase(0.29, 19.99, 0.07, 0.1);
+        Database.useFile(file.toString());
+        Database.init();
+
+        // Food: rows 0 and 2 in January; Rent: rows 1 and 3 in February
+        assertEquals(36, queryLong(
+                "SELECT total_minor FROM monthly_category_totals WHERE year = 2024 AND month = 1 AND category_id = 1"));
+        assertEquals(2009, queryLong(
+                "SELECT total_minor FROM monthly_category_totals WHERE year = 2024 AND month = 2 AND category_id = 2"));
+        assertEquals(2045, queryLong("SELECT SUM(total_minor) FROM daily_totals"));
+        assertEquals(Money.ofMinor(2045), ExpenseDAO.sumAmount(ExpenseFilter.all()));
+    }
+
+    @Test
+    public void migratedTriggersKeepSummariesCurrent() throws SQLException {
+        Path file = legacyDatabase(0.29);
+        Database.useFile(file.toString());
+        Database.init();
+
+        Expense e = new Expense(Money.parse("10.01"), LocalDate.of(2024, 1, 20), 1, "Food", null);
+        ExpenseDAO.insertExpense(e);
+        assertEquals(1030, queryLong(
+                "SELECT total_minor FROM monthly_category_totals WHERE year = 2024 AND month = 1 AND category_id = 1"));
+
+        ExpenseDAO.deleteExpense(e.getId());
+        assertEquals(29, queryLong(
+                "SELECT total_minor FROM monthly_category_totals WHERE year = 2024 AND month = 1 AND category_id = 1"));
+    }
+}
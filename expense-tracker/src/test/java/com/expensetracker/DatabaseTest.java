@@ -0,0 +1,73 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DatabaseTest {
+
+    @Before
+    public void setUp() {
+        TestDatabase.fresh();
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.close();
+    }
+
+    private static long queryLong(String sql) throws SQLException {
+        try (PooledConnection pc = Database.reader();
+             ResultSet rs = pc.prepare(sql).executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void insert(String date) {
+        ExpenseDAO.insertExpense(new Expense(Money.ofMinor(100), LocalDate.parse(date), 1, null, date));
+    }
+
+    private static List<String> datesIn(int year, int month) {
+        List<String> dates = new ArrayList<>();
+        for (Expense e : ExpenseDAO.getExpensesByMonthYear(year, month)) dates.add(e.getDate().toString());
+        return dates;
+    }
+
+    @Test
+    public void migrationsAreRecordedAndRunOnce() throws SQLException {
+        long version = queryLong("PRAGMA user_version");
+        assertTrue(version >= 1);
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'idx_expenses_date'"));
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'idx_expenses_category_date'"));
+
+        Database.init();
+        assertEquals(version, queryLong("PRAGMA user_version"));
+    }
+
+    @Test
+    public void monthRangeIncludesBothEndsOnly() {
+        insert("2024-01-31");
+        insert("2024-02-29");
+        insert("2024-02-01");
+        insert("2024-03-01");
+        assertEquals(List.of("2024-02-01", "2024-02-29"), datesIn(2024, 2));
+    }
+
+    @Test
+    public void decemberEndsAtTheNewYear() {
+        insert("2023-12-31");
+        insert("2024-01-01");
+        assertEquals(List.of("2023-12-31"), datesIn(2023, 12));
+        assertEquals(List.of("2024-01-01"), datesIn(2024, 1));
+    }
+}
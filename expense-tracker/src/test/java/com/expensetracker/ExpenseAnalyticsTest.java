@@ -0,0 +1,119 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class ExpenseAnalyticsTest {
+
+    private static final int FOOD = 1;
+    private static final int RENT = 3;
+
+    @Before
+    public void setUp() {
+        TestDatabase.fresh();
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.close();
+    }
+
+    private static void insert(String date, long minor, int categoryId) {
+        ExpenseDAO.insertExpense(new Expense(Money.ofMinor(minor), LocalDate.parse(date), categoryId, null, null));
+    }
+
+    private static LocalDate d(String date) {
+        return LocalDate.parse(date);
+    }
+
+    @Test
+    public void monthlyTotalsCoverPartialMonthsAndGaps() {
+        insert("2024-01-10", 100, FOOD);
+        insert("2024-01-20", 200, FOOD);
+        insert("2024-03-01", 50, RENT);
+        insert("2024-04-15", 7, FOOD);
+
+        Map<YearMonth, Money> expected = new LinkedHashMap<>();
+        expected.put(YearMonth.of(2024, 1), Money.ofMinor(200));
+        expected.put(YearMonth.of(2024, 2), Money.ZERO);
+        expected.put(YearMonth.of(2024, 3), Money.ofMinor(50));
+        expected.put(YearMonth.of(2024, 4), Money.ZERO);
+        assertEquals(expected, ExpenseAnalytics.monthlyTotals(d("2024-01-15"), d("2024-04-15")));
+    }
+
+    @Test
+    public void categoryTrendIsLargestFirstWithZeroMonths() {
+        insert("2024-01-10", 100, FOOD);
+        insert("2024-02-10", 100, FOOD);
+        insert("2024-02-01", 1000, RENT);
+        insert("2024-02-29", 1, RENT);
+
+        Map<String, Map<YearMonth, Money>> trend = ExpenseAnalytics.categoryTrend(d("2024-01-01"), d("2024-03-01"));
+        assertEquals(List.of("Rent", "Food"), List.copyOf(trend.keySet()));
+        assertEquals(Map.of(YearMonth.of(2024, 1), Money.ZERO, YearMonth.of(2024, 2), Money.ofMinor(1001)),
+                trend.get("Rent"));
+        assertEquals(Money.ofMinor(100), trend.get("Food").get(YearMonth.of(2024, 1)));
+    }
+
+    @Test
+    public void yearOverYearPairsTheSameMonths() {
+        insert("2023-02-05", 400, FOOD);
+        insert("2024-02-05", 500, FOOD);
+        insert("2024-03-05", 100, FOOD);
+
+        List<ExpenseAnalytics.MonthComparison> rows =
+                ExpenseAnalytics.yearOverYear(d("2024-02-01"), d("2024-04-01"));
+        assertEquals(2, rows.size());
+        assertEquals(Money.ofMinor(500), rows.get(0).current());
+        assertEquals(Money.ofMinor(400), rows.get(0).previousYear());
+        assertEquals(0.25, rows.get(0).growth(), 1e-9);
+        assertNull(rows.get(1).growth());
+    }
+
+    @Test
+    public void rollingTotalsLookBackAcrossMonths() {
+        insert("2024-01-30", 10, FOOD);
+        insert("2024-02-01", 20, RENT);
+        insert("2024-02-03", 40, FOOD);
+
+        Map<LocalDate, Money> rolling = ExpenseAnalytics.rollingTotals(d("2024-02-01"), d("2024-02-05"), 3);
+        assertEquals(List.of(d("2024-02-01"), d("2024-02-02"), d("2024-02-03"), d("2024-02-04")),
+                List.copyOf(rolling.keySet()));
+        assertEquals(Money.ofMinor(30), rolling.get(d("2024-02-01")));
+        assertEquals(Money.ofMinor(20), rolling.get(d("2024-02-02")));
+        assertEquals(Money.ofMinor(60), rolling.get(d("2024-02-03")));
+        assertEquals(Money.ofMinor(40), rolling.get(d("2024-02-04")));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExpenseAnalytics.rollingTotals(d("2024-02-01"), d("2024-02-05"), 0));
+    }
+
+    @Test
+    public void percentilesUseNearestRankAcrossPartitions() {
+        for (int i = 1; i <= 10; i++) {
+            insert("2024-0" + (1 + i % 3) + "-10", i * 100, FOOD);
+        }
+        Map<Double, Money> p = ExpenseAnalytics.percentiles(d("2024-01-01"), d("2024-04-01"), 0, 50, 90, 100);
+        assertEquals(Money.ofMinor(100), p.get(0.0));
+        assertEquals(Money.ofMinor(500), p.get(50.0));
+        assertEquals(Money.ofMinor(900), p.get(90.0));
+        assertEquals(Money.ofMinor(1000), p.get(100.0));
+        assertEquals(Map.of(), ExpenseAnalytics.percentiles(d("2020-01-01"), d("2020-02-01"), 50));
+    }
+
+    @Test
+    public void emptyRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ExpenseAnalytics.monthlyTotals(d("2024-02-01"), d("2024-02-01")));
+    }
+}
@@ -0,0 +1,189 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExpenseDAOTest {
+
+    private static final int FOOD = 1;
+    private static final int RENT = 3;
+
+    @Before
+    public void setUp() {
+        TestDatabase.fresh();
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.close();
+    }
+
+    private static void insert(String date, long minor, int categoryId, String note) {
+        ExpenseDAO.insertExpense(new Expense(Money.ofMinor(minor), LocalDate.parse(date), categoryId, null, note));
+    }
+
+    private static List<String> notes(List<Expense> rows) {
+        List<String> notes = new ArrayList<>();
+        for (Expense e : rows) notes.add(e.getNote());
+        return notes;
+    }
+
+    // Ten rows, several per day, inserted out of date order
+    private static void insertTen() {
+        for (int i = 9; i >= 0; i--) {
+            insert("2024-03-0" + (1 + i / 3), 100 * (1 + i), i % 2 == 0 ? FOOD : RENT, "n" + i);
+        }
+    }
+
+    @Test
+    public void keysetPagesWalkTheWholeLedgerInOrder() {
+        insertTen();
+        List<Expense> all = ExpenseDAO.getExpensePage(ExpenseFilter.all(), null, 0, 0, 100);
+        assertEquals(10, all.size());
+
+        List<Expense> walked = new ArrayList<>();
+        Expense last = null;
+        while (true) {
+            List<Expense> page = ExpenseDAO.getExpensePage(ExpenseFilter.all(),
+                    last == null ? null : last.getDate(), last == null ? 0 : last.getId(), 0, 3);
+            if (page.isEmpty()) break;
+            walked.addAll(page);
+            last = page.get(page.size() - 1);
+        }
+        assertEquals(notes(all), notes(walked));
+        for (int i = 1; i < all.size(); i++) {
+            Expense a = all.get(i - 1);
+            Expense b = all.get(i);
+            int byDate = a.getDate().compareTo(b.getDate());
+            assertEquals(true, byDate < 0 || byDate == 0 && a.getId() < b.getId());
+        }
+    }
+
+    @Test
+    public void skipCountsFromTheKey() {
+        insertTen();
+        List<Expense> all = ExpenseDAO.getExpensePage(ExpenseFilter.all(), null, 0, 0, 100);
+        Expense key = all.get(2);
+        assertEquals(notes(all.subList(6, 9)),
+                notes(ExpenseDAO.getExpensePage(ExpenseFilter.all(), key.getDate(), key.getId(), 3, 3)));
+    }
+
+    @Test
+    public void pagesBeforeAKeyReadBackwardsInOrder() {
+        insertTen();
+        List<Expense> all = ExpenseDAO.getExpensePage(ExpenseFilter.all(), null, 0, 0, 100);
+
+        // From the end: the last page, then the one before it
+        assertEquals(notes(all.subList(7, 10)),
+                notes(ExpenseDAO.getExpensePageBefore(ExpenseFilter.all(), null, 0, 0, 3)));
+        assertEquals(notes(all.subList(4, 7)),
+                notes(ExpenseDAO.getExpensePageBefore(ExpenseFilter.all(), null, 0, 3, 3)));
+
+        // From a key: skip counts back from it, and the first page may come up short
+        Expense key = all.get(6);
+        assertEquals(notes(all.subList(1, 4)),
+                notes(ExpenseDAO.getExpensePageBefore(ExpenseFilter.all(), key.getDate(), key.getId(), 2, 3)));
+        assertEquals(notes(all.subList(0, 2)),
+                notes(ExpenseDAO.getExpensePageBefore(ExpenseFilter.all(), key.getDate(), key.getId(), 4, 3)));
+    }
+
+    @Test
+    public void pagesHonourTheFilter() {
+        insertTen();
+        insert("2024-04-01", 10000, FOOD, "april");
+        ExpenseFilter marchFood = ExpenseFilter.month(2024, 3).withCategory(FOOD);
+        // Inserted from n9 down, so within a day the higher n has the lower id
+        assertEquals(List.of("n2", "n0", "n4", "n8", "n6"),
+                notes(ExpenseDAO.getExpensePage(marchFood, null, 0, 0, 100)));
+    }
+
+    @Test
+    public void countAndSumWithAndWithoutCategory() {
+        insertTen();
+        insert("2024-04-01", 10000, FOOD, "april");
+        assertEquals(11, ExpenseDAO.countExpenses(ExpenseFilter.all()));
+        assertEquals(10, ExpenseDAO.countExpenses(ExpenseFilter.month(2024, 3)));
+        assertEquals(5, ExpenseDAO.countExpenses(ExpenseFilter.month(2024, 3).withCategory(RENT)));
+        assertEquals(Money.ofMinor(15500), ExpenseDAO.sumAmount(ExpenseFilter.all()));
+        assertEquals(Money.ofMinor(5500), ExpenseDAO.sumAmount(ExpenseFilter.month(2024, 3)));
+        assertEquals(Money.ofMinor(2500), ExpenseDAO.sumAmount(ExpenseFilter.month(2024, 3).withCategory(FOOD)));
+        assertEquals(0, ExpenseDAO.countExpenses(ExpenseFilter.year(2023)));
+    }
+
+    @Test
+    public void ftsQueryQuotesAndPrefixesEveryWord() {
+        assertEquals("\"gro\"* \"caf\u00e9\"*", ExpenseDAO.ftsQuery("  gro, caf\u00e9 "));
+        assertEquals("\"a\"* \"OR\"* \"b\"*", ExpenseDAO.ftsQuery("a OR \"b\""));
+        assertEquals("", ExpenseDAO.ftsQuery(" -*\" "));
+        assertEquals("", ExpenseDAO.ftsQuery(null));
+    }
+
+    @Test
+    public void searchMatchesNotesAndCategoriesByPrefix() {
+        insert("2024-01-05", 1000, FOOD, "Weekly groceries");
+        insert("2024-02-05", 2000, RENT, "February");
+        insert("2024-03-05", 3000, FOOD, "Caf\u00e9 with Sam");
+        insert("2024-03-06", 4000, RENT, null);
+
+        assertEquals(List.of("Weekly groceries"), notes(ExpenseDAO.searchExpenses("gro", ExpenseFilter.all(), 10)));
+        // Diacritics are folded, and operators in the text are plain words
+        assertEquals(List.of("Caf\u00e9 with Sam"), notes(ExpenseDAO.searchExpenses("cafe", ExpenseFilter.all(), 10)));
+        assertEquals(List.of(), notes(ExpenseDAO.searchExpenses("groceries OR rent", ExpenseFilter.all(), 10)));
+        // Category names are indexed, and the filter still applies
+        assertEquals(2, ExpenseDAO.searchExpenses("rent", ExpenseFilter.all(), 10).size());
+        assertEquals(1, ExpenseDAO.searchExpenses("rent", ExpenseFilter.month(2024, 3), 10).size());
+        assertEquals(1, ExpenseDAO.searchExpenses("rent", ExpenseFilter.all(), 1).size());
+    }
+
+    @Test
+    public void searchFollowsEditsAndDeletes() {
+        insert("2024-01-05", 1000, FOOD, "old note");
+        Expense e = ExpenseDAO.getExpensesByMonthYear(2024, 1).get(0);
+        e.setNote("fresh note");
+        e.setCategoryId(RENT);
+        ExpenseDAO.updateExpense(e);
+
+        assertEquals(List.of(), ExpenseDAO.searchExpenses("old", ExpenseFilter.all(), 10));
+        assertEquals(List.of(), ExpenseDAO.searchExpenses("food", ExpenseFilter.all(), 10));
+        assertEquals(List.of("fresh note"), notes(ExpenseDAO.searchExpenses("fre rent", ExpenseFilter.all(), 10)));
+
+        ExpenseDAO.deleteExpense(e.getId());
+        assertEquals(List.of(), ExpenseDAO.searchExpenses("fresh", ExpenseFilter.all(), 10));
+    }
+
+    @Test
+    public void editReadsAndWritesUnderOneWriterBorrow() throws Exception {
+        insert("2024-03-01", 100, FOOD, "start");
+        int id = ExpenseDAO.getExpensesByMonthYear(2024, 3).get(0).getId();
+        Thread other = new Thread(() -> ExpenseDAO.editExpense(id, e -> e.setNote("other")));
+
+        Expense updated = ExpenseDAO.editExpense(id, e -> {
+            other.start();
+            e.setAmount(Money.ofMinor(500));
+            // The other edit waits for the writer, so it reads the row only after this one is written
+            try {
+                other.join(200);
+            } catch (InterruptedException ex) {
+                throw new AssertionError(ex);
+            }
+            assertTrue(other.isAlive());
+        });
+        other.join();
+
+        assertEquals(Money.ofMinor(500), updated.getAmount());
+        Expense stored = ExpenseDAO.getExpense(id);
+        assertEquals(Money.ofMinor(500), stored.getAmount());
+        assertEquals("other", stored.getNote());
+        assertNull(ExpenseDAO.editExpense(id + 1, e -> fail("no such expense")));
+    }
+}
@@ -0,0 +1,82 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExpenseExporterTest {
+
+    private static final int FOOD = 1;
+    private static final int RENT = 3;
+
+    @Before
+    public void setUp() {
+        TestDatabase.fresh();
+        insert("2024-02-10", 50000, RENT, null);
+        insert("2024-01-05", 1250, FOOD, "lunch, with \"friends\"");
+        insert("2024-01-20", 300, FOOD, "tea");
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.close();
+    }
+
+    private static void insert(String date, long minor, int categoryId, String note) {
+        ExpenseDAO.insertExpense(new Expense(Money.ofMinor(minor), LocalDate.parse(date), categoryId, null, note));
+    }
+
+    private static String export(ExpenseFilter filter, boolean gzip) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExpenseExporter.export(out, filter, gzip, null);
+        InputStream bytes = new ByteArrayInputStream(out.toByteArray());
+        try (InputStream in = gzip ? new GZIPInputStream(bytes) : bytes) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void exportsAllRowsInDateOrder() throws Exception {
+        assertEquals("Date,Category,Amount,Note\r\n"
+                + "2024-01-05,Food,12.50,\"lunch, with \"\"friends\"\"\"\r\n"
+                + "2024-01-20,Food,3.00,tea\r\n"
+                + "2024-02-10,Rent,500.00,\r\n",
+                export(ExpenseFilter.all(), false));
+    }
+
+    @Test
+    public void filtersByMonthAndCategory() throws Exception {
+        assertEquals("Date,Category,Amount,Note\r\n2024-01-20,Food,3.00,tea\r\n",
+                export(new ExpenseFilter(LocalDate.of(2024, 1, 6), LocalDate.of(2024, 2, 1), FOOD), false));
+        assertEquals("Date,Category,Amount,Note\r\n",
+                export(ExpenseFilter.month(2024, 2).withCategory(FOOD), false));
+    }
+
+    @Test
+    public void gzipOutputIsComplete() throws Exception {
+        assertEquals(export(ExpenseFilter.year(2024), false),
+                export(ExpenseFilter.year(2024), true));
+    }
+
+    @Test
+    public void reportsFinalProgress() throws Exception {
+        long[] last = new long[2];
+        long rows = ExpenseExporter.export(new ByteArrayOutputStream(), ExpenseFilter.all(), false,
+                (written, total) -> {
+                    last[0] = written;
+                    last[1] = total;
+                });
+        assertEquals(3, rows);
+        assertEquals(3, last[0]);
+        assertEquals(3, last[1]);
+    }
+}
@@ -0,0 +1,124 @@
+package com.expensetracker;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExpenseSearchTest {
+
+    private final List<Expense> rows = new ArrayList<>();
+    private final ObservableList<Expense> visible = FXCollections.observableArrayList();
+    private ExpenseSearch search;
+
+    @Before
+    public void setUp() {
+        add(1, "2024-03-01", 100, "Food", "Café latte");
+        add(2, "2024-03-02", 200, "Food", "Groceries");
+        add(3, "2024-03-03", 400, "Transport", "Cab to the café");
+        add(4, "2024-03-04", 800, "Rent", null);
+        search = new ExpenseSearch(rows, visible);
+        search.refresh("");
+    }
+
+    private Expense add(int id, String date, long minor, String category, String note) {
+        Expense e = new Expense(id, Money.ofMinor(minor), LocalDate.parse(date), 1, category, note);
+        rows.add(e);
+        return e;
+    }
+
+    private List<Integer> visibleIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (Expense e : visible) ids.add(e.getId());
+        return ids;
+    }
+
+    @Test
+    public void blankQueryShowsEverything() {
+        assertEquals(List.of(1, 2, 3, 4), visibleIds());
+        assertEquals(1500, search.total());
+        search.search("   ");
+        assertEquals(List.of(1, 2, 3, 4), visibleIds());
+    }
+
+    @Test
+    public void matchesCategoryOrNoteIgnoringCaseAndAccents() {
+        search.search("CAFE");
+        assertEquals(List.of(1, 3), visibleIds());
+        assertEquals(500, search.total());
+        search.refresh("rent");
+        assertEquals(List.of(4), visibleIds());
+    }
+
+    @Test
+    public void aMatchCannotSpanCategoryAndNote() {
+        search.search("foodcafé");
+        assertEquals(List.of(), visibleIds());
+        assertEquals(0, search.total());
+    }
+
+    @Test
+    public void narrowingAndWideningKeepTheTotalRight() {
+        search.search("c");
+        assertEquals(List.of(1, 2, 3), visibleIds());
+        assertEquals(700, search.total());
+        search.search("ca");
+        assertEquals(List.of(1, 3), visibleIds());
+        assertEquals(500, search.total());
+        search.search("cab");
+        assertEquals(List.of(3), visibleIds());
+        assertEquals(400, search.total());
+        // Not an extension of "cab", so every row is tested again
+        search.search("gro");
+        assertEquals(List.of(2), visibleIds());
+        assertEquals(200, search.total());
+        search.search("");
+        assertEquals(1500, search.total());
+    }
+
+    @Test
+    public void addedAndRemovedRowsFollowTheQuery() {
+        search.search("café");
+        Expense match = add(5, "2024-03-02", 50, "Food", "Another cafe");
+        search.added(match);
+        Expense other = add(6, "2024-03-02", 70, "Food", "Bread");
+        search.added(other);
+        assertEquals(List.of(1, 5, 3), visibleIds());
+        assertEquals(550, search.total());
+
+        rows.remove(match);
+        search.removed(match);
+        rows.remove(other);
+        search.removed(other);
+        assertEquals(List.of(1, 3), visibleIds());
+        assertEquals(500, search.total());
+    }
+
+    @Test
+    public void editedNoteIsMatchedAfresh() {
+        search.search("latte");
+        assertEquals(List.of(1), visibleIds());
+        rows.get(1).setNote("Latte beans");
+        search.refresh("latte");
+        assertEquals(List.of(1, 2), visibleIds());
+    }
+
+    @Test
+    public void removingAnEditedRowSubtractsWhatItAddedBefore() {
+        search.search("latte");
+        Expense shown = rows.get(0);
+        Money before = shown.getAmount();
+        // Edited in place, as the dialog does, before the table hears about it
+        shown.setAmount(Money.ofMinor(9999));
+        rows.remove(shown);
+        search.removed(shown, before);
+        assertEquals(List.of(), visibleIds());
+        assertEquals(0, search.total());
+    }
+}
@@ -0,0 +1,220 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ExpenseSnapshotTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path db;
+
+    @Before
+    public void setUp() {
+        db = tmp.getRoot().toPath().resolve("test.db");
+        Database.useFile(db.toString());
+        Database.init();
+    }
+
+    @After
+    public void tearDown() {
+        Database.shutdown();
+    }
+
+    private static Expense insert(String date, long minor, int categoryId, String note) {
+        Expense e = new Expense(Money.ofMinor(minor), LocalDate.parse(date), categoryId, null, note);
+        ExpenseDAO.insertExpense(e);
+        return e;
+    }
+
+    // Rows as "date id amount category note", in snapshot order
+    private static List<String> rows(ExpenseSnapshot s) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < s.size(); i++) {
+            rows.add(s.date(i) + " " + s.id(i) + " " + s.amountMinor(i) + " " + s.categoryId(i) + " " + s.note(i));
+        }
+        return rows;
+    }
+
+    private static List<String> stored() {
+        List<String> rows = new ArrayList<>();
+        for (Expense e : ExpenseDAO.getExpensePage(ExpenseFilter.all(), null, 0, 0, Integer.MAX_VALUE)) {
+            rows.add(e.getDate() + " " + e.getId() + " " + e.getAmount().minorUnits() + " "
+                    + e.getCategoryId() + " " + e.getNote());
+        }
+        return rows;
+    }
+
+    @Test
+    public void firstRefreshHoldsEveryRowInDateOrder() throws Exception {
+        insert("2024-03-02", 200, 1, "b");
+        insert("2024-03-01", 100, 3, "café");
+        insert("2024-03-02", 300, 1, null);
+        insert("2023-12-31", 50, 2, "b");
+
+        ExpenseSnapshot s = ExpenseSnapshot.refresh();
+        assertEquals(4, s.size());
+        assertEquals(stored(), rows(s));
+        assertEquals("Rent", s.toExpense(1).getCategoryName());
+    }
+
+    @Test
+    public void currentOnlyUntilTheNextWrite() throws Exception {
+        insert("2024-03-01", 100, 1, null);
+        assertNull(ExpenseSnapshot.current());
+        ExpenseSnapshot s = ExpenseSnapshot.refresh();
+        assertSame(s, ExpenseSnapshot.current());
+        // Nothing changed, so the same file is kept
+        assertSame(s, ExpenseSnapshot.refresh());
+
+        insert("2024-03-02", 100, 1, null);
+        assertNull(ExpenseSnapshot.current());
+        assertNotNull(ExpenseSnapshot.refresh());
+        assertNotNull(ExpenseSnapshot.current());
+    }
+
+    @Test
+    public void aWriteFromAnotherProcessMakesItStale() throws Exception {
+        insert("2024-03-01", 100, 1, null);
+        ExpenseSnapshot.refresh();
+        assertNotNull(ExpenseSnapshot.current());
+
+        // As the CLI would: its own connection, so this manager's dataVersion does not move
+        try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+            other.createStatement().execute(
+                    "INSERT INTO expenses (amount_minor, date, category_id) VALUES (500, '2024-03-02', 1)");
+        }
+        assertNull(ExpenseSnapshot.current());
+        assertEquals(stored(), rows(ExpenseSnapshot.refresh()));
+        assertNotNull(ExpenseSnapshot.current());
+    }
+
+    @Test
+    public void refreshMergesInsertsUpdatesAndDeletes() throws Exception {
+        Expense moved = insert("2024-03-01", 100, 1, "moved");
+        Expense gone = insert("2024-03-02", 200, 1, "gone");
+        insert("2024-03-03", 300, 1, "same");
+        long seq = ExpenseSnapshot.refresh().seq();
+
+        moved.setDate(LocalDate.of(2024, 3, 5));
+        moved.setNote("moved later");
+        ExpenseDAO.updateExpense(moved);
+        ExpenseDAO.deleteExpense(gone.getId());
+        insert("2024-02-01", 5, 2, "new");
+
+        ExpenseSnapshot s = ExpenseSnapshot.refresh();
+        assertEquals(seq + 3, s.seq());
+        assertEquals(stored(), rows(s));
+    }
+
+    @Test
+    public void reopensTheLatestFileAfterARestart() throws Exception {
+        insert("2024-03-01", 100, 1, "kept");
+        ExpenseSnapshot.refresh();
+        Database.shutdown();
+
+        Database.useFile(db.toString());
+        Database.init();
+        insert("2024-03-02", 200, 1, "added");
+        ExpenseSnapshot s = ExpenseSnapshot.refresh();
+        assertEquals(stored(), rows(s));
+        assertEquals(1, tmp.getRoot().list((dir, name) -> name.startsWith("test.db-snap.")).length);
+    }
+
+    // MIN(seq) and COUNT(*) of the change journal
+    private static long[] journal() throws SQLException {
+        try (PooledConnection pc = Database.reader();
+             ResultSet rs = pc.prepare("SELECT MIN(seq), COUNT(*) FROM expense_changes").executeQuery()) {
+            rs.next();
+            return new long[] {rs.getLong(1), rs.getLong(2)};
+        }
+    }
+
+    @Test
+    public void refreshPrunesTheJournalBehindTheLastSnapshot() throws Exception {
+        insert("2024-03-01", 100, 1, null);
+        insert("2024-03-02", 100, 1, null);
+        insert("2024-03-03", 100, 1, null);
+        long seq = ExpenseSnapshot.refresh().seq();
+        assertEquals(3, journal()[1]);
+
+        Expense e = insert("2024-03-04", 100, 1, null);
+        ExpenseDAO.deleteExpense(e.getId());
+        ExpenseSnapshot s = ExpenseSnapshot.refresh();
+        assertEquals(stored(), rows(s));
+        // Only what came after the previous snapshot is left
+        assertEquals(seq, journal()[0]);
+        assertEquals(3, journal()[1]);
+        // and pruning did not make the new snapshot look stale
+        assertSame(s, ExpenseSnapshot.current());
+    }
+
+    @Test
+    public void pruningWithoutASnapshotKeepsTheNewestRow() throws Exception {
+        insert("2024-03-01", 100, 1, null);
+        Expense e = insert("2024-03-02", 100, 1, null);
+        ExpenseDAO.deleteExpense(e.getId());
+        ExpenseSnapshot.pruneJournal();
+        // MAX(seq) never goes back, or the next snapshot could skip a change
+        assertEquals(3, journal()[0]);
+        assertEquals(1, journal()[1]);
+    }
+
+    @Test
+    public void parsesStoredDatesToEpochDays() {
+        for (String date : new String[] {"2024-02-29", "1970-01-01", "1969-12-31", "0001-01-01", "9999-12-31"}) {
+            assertEquals(date, LocalDate.parse(date).toEpochDay(), ExpenseSnapshot.epochDay(date));
+        }
+    }
+
+    @Test
+    public void sumsDayRanges() throws Exception {
+        insert("2024-03-01", 100, 1, null);
+        insert("2024-03-01", 20, 1, null);
+        insert("2024-03-03", 3, 1, null);
+        ExpenseSnapshot s = ExpenseSnapshot.refresh();
+        int day = (int) LocalDate.of(2024, 3, 1).toEpochDay();
+        assertEquals(120, s.sum(day, day + 1));
+        assertEquals(123, s.sum(day, day + 3));
+        assertEquals(3, s.sum(day + 1, day + 100));
+        assertEquals(0, s.sum(day - 10, day));
+    }
+
+    @Test
+    public void analyticsReadTheSnapshotTheSameAsSql() throws Exception {
+        insert("2024-01-31", 100, 1, null);
+        insert("2024-02-01", 250, 3, null);
+        insert("2024-02-15", 75, 1, null);
+        LocalDate from = LocalDate.of(2024, 1, 15);
+        LocalDate to = LocalDate.of(2024, 3, 1);
+
+        Map<YearMonth, Money> monthly = ExpenseAnalytics.monthlyTotals(from, to);
+        Map<String, Map<YearMonth, Money>> trend = ExpenseAnalytics.categoryTrend(from, to);
+        Map<Double, Money> percentiles = ExpenseAnalytics.percentiles(from, to, 50, 100);
+        ExpenseSnapshot.refresh();
+        assertNotNull(ExpenseSnapshot.current());
+        assertEquals(monthly, ExpenseAnalytics.monthlyTotals(from, to));
+        assertEquals(trend, ExpenseAnalytics.categoryTrend(from, to));
+        assertEquals(percentiles, ExpenseAnalytics.percentiles(from, to, 50, 100));
+    }
+}
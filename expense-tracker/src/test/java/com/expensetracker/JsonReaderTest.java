@@ -0,0 +1,54 @@
+package com.expensetracker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class JsonReaderTest {
+
+    @Test
+    public void readsFlatMembersInOrder() {
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("amount", "12.10");
+        expected.put("note", "tea");
+        expected.put("paid", Boolean.TRUE);
+        expected.put("void", Boolean.FALSE);
+        expected.put("ref", null);
+        Map<String, Object> parsed = JsonReader.parseObject(
+                "{ \"amount\" : 12.10, \"note\":\"tea\", \"paid\":true, \"void\":false, \"ref\":null } ");
+        assertEquals(expected, parsed);
+        assertEquals(List.copyOf(expected.keySet()), List.copyOf(parsed.keySet()));
+    }
+
+    @Test
+    public void numbersKeepTheirSourceText() {
+        assertEquals("-1.50E+2", JsonReader.parseObject("{\"n\":-1.50E+2}").get("n"));
+        assertEquals(Map.of(), JsonReader.parseObject("{}"));
+    }
+
+    @Test
+    public void whitespaceAroundTheObjectIsAllowed() {
+        assertEquals(Map.of("a", "1"), JsonReader.parseObject(" \r\n\t{\"a\":1}\n"));
+        assertEquals(Map.of(), JsonReader.parseObject("\n{ }\n"));
+    }
+
+    @Test
+    public void decodesEscapes() {
+        assertEquals("a\"b\\c/d\n\t\u00e9",
+                JsonReader.parseObject("{\"s\":\"a\\\"b\\\\c\\/d\\n\\t\\u00e9\"}").get("s"));
+    }
+
+    @Test
+    public void rejectsWhatTheApiDoesNotAccept() {
+        for (String bad : Arrays.asList("", "[]", "{\"a\":1", "{\"a\":1,}", "{\"a\":{}}", "{\"a\":[1]}",
+                "{\"a\":\"x\\q\"}", "{\"a\":\"\\u12\"}", "{\"a\":1} x", "{a:1}")) {
+            assertThrows(bad, IllegalArgumentException.class, () -> JsonReader.parseObject(bad));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class LedgerRouterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path root;
+    private LedgerRouter router;
+
+    @Before
+    public void setUp() {
+        root = tmp.getRoot().toPath();
+        router = new LedgerRouter(root, 2);
+    }
+
+    @After
+    public void tearDown() {
+        router.close();
+    }
+
+    private Expense insert(String tenant, String date, long minor, String note) throws SQLException {
+        Expense e = new Expense(Money.ofMinor(minor), LocalDate.parse(date), 1, null, note);
+        assertTrue(router.insertExpense(tenant, e) > 0);
+        return e;
+    }
+
+    private static List<String> notes(List<Expense> rows) {
+        List<String> notes = new ArrayList<>();
+        for (Expense e : rows) notes.add(e.getNote());
+        return notes;
+    }
+
+    @Test
+    public void routesByTenantAndYear() throws Exception {
+        insert("acme", "2023-12-31", 100, "a23");
+        insert("acme", "2024-01-01", 200, "a24");
+        insert("other", "2024-06-01", 400, "o24");
+
+        assertTrue(Files.exists(root.resolve("acme").resolve("2023.db")));
+        assertTrue(Files.exists(root.resolve("acme").resolve("2024.db")));
+        assertEquals(List.of(2023, 2024), router.years("acme"));
+        assertEquals(List.of(2024), router.years("other"));
+        assertEquals(List.of(), router.years("nobody"));
+
+        assertEquals(1L, (long) router.call("acme", 2024, () -> ExpenseDAO.countExpenses(ExpenseFilter.all())));
+    }
+
+    @Test
+    public void fanOutCombinesYearsInDateOrder() throws Exception {
+        insert("acme", "2024-03-01", 200, "b");
+        insert("acme", "2022-05-01", 100, "a");
+        insert("acme", "2025-01-10", 400, "c");
+        insert("other", "2024-03-01", 9999, "x");
+
+        assertEquals(List.of("a", "b", "c"), notes(router.getExpenses("acme", null, null)));
+        assertEquals(List.of("b"), notes(router.getExpenses("acme", LocalDate.of(2023, 1, 1), LocalDate.of(2025, 1, 1))));
+        assertEquals(3, router.countExpenses("acme", null, null));
+        assertEquals(Money.ofMinor(600), router.sumAmount("acme", LocalDate.of(2024, 1, 1), null));
+        // Reading never creates a ledger
+        assertEquals(0, router.countExpenses("acme", LocalDate.of(2030, 1, 1), LocalDate.of(2031, 1, 1)));
+        assertFalse(Files.exists(root.resolve("acme").resolve("2030.db")));
+    }
+
+    @Test
+    public void ledgersReopenAfterEviction() throws Exception {
+        // maxOpen is 2, so writing to four years closes the least recently used ones
+        for (int year = 2020; year < 2024; year++) insert("acme", year + "-01-01", 100, "y" + year);
+        for (int year = 2020; year < 2024; year++) insert("acme", year + "-02-01", 100, "z" + year);
+        assertEquals(8, router.countExpenses("acme", null, null));
+    }
+
+    @Test
+    public void updateMovesAcrossYears() throws Exception {
+        Expense e = insert("acme", "2024-03-01", 100, "moving");
+        insert("acme", "2023-01-01", 1, "already there");
+        int oldId = e.getId();
+
+        e.setDate(LocalDate.of(2023, 12, 1));
+        router.updateExpense("acme", 2024, e);
+        assertNotEquals(0, e.getId());
+        assertEquals(List.of(), router.getExpenses("acme", LocalDate.of(2024, 1, 1), null));
+        assertEquals(List.of("already there", "moving"), notes(router.getExpenses("acme", null, null)));
+        assertEquals("moving", router.call("acme", 2023, () -> ExpenseDAO.getExpense(e.getId())).getNote());
+        assertEquals(null, router.call("acme", 2024, () -> ExpenseDAO.getExpense(oldId)));
+    }
+
+    @Test
+    public void movedExpenseKeepsItsCategoryByName() throws Exception {
+        // Created in a different order in each ledger, so the ids differ
+        int pets2024 = router.call("acme", 2024, () -> ExpenseDAO.getOrCreateCategoryId("Pets"));
+        int gifts2023 = router.call("acme", 2023, () -> ExpenseDAO.getOrCreateCategoryId("Gifts"));
+        assertEquals(pets2024, gifts2023);
+
+        Expense e = new Expense(Money.ofMinor(100), LocalDate.of(2024, 3, 1), pets2024, null, "vet");
+        router.insertExpense("acme", e);
+        e.setDate(LocalDate.of(2023, 3, 1));
+        router.updateExpense("acme", 2024, e);
+
+        Expense moved = router.call("acme", 2023, () -> ExpenseDAO.getExpense(e.getId()));
+        assertEquals("Pets", moved.getCategoryName());
+        assertEquals(moved.getCategoryId(), e.getCategoryId());
+    }
+
+    @Test
+    public void archivedYearsAreReadOnly() throws Exception {
+        insert("acme", "2023-04-01", 300, "old");
+        router.archive("acme", 2023);
+
+        assertTrue(router.isArchived("acme", 2023));
+        assertFalse(Files.exists(root.resolve("acme").resolve("2023.db")));
+        assertEquals(List.of(2023), router.years("acme"));
+        assertEquals(List.of("old"), notes(router.getExpenses("acme", null, null)));
+        assertEquals(-1, router.insertExpense("acme",
+                new Expense(Money.ofMinor(1), LocalDate.of(2023, 5, 1), 1, null, "late")));
+        assertEquals(1, router.countExpenses("acme", null, null));
+    }
+
+    @Test
+    public void rejectsBadTenantNames() {
+        assertThrows(IllegalArgumentException.class, () -> router.years("../etc"));
+        assertThrows(IllegalArgumentException.class, () -> router.call("", 2024, () -> null));
+    }
+}
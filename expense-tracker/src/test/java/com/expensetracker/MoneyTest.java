@@ -0,0 +1,67 @@
+package com.expensetracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class MoneyTest {
+
+    @Test
+    public void parsesPlainDecimals() {
+        assertEquals(1250, Money.parse("12.5").minorUnits());
+        assertEquals(1250, Money.parse("12.50").minorUnits());
+        assertEquals(-300, Money.parse(" -3 ").minorUnits());
+        assertEquals(100_000, Money.parse("1E+3").minorUnits());
+    }
+
+    @Test
+    public void trailingZerosBeyondTwoPlacesAreAccepted() {
+        assertEquals(250, Money.parse("2.500").minorUnits());
+        assertEquals(0, Money.parse("0.0000").minorUnits());
+    }
+
+    @Test
+    public void moreThanTwoDecimalPlacesIsRejectedNotRounded() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.005"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.0050"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("0.001"));
+    }
+
+    @Test
+    public void rejectsAmountsBeyondLong() {
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07").minorUnits());
+        assertEquals(Long.MIN_VALUE, Money.parse("-92233720368547758.08").minorUnits());
+        assertThrows(NumberFormatException.class, () -> Money.parse("92233720368547758.08"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e20"));
+    }
+
+    @Test(timeout = 1000)
+    public void hugeExponentsFailFast() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e10000000"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e-10000000"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("-9e999999999"));
+        assertEquals(0, Money.parse("0e99999999").minorUnits());
+    }
+
+    @Test
+    public void rejectsNonNumbers() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+        assertThrows(NumberFormatException.class, () -> Money.parse(""));
+    }
+
+    @Test
+    public void arithmeticIsExact() {
+        assertEquals(Money.ofMinor(30), Money.ofMinor(10).plus(Money.ofMinor(20)));
+        assertEquals(Money.ofMinor(-10), Money.ofMinor(10).minus(Money.ofMinor(20)));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MIN_VALUE).negate());
+    }
+
+    @Test
+    public void printsTwoDecimals() {
+        assertEquals("1200.50", Money.ofMinor(120050).toString());
+        assertEquals("-0.05", Money.ofMinor(-5).toString());
+        assertEquals("0.00", Money.ZERO.toString());
+    }
+}
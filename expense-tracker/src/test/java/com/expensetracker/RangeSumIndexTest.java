@@ -0,0 +1,159 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RangeSumIndexTest {
+
+    private static final int FOOD = 1;
+    private static final int RENT = 2;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<Expense> stored = new ArrayList<>();
+    private RangeSumIndex index;
+
+    @Before
+    public void setUp() {
+        Database.useFile(tmp.getRoot().toPath().resolve("test.db").toString());
+        Database.init();
+        index = RangeSumIndex.get();
+    }
+
+    @After
+    public void tearDown() {
+        Database.shutdown();
+    }
+
+    private Expense insert(String date, long minor, int categoryId) {
+        Expense e = new Expense(Money.ofMinor(minor), LocalDate.parse(date), categoryId, null, null);
+        ExpenseDAO.insertExpense(e);
+        stored.add(e);
+        return e;
+    }
+
+    // Brute-force total over [from, to)
+    private long expected(Integer categoryId, LocalDate from, LocalDate to) {
+        long sum = 0;
+        for (Expense e : stored) {
+            if ((categoryId == null || e.getCategoryId() == categoryId)
+                    && !e.getDate().isBefore(from) && e.getDate().isBefore(to)) {
+                sum += e.getAmount().minorUnits();
+            }
+        }
+        return sum;
+    }
+
+    // Compares every range between the stored dates (and a day either side of each)
+    private void assertMatchesBruteForce() {
+        List<LocalDate> bounds = new ArrayList<>();
+        for (Expense e : stored) {
+            bounds.add(e.getDate().minusDays(1));
+            bounds.add(e.getDate());
+            bounds.add(e.getDate().plusDays(1));
+        }
+        bounds.add(LocalDate.of(1900, 1, 1));
+        bounds.add(LocalDate.of(2200, 1, 1));
+        for (LocalDate from : bounds) {
+            for (LocalDate to : bounds) {
+                if (!to.isAfter(from)) continue;
+                for (Integer category : new Integer[] {null, FOOD, RENT}) {
+                    assertEquals(category + " " + from + ".." + to,
+                            expected(category, from, to), index.total(category, from, to).minorUnits());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void loadMatchesStoredExpenses() throws Exception {
+        insert("2024-01-01", 100, FOOD);
+        insert("2024-01-01", 250, RENT);
+        insert("2024-02-29", 75, FOOD);
+        insert("2024-12-31", 1000, RENT);
+        index.load();
+        assertMatchesBruteForce();
+    }
+
+    @Test
+    public void emptyOrReversedRangesAreZero() throws Exception {
+        insert("2024-05-05", 100, FOOD);
+        index.load();
+        LocalDate d = LocalDate.of(2024, 5, 5);
+        assertEquals(Money.ZERO, index.total(null, d, d));
+        assertEquals(Money.ZERO, index.total(null, d.plusDays(1), d));
+        assertEquals(Money.ZERO, index.total(42, d, d.plusDays(1)));
+    }
+
+    @Test
+    public void growsBackwardsForOlderExpenses() throws Exception {
+        insert("2024-06-01", 500, FOOD);
+        index.load();
+        insert("1990-06-15", 300, FOOD);
+        insert("1989-01-01", 40, RENT);
+        assertMatchesBruteForce();
+    }
+
+    @Test
+    public void growsForwardsForFutureExpenses() throws Exception {
+        insert("2024-06-01", 500, FOOD);
+        index.load();
+        insert("2090-01-01", 700, RENT);
+        insert("2150-12-31", 9, FOOD);
+        assertMatchesBruteForce();
+    }
+
+    @Test
+    public void followsUpdatesAndDeletes() throws Exception {
+        Expense moved = insert("2024-03-10", 100, FOOD);
+        Expense gone = insert("2024-03-11", 200, RENT);
+        insert("2024-03-12", 300, FOOD);
+        index.load();
+
+        // Moved years back and into another category: grows and re-lays the trees too
+        moved.setDate(LocalDate.of(2001, 7, 4));
+        moved.setCategoryId(RENT);
+        moved.setAmount(Money.ofMinor(150));
+        ExpenseDAO.updateExpense(moved);
+        ExpenseDAO.deleteExpense(gone.getId());
+        stored.remove(gone);
+        assertMatchesBruteForce();
+    }
+
+    @Test
+    public void outlyingDatesDoNotStretchTheTrees() throws Exception {
+        insert("2024-06-01", 500, FOOD);
+        insert("9999-12-31", 7, RENT);
+        index.load();
+        insert("0001-01-01", 11, FOOD);
+        insert("9999-12-30", 13, FOOD);
+        assertMatchesBruteForce();
+        assertEquals(7 + 13, index.total(null, LocalDate.of(9000, 1, 1), LocalDate.of(10000, 1, 1)).minorUnits());
+        assertEquals(11 + 500, index.total(FOOD, LocalDate.of(1, 1, 1), LocalDate.of(2025, 1, 1)).minorUnits());
+        // A century either side of today at most, not ten thousand years
+        assertTrue(index.treeDays() < 101 * 366);
+    }
+
+    @Test
+    public void correctingAnOutlyingDateMovesItIntoTheTrees() throws Exception {
+        insert("2024-06-01", 500, FOOD);
+        Expense typo = insert("2204-06-02", 300, RENT);
+        index.load();
+
+        typo.setDate(LocalDate.of(2024, 6, 2));
+        ExpenseDAO.updateExpense(typo);
+        assertMatchesBruteForce();
+        assertEquals(0, index.total(null, LocalDate.of(2100, 1, 1), LocalDate.of(9999, 1, 1)).minorUnits());
+    }
+}
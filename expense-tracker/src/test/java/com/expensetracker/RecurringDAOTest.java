@@ -0,0 +1,129 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class RecurringDAOTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private int rent;
+
+    @Before
+    public void setUp() throws SQLException {
+        Database.useFile(tmp.getRoot().toPath().resolve("test.db").toString());
+        Database.init();
+        rent = CategoryRegistry.get().getOrCreate("Rent");
+    }
+
+    @After
+    public void tearDown() {
+        Database.shutdown();
+    }
+
+    private static RecurringDAO.Rule rule(RecurringDAO.Frequency frequency, int every, String start, String end) {
+        return new RecurringDAO.Rule(0, Money.ofMinor(100), 1, null, frequency, every,
+                LocalDate.parse(start), end == null ? null : LocalDate.parse(end), 0);
+    }
+
+    private static List<String> storedDates() throws SQLException {
+        List<String> dates = new ArrayList<>();
+        try (PooledConnection pc = Database.reader();
+             ResultSet rs = pc.prepare("SELECT date FROM expenses ORDER BY date, id").executeQuery()) {
+            while (rs.next()) dates.add(rs.getString(1));
+        }
+        return dates;
+    }
+
+    @Test
+    public void monthlyOnThe31stLandsOnMonthEnds() {
+        RecurringDAO.Rule r = rule(RecurringDAO.Frequency.MONTHLY, 1, "2024-01-31", null);
+        assertEquals(LocalDate.of(2024, 2, 29), r.occurrence(1));
+        // Counted from start, so March is back on the 31st rather than stuck on the 29th
+        assertEquals(LocalDate.of(2024, 3, 31), r.occurrence(2));
+        assertEquals(LocalDate.of(2024, 4, 30), r.occurrence(3));
+        assertEquals(LocalDate.of(2025, 2, 28), r.occurrence(13));
+    }
+
+    @Test
+    public void everyNSteps() {
+        assertEquals(LocalDate.of(2024, 1, 15),
+                rule(RecurringDAO.Frequency.WEEKLY, 2, "2024-01-01", null).occurrence(1));
+        assertEquals(LocalDate.of(2024, 7, 31),
+                rule(RecurringDAO.Frequency.MONTHLY, 3, "2024-01-31", null).occurrence(2));
+        assertEquals(LocalDate.of(2028, 2, 29),
+                rule(RecurringDAO.Frequency.YEARLY, 1, "2024-02-29", null).occurrence(4));
+        assertEquals(LocalDate.of(2025, 2, 28),
+                rule(RecurringDAO.Frequency.YEARLY, 1, "2024-02-29", null).occurrence(1));
+    }
+
+    @Test
+    public void nothingAfterEndDate() {
+        RecurringDAO.Rule r = rule(RecurringDAO.Frequency.WEEKLY, 1, "2024-03-01", "2024-03-15");
+        assertEquals(LocalDate.of(2024, 3, 15), r.occurrenceOrNull(2));
+        assertNull(r.occurrenceOrNull(3));
+    }
+
+    @Test
+    public void rejectsBadRules() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RecurringDAO.addRule(rule(RecurringDAO.Frequency.WEEKLY, 0, "2024-01-01", null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> RecurringDAO.addRule(rule(RecurringDAO.Frequency.WEEKLY, 1, "2024-01-02", "2024-01-01")));
+    }
+
+    @Test
+    public void materializesDueOccurrencesOnce() throws SQLException {
+        RecurringDAO.addRule(new RecurringDAO.Rule(0, Money.ofMinor(50000), rent, "rent",
+                RecurringDAO.Frequency.MONTHLY, 1, LocalDate.of(2024, 1, 31), null, 0));
+
+        assertEquals(4, RecurringDAO.materializeDue(LocalDate.of(2024, 4, 30)));
+        assertEquals(List.of("2024-01-31", "2024-02-29", "2024-03-31", "2024-04-30"), storedDates());
+
+        // Running again, for the same day or one before the next occurrence, adds nothing
+        assertEquals(0, RecurringDAO.materializeDue(LocalDate.of(2024, 4, 30)));
+        assertEquals(0, RecurringDAO.materializeDue(LocalDate.of(2024, 5, 30)));
+        assertEquals(1, RecurringDAO.materializeDue(LocalDate.of(2024, 5, 31)));
+        assertEquals(5, storedDates().size());
+
+        RecurringDAO.Rule stored = RecurringDAO.getRules().get(0);
+        assertEquals(5, stored.materialized());
+        assertEquals(LocalDate.of(2024, 6, 30), stored.next());
+    }
+
+    @Test
+    public void stopsAtEndDate() throws SQLException {
+        RecurringDAO.addRule(new RecurringDAO.Rule(0, Money.ofMinor(999), rent, null,
+                RecurringDAO.Frequency.WEEKLY, 1, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 20), 0));
+
+        assertEquals(3, RecurringDAO.materializeDue(LocalDate.of(2024, 12, 31)));
+        assertEquals(List.of("2024-01-01", "2024-01-08", "2024-01-15"), storedDates());
+        assertEquals(0, RecurringDAO.materializeDue(LocalDate.of(2025, 12, 31)));
+        assertNull(RecurringDAO.getRules().get(0).next());
+    }
+
+    @Test
+    public void deletedRuleAddsNothingMore() throws SQLException {
+        int id = RecurringDAO.addRule(new RecurringDAO.Rule(0, Money.ofMinor(999), rent, null,
+                RecurringDAO.Frequency.WEEKLY, 1, LocalDate.of(2024, 1, 1), null, 0));
+        assertEquals(1, RecurringDAO.materializeDue(LocalDate.of(2024, 1, 1)));
+
+        RecurringDAO.deleteRule(id);
+        assertEquals(0, RecurringDAO.materializeDue(LocalDate.of(2024, 12, 31)));
+        assertEquals(List.of("2024-01-01"), storedDates());
+    }
+}
@@ -0,0 +1,102 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class SummaryDAOTest {
+
+    private static final int FOOD = 1;
+    private static final int RENT = 3;
+
+    @Before
+    public void setUp() {
+        TestDatabase.fresh();
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.close();
+    }
+
+    private static void insert(String date, long minor, int categoryId) {
+        ExpenseDAO.insertExpense(new Expense(Money.ofMinor(minor), LocalDate.parse(date), categoryId, null, null));
+    }
+
+    private static Expense only(int year, int month) {
+        List<Expense> rows = ExpenseDAO.getExpensesByMonthYear(year, month);
+        assertEquals(1, rows.size());
+        return rows.get(0);
+    }
+
+    @Test
+    public void insertsAreAddedToBothSummaries() {
+        insert("2024-03-01", 1000, FOOD);
+        insert("2024-03-01", 500, RENT);
+        insert("2024-03-20", 250, FOOD);
+        insert("2024-04-01", 10000, FOOD);
+
+        Map<String, Money> byCategory = new LinkedHashMap<>();
+        byCategory.put("Food", Money.ofMinor(1250));
+        byCategory.put("Rent", Money.ofMinor(500));
+        assertEquals(byCategory, ExpenseDAO.getMonthlyTotalsByCategory(2024, 3));
+
+        Map<LocalDate, Money> daily = new LinkedHashMap<>();
+        daily.put(LocalDate.of(2024, 3, 1), Money.ofMinor(1500));
+        daily.put(LocalDate.of(2024, 3, 20), Money.ofMinor(250));
+        assertEquals(daily, ExpenseDAO.getDailyTotals(2024, 3));
+    }
+
+    @Test
+    public void updatesMoveAmountsBetweenBuckets() {
+        insert("2024-03-01", 1000, FOOD);
+        Expense e = only(2024, 3);
+        e.setDate(LocalDate.of(2024, 5, 2));
+        e.setCategoryId(RENT);
+        e.setAmount(Money.ofMinor(700));
+        ExpenseDAO.updateExpense(e);
+
+        assertEquals(Map.of(), ExpenseDAO.getMonthlyTotalsByCategory(2024, 3));
+        assertEquals(Map.of(), ExpenseDAO.getDailyTotals(2024, 3));
+        assertEquals(Map.of("Rent", Money.ofMinor(700)), ExpenseDAO.getMonthlyTotalsByCategory(2024, 5));
+        assertEquals(Map.of(LocalDate.of(2024, 5, 2), Money.ofMinor(700)), ExpenseDAO.getDailyTotals(2024, 5));
+    }
+
+    @Test
+    public void deletingTheLastRowRemovesTheBucket() {
+        insert("2024-03-01", 1000, FOOD);
+        insert("2024-03-02", 400, FOOD);
+        ExpenseDAO.deleteExpense(ExpenseDAO.getExpensesByMonthYear(2024, 3).get(0).getId());
+        assertEquals(Map.of("Food", Money.ofMinor(400)), ExpenseDAO.getMonthlyTotalsByCategory(2024, 3));
+
+        ExpenseDAO.deleteExpense(only(2024, 3).getId());
+        assertEquals(Map.of(), ExpenseDAO.getMonthlyTotalsByCategory(2024, 3));
+        assertEquals(Map.of(), ExpenseDAO.getDailyTotals(2024, 3));
+    }
+
+    @Test
+    public void rebuildRecomputesWholeMonths() throws SQLException {
+        insert("2024-02-10", 100, FOOD);
+        insert("2024-03-10", 200, FOOD);
+        insert("2024-04-10", 300, FOOD);
+        try (PooledConnection pc = Database.writer()) {
+            pc.execute("UPDATE monthly_category_totals SET total_minor = 9900");
+            pc.execute("UPDATE daily_totals SET total_minor = 9900");
+            // Mid-month bounds still cover all of March
+            SummaryDAO.rebuild(pc.connection(), LocalDate.of(2024, 3, 15), LocalDate.of(2024, 3, 16));
+        }
+
+        assertEquals(Map.of("Food", Money.ofMinor(9900)), ExpenseDAO.getMonthlyTotalsByCategory(2024, 2));
+        assertEquals(Map.of("Food", Money.ofMinor(200)), ExpenseDAO.getMonthlyTotalsByCategory(2024, 3));
+        assertEquals(Map.of(LocalDate.of(2024, 3, 10), Money.ofMinor(200)), ExpenseDAO.getDailyTotals(2024, 3));
+        assertEquals(Map.of("Food", Money.ofMinor(9900)), ExpenseDAO.getMonthlyTotalsByCategory(2024, 4));
+    }
+}
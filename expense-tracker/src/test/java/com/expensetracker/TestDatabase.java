@@ -0,0 +1,49 @@
+package com.expensetracker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The app database for tests: a file in a temporary directory, emptied by
+ * fresh().
+ */
+final class TestDatabase {
+
+    static final Path FILE;
+
+    static {
+        try {
+            FILE = Files.createTempDirectory("expensetracker-test").resolve("test.db");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        FILE.getParent().toFile().deleteOnExit();
+    }
+
+    private TestDatabase() {
+    }
+
+    // Closes the pool, deletes the file and creates the schema again
+    static void fresh() {
+        Database.shutdown();
+        delete(FILE);
+        delete(Path.of(FILE + "-wal"));
+        delete(Path.of(FILE + "-shm"));
+        Database.useFile(FILE.toString());
+        Database.init();
+    }
+
+    static void close() {
+        Database.shutdown();
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
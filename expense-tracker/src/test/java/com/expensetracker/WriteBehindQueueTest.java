@@ -0,0 +1,180 @@
+package com.expensetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindQueueTest {
+
+    // Long enough that nothing commits until close()
+    private static final long NEVER_MS = 3_600_000;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private ConnectionManager source;
+    private ConnectionManager target;
+    private Path targetLog;
+
+    @Before
+    public void setUp() {
+        source = open("source.db");
+        target = open("target.db");
+        targetLog = tmp.getRoot().toPath().resolve("target.db-wbl");
+    }
+
+    @After
+    public void tearDown() {
+        source.close();
+        target.close();
+    }
+
+    private ConnectionManager open(String name) {
+        ConnectionManager m = new ConnectionManager("jdbc:sqlite:" + tmp.getRoot().toPath().resolve(name));
+        Database.bind(m, () -> {
+            Database.init();
+            return null;
+        });
+        return m;
+    }
+
+    /**
+     * Queues expenses with the given notes on the source database and
+     * returns a copy of its log taken before anything committed, i.e. what
+     * a crash at that point would leave behind.
+     */
+    private Path logOf(String... notes) throws Exception {
+        Path log = tmp.getRoot().toPath().resolve("source.db-wbl");
+        Path saved = tmp.newFile().toPath();
+        WriteBehindQueue queue = new WriteBehindQueue(source, log, 1000, NEVER_MS, false);
+        try {
+            for (String note : notes) {
+                queue.insert(new Expense(Money.ofMinor(100), LocalDate.of(2024, 3, 1), 1, null, note));
+            }
+            Files.copy(log, saved, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            queue.close();
+        }
+        return saved;
+    }
+
+    private void replay(Path log) throws Exception {
+        Files.copy(log, targetLog, StandardCopyOption.REPLACE_EXISTING);
+        new WriteBehindQueue(target, targetLog, 1000, NEVER_MS, false).close();
+    }
+
+    private List<String> targetNotes() throws SQLException {
+        List<String> notes = new ArrayList<>();
+        try (PooledConnection pc = target.reader();
+             ResultSet rs = pc.prepare("SELECT note FROM expenses ORDER BY id").executeQuery()) {
+            while (rs.next()) notes.add(rs.getString(1));
+        }
+        return notes;
+    }
+
+    @Test
+    public void replaysALogLeftByACrash() throws Exception {
+        replay(logOf("a", "b", "c"));
+        assertEquals(List.of("a", "b", "c"), targetNotes());
+        assertFalse("log is removed once everything is applied", Files.exists(targetLog));
+    }
+
+    @Test
+    public void replayingTheSameLogTwiceAppliesItOnce() throws Exception {
+        Path log = logOf("a", "b");
+        replay(log);
+        replay(log);
+        assertEquals(List.of("a", "b"), targetNotes());
+    }
+
+    @Test
+    public void replaysUpdatesAndDeletesInOrder() throws Exception {
+        Path log = tmp.getRoot().toPath().resolve("source.db-wbl");
+        Path saved = tmp.newFile().toPath();
+        WriteBehindQueue queue = new WriteBehindQueue(source, log, 1000, NEVER_MS, false);
+        try {
+            Expense first = new Expense(1, Money.ofMinor(100), LocalDate.of(2024, 3, 1), 1, null, "first");
+            Expense second = new Expense(2, Money.ofMinor(200), LocalDate.of(2024, 3, 2), 1, null, "second");
+            queue.insert(first);
+            queue.insert(second);
+            first.setNote("edited");
+            queue.update(first);
+            queue.delete(2);
+            Files.copy(log, saved, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            queue.close();
+        }
+        replay(saved);
+        assertEquals(List.of("edited"), targetNotes());
+    }
+
+    @Test
+    public void ignoresATornLastRecord() throws Exception {
+        Path log = logOf("a", "b");
+        Files.writeString(log, "3,I,0,100,2024-03-0", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        replay(log);
+        assertEquals(List.of("a", "b"), targetNotes());
+    }
+
+    @Test
+    public void skipsARecordThatCanNeverApply() throws Exception {
+        try (PooledConnection pc = target.writer()) {
+            pc.execute("""
+                    CREATE TRIGGER reject_bad BEFORE INSERT ON expenses WHEN NEW.note = 'bad'
+                    BEGIN SELECT RAISE(ABORT, 'rejected'); END
+                    """);
+        }
+        Path log = logOf("a", "bad", "c");
+        replay(log);
+        assertEquals(List.of("a", "c"), targetNotes());
+
+        // Skipped for good: a second replay neither retries it nor re-adds the others
+        replay(log);
+        assertEquals(List.of("a", "c"), targetNotes());
+    }
+
+    @Test
+    public void queuedWritesCommitOnFlush() throws Exception {
+        Path log = tmp.getRoot().toPath().resolve("target.db-wbl");
+        WriteBehindQueue queue = new WriteBehindQueue(target, log, 1000, NEVER_MS, false);
+        try {
+            Expense e = new Expense(Money.ofMinor(100), LocalDate.of(2024, 3, 1), 1, null, "queued");
+            queue.insert(e);
+            assertEquals(List.of(), targetNotes());
+            queue.flush();
+            assertEquals(List.of("queued"), targetNotes());
+            assertEquals(1, e.getId());
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void onlyConstraintAndTypeErrorsAreSkipped() {
+        assertTrue(WriteBehindQueue.isPermanent(new SQLException("constraint", null, 19)));
+        assertTrue(WriteBehindQueue.isPermanent(new SQLException("unique", null, 2067)));
+        assertTrue(WriteBehindQueue.isPermanent(new SQLException("mismatch", null, 20)));
+        // Busy, locked, I/O and a full disk may pass, so they stay queued
+        assertFalse(WriteBehindQueue.isPermanent(new SQLException("busy", null, 5)));
+        assertFalse(WriteBehindQueue.isPermanent(new SQLException("locked", null, 6)));
+        assertFalse(WriteBehindQueue.isPermanent(new SQLException("ioerr", null, 10)));
+        assertFalse(WriteBehindQueue.isPermanent(new SQLException("full", null, 13)));
+    }
+}